@@ -0,0 +1,143 @@
+/**
+ *
+ */
+package com.kitschframework.common.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * BinaryRowFormat
+ *
+ * Constants and helpers shared by the binary row writer and parser. A binary
+ * file starts with MAGIC and the DataRowMetadata of its rows: the number of
+ * columns, then for each column its name, type, nullability and date format.
+ * Every row follows as the varint length of its body, then the varint number of
+ * fields and the fields, each a tag byte and a payload:
+ *
+ * <pre>
+ * TAG_NULL    no payload
+ * TAG_VARINT  zigzag varint, LONG, INT and DATE (epoch milliseconds) columns
+ * TAG_DOUBLE  8 byte IEEE 754 bits, big endian
+ * TAG_FALSE   no payload
+ * TAG_TRUE    no payload
+ * TAG_STRING  varint byte length and UTF-8 bytes
+ * </pre>
+ *
+ * A typed column whose value does not parse as its type is written as a
+ * string, so no value is ever lost. Strings are limited to the column's text,
+ * numbers are written from their parsed value, so like TypedDataRow they read
+ * back in canonical form (e.g. "1.50" as "1.5").
+ *
+ */
+public final class BinaryRowFormat
+{
+    public static final byte[] MAGIC      = { 'K', 'D', 'R', 1 };
+
+    public static final int    TAG_NULL   = 0;
+    public static final int    TAG_VARINT = 1;
+    public static final int    TAG_DOUBLE = 2;
+    public static final int    TAG_FALSE  = 3;
+    public static final int    TAG_TRUE   = 4;
+    public static final int    TAG_STRING = 5;
+
+    public static final Charset UTF8      = Charset.forName("UTF-8");
+
+    private static final ColumnType[] TYPES = ColumnType.values();
+
+    private BinaryRowFormat() {
+    }
+
+    public static void writeMetadata(final OutputStream output, final DataRowMetadata metadata) throws IOException {
+        output.write(MAGIC);
+        final int count = metadata.getKeyCount();
+        writeVarLong(output, count);
+        for (int i = 0; i < count; i++) {
+            writeString(output, metadata.getKey(i));
+            output.write(metadata.getColumnType(i).ordinal());
+            output.write(metadata.isNullable(i) ? 1 : 0);
+            writeString(output, metadata.getDateFormat(i));
+        }
+    }
+
+    /**
+     * Reads the header written by writeMetadata, returns null for an empty
+     * input
+     */
+    public static DataRowMetadata readMetadata(final DataInputStream input) throws IOException {
+        final byte[] magic = new byte[MAGIC.length];
+        final int first = input.read();
+        if (first == -1) {
+            return null;
+        }
+        magic[0] = (byte) first;
+        input.readFully(magic, 1, magic.length - 1);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary row file");
+        }
+
+        final DataRowMetadata metadata = new DataRowMetadata();
+        final long count = readVarLong(input);
+        for (long i = 0; i < count; i++) {
+            final String key = readString(input);
+            final int type = input.readUnsignedByte();
+            if (type >= TYPES.length) {
+                throw new IOException("Unknown column type " + type + " for column " + key);
+            }
+            metadata.setColumnType(key, TYPES[type], input.readUnsignedByte() != 0);
+            metadata.setDateFormat(key, readString(input));
+        }
+        return metadata;
+    }
+
+    public static void writeVarLong(final OutputStream output, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            output.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    /**
+     * Reads a varint, throws EOFException at the end of input
+     */
+    public static long readVarLong(final InputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = input.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeString(final OutputStream output, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(UTF8);
+        writeVarLong(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final byte[] bytes = new byte[(int) readVarLong(input)];
+        input.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
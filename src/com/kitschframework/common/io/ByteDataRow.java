@@ -0,0 +1,93 @@
+/**
+ *
+ */
+package com.kitschframework.common.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * ByteDataRow
+ *
+ * LazyDataRow backed by a region of a (usually memory-mapped) ByteBuffer.
+ *
+ * The row holds a reference to the buffer it was parsed from so the underlying
+ * mapping stays alive for as long as the row is attached to it.
+ *
+ * A ByteDataRow can be refilled in place by a parser (see
+ * FileDataReader.readInto), in that case its offset and cache arrays are reused
+ * and reading a row allocates nothing until a field is decoded.
+ *
+ */
+public class ByteDataRow extends LazyDataRow
+{
+    private static final long    serialVersionUID = 1L;
+
+    /** Charset of the InputStreamReader of FileDataReader */
+    private static final Charset CHARSET          = Charset.defaultCharset();
+
+    private transient ByteBuffer buffer;
+
+    /**
+     * Creates an empty row to be refilled by a parser
+     */
+    public ByteDataRow() {
+        super(new DataRowMetadata());
+    }
+
+    public ByteDataRow(final DataRowMetadata metadata, final ByteBuffer buffer, final int[] bounds,
+            final int fieldCount) {
+        this(metadata, buffer, bounds, fieldCount, null);
+    }
+
+    /**
+     * Creates a row exposing only some fields of the line, see LazyDataRow
+     */
+    public ByteDataRow(final DataRowMetadata metadata, final ByteBuffer buffer, final int[] bounds,
+            final int fieldCount, final int[] fields) {
+        super(metadata, bounds, fieldCount, fields);
+        this.buffer = buffer;
+    }
+
+    /**
+     * Points the row at a new line of the buffer, the offsets must already have
+     * been written into the array returned by getBounds
+     */
+    public void refill(final DataRowMetadata metadata, final ByteBuffer buffer, final int fieldCount) {
+        refill(metadata, buffer, fieldCount, null);
+    }
+
+    public void refill(final DataRowMetadata metadata, final ByteBuffer buffer, final int fieldCount,
+            final int[] fields) {
+        attach(metadata, fieldCount, fields);
+        this.buffer = buffer;
+    }
+
+    @Override
+    protected int charAt(final int position) {
+        return buffer.get(position) & 0xff;
+    }
+
+    @Override
+    protected String decode(final int start, final int end) {
+        return decode(buffer, start, end);
+    }
+
+    @Override
+    protected void release() {
+        buffer = null;
+    }
+
+    /**
+     * Decodes the bytes between start and end of a buffer with the platform
+     * charset, so fields read from a mapped file are the same Strings the
+     * BufferedReader of FileDataReader returns
+     */
+    public static String decode(final ByteBuffer buffer, final int start, final int end) {
+        final byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, CHARSET);
+    }
+}
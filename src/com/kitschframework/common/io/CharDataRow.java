@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package com.kitschframework.common.io;
+
+/**
+ * CharDataRow
+ *
+ * LazyDataRow backed by a copy of the raw line as a char array, produced by the
+ * BufferedReader path of LazyTabDelimitedDataRowParser.
+ *
+ * When refilled in place (see FileDataReader.readInto) the char array is reused
+ * as well, so reading a row allocates nothing until a field is decoded.
+ *
+ */
+public class CharDataRow extends LazyDataRow
+{
+    private static final long serialVersionUID = 1L;
+
+    private transient char[]  chars;
+
+    /**
+     * Creates an empty row to be refilled by a parser
+     */
+    public CharDataRow() {
+        super(new DataRowMetadata());
+        this.chars = new char[0];
+    }
+
+    public CharDataRow(final DataRowMetadata metadata, final char[] chars, final int[] bounds, final int fieldCount) {
+        this(metadata, chars, bounds, fieldCount, null);
+    }
+
+    /**
+     * Creates a row exposing only some fields of the line, see LazyDataRow
+     */
+    public CharDataRow(final DataRowMetadata metadata, final char[] chars, final int[] bounds,
+            final int fieldCount, final int[] fields) {
+        super(metadata, bounds, fieldCount, fields);
+        this.chars = chars;
+    }
+
+    /**
+     * Returns the character array of this row, grown to at least length, for a
+     * parser to copy the next line into before calling refill
+     */
+    public char[] getChars(final int length) {
+        if (chars == null || chars.length < length) {
+            chars = new char[Math.max(length, chars == null ? 0 : chars.length * 2)];
+        }
+        return chars;
+    }
+
+    /**
+     * Points the row at the line copied into getChars, the offsets must already
+     * have been written into the array returned by getBounds
+     */
+    public void refill(final DataRowMetadata metadata, final int fieldCount) {
+        attach(metadata, fieldCount);
+    }
+
+    public void refill(final DataRowMetadata metadata, final int fieldCount, final int[] fields) {
+        attach(metadata, fieldCount, fields);
+    }
+
+    /**
+     * Points the row at a line held in someone else's buffer instead of its own
+     * copy, a parser uses this to look at a line before deciding to copy it.
+     * getChars must not be used on such a row.
+     */
+    public void refill(final DataRowMetadata metadata, final char[] buffer, final int fieldCount) {
+        attach(metadata, fieldCount);
+        this.chars = buffer;
+    }
+
+    @Override
+    protected int charAt(final int position) {
+        return chars[position];
+    }
+
+    @Override
+    protected String decode(final int start, final int end) {
+        return new String(chars, start, end - start);
+    }
+}
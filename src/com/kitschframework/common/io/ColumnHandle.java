@@ -0,0 +1,69 @@
+/**
+ *
+ */
+package com.kitschframework.common.io;
+
+import java.io.Serializable;
+
+/**
+ * ColumnHandle
+ *
+ * A column of a DataRowMetadata resolved to its index once, see
+ * DataRowMetadata.handle(). Reading a row through a handle skips the key
+ * lookup when the row uses the metadata the handle was created from, rows with
+ * any other metadata fall back to looking the key up.
+ *
+ * Usage:
+ * <code>
+ * ColumnHandle price = metadata.handle("price");
+ * while (reader.hasNextDataRow()) {
+ *     total += reader.getNextDataRow().getValueAsDouble(price);
+ * }
+ * </code>
+ *
+ */
+public final class ColumnHandle implements Serializable
+{
+    private static final long     serialVersionUID = 1L;
+
+    private final DataRowMetadata metadata;
+    private final String          key;
+    private final int             index;
+
+    ColumnHandle(final DataRowMetadata metadata, final String key, final int index) {
+        this.metadata = metadata;
+        this.key = key;
+        this.index = index;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the index in the metadata the handle was created from, -1 if the
+     * column was missing at the time
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public DataRowMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Returns the index of the column in rowMetadata, -1 if it is missing
+     */
+    public int indexIn(final DataRowMetadata rowMetadata) {
+        if (rowMetadata == metadata && index != -1) {
+            return index;
+        }
+        return rowMetadata.getIndexOf(key);
+    }
+
+    @Override
+    public String toString() {
+        return key + "[" + index + "]";
+    }
+}
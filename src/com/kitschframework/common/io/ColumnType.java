@@ -0,0 +1,12 @@
+/**
+ * 
+ */
+package com.kitschframework.common.io;
+
+/**
+ * Storage type of a column, DATE values are stored as epoch milliseconds
+ *
+ */
+public enum ColumnType {
+    LONG, INT, DOUBLE, BOOLEAN, DATE, STRING;
+}
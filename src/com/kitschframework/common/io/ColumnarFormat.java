@@ -0,0 +1,985 @@
+/**
+ *
+ */
+package com.kitschframework.common.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ColumnarFormat
+ *
+ * Layout and encodings of the columnar files written by ColumnarDataWriter and
+ * read by ColumnarDataReader. A file is MAGIC, the row groups, the footer, the
+ * length of the footer as an int and MAGIC again. A row group holds up to a
+ * fixed number of rows, stored as one chunk per column. The footer holds the
+ * DataRowMetadata and, for every chunk, its position, encoding and statistics,
+ * so a reader only reads the chunks of the columns it needs and can skip row
+ * groups from the statistics alone.
+ *
+ * A chunk starts with its null runs when it has nulls, followed by its non-null
+ * values encoded with whichever of these is the smallest:
+ *
+ * <pre>
+ * PLAIN       zigzag varints, raw doubles or length-prefixed UTF-8
+ * DELTA       first value and zigzag varint differences, for sorted or slowly changing numbers
+ * RLE         (value, run length) pairs, for long runs and booleans
+ * DICTIONARY  the distinct values, then their indexes encoded as above
+ * </pre>
+ *
+ * Chunks of at least MIN_DEFLATE_SIZE bytes are deflated when that saves more
+ * than 10%.
+ *
+ * LONG, INT and DATE (epoch milliseconds) columns are stored as longs, DOUBLE as
+ * doubles and BOOLEAN as 0/1 longs. When a value of a typed column doesn't
+ * parse as its type the column's chunk is stored as strings for that row group,
+ * so nothing is lost. Like TypedDataRow, numbers read back in canonical form.
+ *
+ */
+public final class ColumnarFormat
+{
+    public static final byte[]  MAGIC            = { 'K', 'C', 'O', 'L' };
+    public static final int     VERSION          = 1;
+
+    public static final int     KIND_LONG        = 0;
+    public static final int     KIND_DOUBLE      = 1;
+    public static final int     KIND_BOOLEAN     = 2;
+    public static final int     KIND_STRING      = 3;
+
+    public static final int     ENCODING_PLAIN   = 0;
+    public static final int     ENCODING_DELTA   = 1;
+    public static final int     ENCODING_RLE     = 2;
+    public static final int     ENCODING_DICTIONARY = 3;
+
+    public static final int     CODEC_NONE       = 0;
+    public static final int     CODEC_DEFLATE    = 1;
+
+    public static final int     STATS_NONE       = 0;
+    public static final int     STATS_LONG       = 1;
+    public static final int     STATS_DOUBLE     = 2;
+    public static final int     STATS_STRING     = 3;
+
+    private static final int    MIN_DEFLATE_SIZE = 1024;
+    private static final int    MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private static final Charset UTF8            = Charset.forName("UTF-8");
+    private static final ColumnType[] TYPES      = ColumnType.values();
+
+    private ColumnarFormat() {
+    }
+
+    /**
+     * Returns the kind a column of the given type is stored as when all of
+     * its values parse
+     */
+    public static int getKind(final ColumnType type) {
+        switch (type) {
+            case LONG:
+            case INT:
+            case DATE:
+                return KIND_LONG;
+            case DOUBLE:
+                return KIND_DOUBLE;
+            case BOOLEAN:
+                return KIND_BOOLEAN;
+            default:
+                return KIND_STRING;
+        }
+    }
+
+    /**
+     * The values of one column of a row group, nulls included. Longs hold
+     * LONG values and BOOLEAN values as 0/1.
+     */
+    public static final class ColumnValues
+    {
+        private int       kind;
+        private int       count;
+        private long[]    longs;
+        private double[]  doubles;
+        private String[]  strings;
+        private boolean[] nulls;
+        private int       nullCount;
+
+        public ColumnValues(final int kind, final int capacity) {
+            this.kind = kind;
+            this.nulls = new boolean[capacity];
+            allocate(kind, capacity);
+        }
+
+        private void allocate(final int kind, final int capacity) {
+            if (kind == KIND_DOUBLE) {
+                doubles = new double[capacity];
+            }
+            else if (kind == KIND_STRING) {
+                strings = new String[capacity];
+            }
+            else {
+                longs = new long[capacity];
+            }
+        }
+
+        public int getKind() {
+            return kind;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public int getNullCount() {
+            return nullCount;
+        }
+
+        public boolean isNull(final int index) {
+            return nulls[index];
+        }
+
+        public long getLong(final int index) {
+            return longs[index];
+        }
+
+        public double getDouble(final int index) {
+            return doubles[index];
+        }
+
+        public String getString(final int index) {
+            return strings[index];
+        }
+
+        public void addNull() {
+            nulls[count++] = true;
+            nullCount++;
+        }
+
+        public void addLong(final long value) {
+            longs[count++] = value;
+        }
+
+        public void addDouble(final double value) {
+            doubles[count++] = value;
+        }
+
+        public void addString(final String value) {
+            if (value == null) {
+                addNull();
+            }
+            else {
+                strings[count++] = value;
+            }
+        }
+
+        /**
+         * Turns the values into strings, dateFormat formats longs when not
+         * null
+         */
+        public void convertToStrings(final DateFormat dateFormat) {
+            if (kind == KIND_STRING) {
+                return;
+            }
+            final String[] converted = new String[nulls.length];
+            for (int i = 0; i < count; i++) {
+                if (!nulls[i]) {
+                    if (kind == KIND_DOUBLE) {
+                        converted[i] = Double.toString(doubles[i]);
+                    }
+                    else if (kind == KIND_BOOLEAN) {
+                        converted[i] = longs[i] != 0 ? "true" : "false";
+                    }
+                    else if (dateFormat != null) {
+                        converted[i] = dateFormat.format(new Date(longs[i]));
+                    }
+                    else {
+                        converted[i] = Long.toString(longs[i]);
+                    }
+                }
+            }
+            kind = KIND_STRING;
+            strings = converted;
+            longs = null;
+            doubles = null;
+        }
+
+        /**
+         * Empties the values for the next row group, stored as kind
+         */
+        public void clear(final int kind) {
+            Arrays.fill(nulls, 0, count, false);
+            count = 0;
+            nullCount = 0;
+            if (this.kind != kind) {
+                this.kind = kind;
+                longs = null;
+                doubles = null;
+                strings = null;
+                allocate(kind, nulls.length);
+            }
+            else if (strings != null) {
+                Arrays.fill(strings, null);
+            }
+        }
+    }
+
+    /**
+     * Footer entry of a chunk, its place in the file, how it is stored and the
+     * statistics of its non-null values
+     */
+    public static final class ChunkInfo
+    {
+        private long   offset;
+        private int    length;
+        private int    kind;
+        private int    codec;
+        private int    uncompressedLength;
+        private int    nullCount;
+        private int    statsKind;
+        private long   minLong;
+        private long   maxLong;
+        private double minDouble;
+        private double maxDouble;
+        private String minString;
+        private String maxString;
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public void setOffset(final long offset) {
+            this.offset = offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public int getKind() {
+            return kind;
+        }
+
+        public int getNullCount() {
+            return nullCount;
+        }
+
+        public int getStatsKind() {
+            return statsKind;
+        }
+
+        public long getMinLong() {
+            return minLong;
+        }
+
+        public long getMaxLong() {
+            return maxLong;
+        }
+
+        public double getMinDouble() {
+            return minDouble;
+        }
+
+        public double getMaxDouble() {
+            return maxDouble;
+        }
+
+        public String getMinString() {
+            return minString;
+        }
+
+        public String getMaxString() {
+            return maxString;
+        }
+
+        void write(final DataOutputStream output) throws IOException {
+            output.writeLong(offset);
+            output.writeInt(length);
+            output.writeByte(kind);
+            output.writeByte(codec);
+            output.writeInt(uncompressedLength);
+            output.writeInt(nullCount);
+            output.writeByte(statsKind);
+            if (statsKind == STATS_LONG) {
+                output.writeLong(minLong);
+                output.writeLong(maxLong);
+            }
+            else if (statsKind == STATS_DOUBLE) {
+                output.writeDouble(minDouble);
+                output.writeDouble(maxDouble);
+            }
+            else if (statsKind == STATS_STRING) {
+                writeString(output, minString);
+                writeString(output, maxString);
+            }
+        }
+
+        static ChunkInfo read(final DataInputStream input) throws IOException {
+            final ChunkInfo info = new ChunkInfo();
+            info.offset = input.readLong();
+            info.length = input.readInt();
+            info.kind = input.readUnsignedByte();
+            info.codec = input.readUnsignedByte();
+            info.uncompressedLength = input.readInt();
+            info.nullCount = input.readInt();
+            info.statsKind = input.readUnsignedByte();
+            if (info.statsKind == STATS_LONG) {
+                info.minLong = input.readLong();
+                info.maxLong = input.readLong();
+            }
+            else if (info.statsKind == STATS_DOUBLE) {
+                info.minDouble = input.readDouble();
+                info.maxDouble = input.readDouble();
+            }
+            else if (info.statsKind == STATS_STRING) {
+                info.minString = readString(input);
+                info.maxString = readString(input);
+            }
+            return info;
+        }
+    }
+
+    /**
+     * Footer entry of a row group
+     */
+    public static final class RowGroupInfo
+    {
+        private final int         rowCount;
+        private final ChunkInfo[] chunks;
+
+        public RowGroupInfo(final int rowCount, final ChunkInfo[] chunks) {
+            this.rowCount = rowCount;
+            this.chunks = chunks;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public ChunkInfo getChunk(final int column) {
+            return chunks[column];
+        }
+    }
+
+    public static void writeFooter(final DataOutputStream output, final DataRowMetadata metadata,
+            final List<RowGroupInfo> rowGroups) throws IOException {
+        output.writeInt(VERSION);
+        final int columnCount = metadata.getKeyCount();
+        output.writeInt(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            writeString(output, metadata.getKey(i));
+            output.writeByte(metadata.getColumnType(i).ordinal());
+            output.writeBoolean(metadata.isNullable(i));
+            writeString(output, metadata.getDateFormat(i));
+        }
+        output.writeInt(rowGroups.size());
+        for (final RowGroupInfo rowGroup : rowGroups) {
+            output.writeInt(rowGroup.rowCount);
+            for (final ChunkInfo chunk : rowGroup.chunks) {
+                chunk.write(output);
+            }
+        }
+    }
+
+    /**
+     * Reads the footer, returning its metadata and filling rowGroups
+     */
+    public static DataRowMetadata readFooter(final DataInputStream input, final List<RowGroupInfo> rowGroups)
+            throws IOException {
+        final int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported columnar version " + version);
+        }
+        final DataRowMetadata metadata = new DataRowMetadata();
+        final int columnCount = input.readInt();
+        for (int i = 0; i < columnCount; i++) {
+            final String key = readString(input);
+            final int type = input.readUnsignedByte();
+            if (type >= TYPES.length) {
+                throw new IOException("Unknown column type " + type + " for column " + key);
+            }
+            metadata.setColumnType(key, TYPES[type], input.readBoolean());
+            metadata.setDateFormat(key, readString(input));
+        }
+        final int rowGroupCount = input.readInt();
+        for (int group = 0; group < rowGroupCount; group++) {
+            final int rowCount = input.readInt();
+            final ChunkInfo[] chunks = new ChunkInfo[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                chunks[i] = ChunkInfo.read(input);
+            }
+            rowGroups.add(new RowGroupInfo(rowCount, chunks));
+        }
+        return metadata;
+    }
+
+    /**
+     * Encodes the values of a chunk, filling in everything but the offset of
+     * info, and returns the bytes to write
+     */
+    public static byte[] encode(final ColumnValues values, final ChunkInfo info) {
+        final ByteSink sink = new ByteSink(64);
+        final int count = values.count;
+        if (values.nullCount > 0) {
+            // alternating runs of non-null and null values
+            int runs = 0;
+            final ByteSink runSink = new ByteSink(16);
+            boolean isNull = false;
+            int run = 0;
+            for (int i = 0; i < count; i++) {
+                if (values.nulls[i] != isNull) {
+                    runSink.putVarLong(run);
+                    runs++;
+                    isNull = !isNull;
+                    run = 0;
+                }
+                run++;
+            }
+            runSink.putVarLong(run);
+            runs++;
+            sink.putVarLong(runs);
+            sink.put(runSink);
+        }
+
+        final int valueCount = count - values.nullCount;
+        info.kind = values.kind;
+        info.nullCount = values.nullCount;
+        info.statsKind = STATS_NONE;
+
+        if (values.kind == KIND_STRING) {
+            final String[] strings = new String[valueCount];
+            for (int i = 0, j = 0; i < count; i++) {
+                if (!values.nulls[i]) {
+                    strings[j++] = values.strings[i];
+                }
+            }
+            if (valueCount > 0) {
+                String min = strings[0];
+                String max = strings[0];
+                for (final String value : strings) {
+                    if (value.compareTo(min) < 0) {
+                        min = value;
+                    }
+                    else if (value.compareTo(max) > 0) {
+                        max = value;
+                    }
+                }
+                info.statsKind = STATS_STRING;
+                info.minString = min;
+                info.maxString = max;
+            }
+            encodeStrings(sink, strings);
+        }
+        else if (values.kind == KIND_DOUBLE) {
+            final long[] bits = new long[valueCount];
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0, j = 0; i < count; i++) {
+                if (!values.nulls[i]) {
+                    final double value = values.doubles[i];
+                    bits[j++] = Double.doubleToRawLongBits(value);
+                    if (value < min) {
+                        min = value;
+                    }
+                    if (value > max) {
+                        max = value;
+                    }
+                }
+            }
+            if (min <= max) {
+                // NaNs have no order, they are left out of the range
+                info.statsKind = STATS_DOUBLE;
+                info.minDouble = min;
+                info.maxDouble = max;
+            }
+            encodeDoubles(sink, bits);
+        }
+        else {
+            final long[] longs = new long[valueCount];
+            for (int i = 0, j = 0; i < count; i++) {
+                if (!values.nulls[i]) {
+                    longs[j++] = values.longs[i];
+                }
+            }
+            if (valueCount > 0) {
+                long min = longs[0];
+                long max = longs[0];
+                for (final long value : longs) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                info.statsKind = STATS_LONG;
+                info.minLong = min;
+                info.maxLong = max;
+            }
+            encodeLongs(sink, longs, true);
+        }
+
+        byte[] bytes = sink.toByteArray();
+        info.codec = CODEC_NONE;
+        info.uncompressedLength = bytes.length;
+        if (bytes.length >= MIN_DEFLATE_SIZE) {
+            final byte[] deflated = deflate(bytes);
+            if (deflated.length < bytes.length * 0.9) {
+                info.codec = CODEC_DEFLATE;
+                bytes = deflated;
+            }
+        }
+        info.length = bytes.length;
+        return bytes;
+    }
+
+    /**
+     * Decodes a chunk read from the file
+     */
+    public static ColumnValues decode(byte[] bytes, final ChunkInfo info, final int rowCount) throws IOException {
+        if (info.codec == CODEC_DEFLATE) {
+            bytes = inflate(bytes, info.uncompressedLength);
+        }
+        else if (info.codec != CODEC_NONE) {
+            throw new IOException("Unknown chunk codec " + info.codec);
+        }
+        final ByteSource source = new ByteSource(bytes);
+        final ColumnValues values = new ColumnValues(info.kind, rowCount);
+        if (info.nullCount > 0) {
+            final int runs = (int) source.getVarLong();
+            boolean isNull = false;
+            int position = 0;
+            for (int run = 0; run < runs; run++) {
+                final int length = (int) source.getVarLong();
+                if (isNull) {
+                    Arrays.fill(values.nulls, position, position + length, true);
+                }
+                position += length;
+                isNull = !isNull;
+            }
+            values.nullCount = info.nullCount;
+        }
+
+        final int valueCount = rowCount - info.nullCount;
+        values.count = rowCount;
+        if (info.kind == KIND_STRING) {
+            final String[] strings = decodeStrings(source, valueCount);
+            for (int i = 0, j = 0; i < rowCount; i++) {
+                if (!values.nulls[i]) {
+                    values.strings[i] = strings[j++];
+                }
+            }
+        }
+        else if (info.kind == KIND_DOUBLE) {
+            final long[] bits = decodeDoubles(source, valueCount);
+            for (int i = 0, j = 0; i < rowCount; i++) {
+                if (!values.nulls[i]) {
+                    values.doubles[i] = Double.longBitsToDouble(bits[j++]);
+                }
+            }
+        }
+        else {
+            final long[] longs = decodeLongs(source, valueCount);
+            if (info.nullCount == 0) {
+                System.arraycopy(longs, 0, values.longs, 0, valueCount);
+            }
+            else {
+                for (int i = 0, j = 0; i < rowCount; i++) {
+                    if (!values.nulls[i]) {
+                        values.longs[i] = longs[j++];
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Writes the smallest of the plain, delta, run length and, if allowed,
+     * dictionary encodings of the values
+     */
+    private static void encodeLongs(final ByteSink sink, final long[] values, final boolean allowDictionary) {
+        final int count = values.length;
+        final ByteSink plain = new ByteSink(count + 1);
+        plain.put(ENCODING_PLAIN);
+        for (final long value : values) {
+            plain.putVarLong(zigZag(value));
+        }
+        ByteSink best = plain;
+
+        final ByteSink delta = new ByteSink(count + 1);
+        delta.put(ENCODING_DELTA);
+        long previous = 0;
+        for (final long value : values) {
+            delta.putVarLong(zigZag(value - previous));
+            previous = value;
+        }
+        if (delta.size() < best.size()) {
+            best = delta;
+        }
+
+        final ByteSink rle = new ByteSink(16);
+        rle.put(ENCODING_RLE);
+        for (int i = 0; i < count;) {
+            int end = i + 1;
+            while (end < count && values[end] == values[i]) {
+                end++;
+            }
+            rle.putVarLong(zigZag(values[i]));
+            rle.putVarLong(end - i);
+            i = end;
+        }
+        if (rle.size() < best.size()) {
+            best = rle;
+        }
+
+        if (allowDictionary && best.size() > 16) {
+            final Map<Long, Integer> indexes = new HashMap<Long, Integer>();
+            final long[] dictionaryIndexes = new long[count];
+            long[] dictionary = new long[16];
+            for (int i = 0; i < count && indexes.size() <= MAX_DICTIONARY_SIZE; i++) {
+                Integer index = indexes.get(values[i]);
+                if (index == null) {
+                    index = indexes.size();
+                    indexes.put(values[i], index);
+                    if (index == dictionary.length) {
+                        dictionary = Arrays.copyOf(dictionary, index * 2);
+                    }
+                    dictionary[index] = values[i];
+                }
+                dictionaryIndexes[i] = index;
+            }
+            if (indexes.size() <= MAX_DICTIONARY_SIZE && indexes.size() < count / 2) {
+                final ByteSink encoded = new ByteSink(count / 2 + 16);
+                encoded.put(ENCODING_DICTIONARY);
+                encoded.putVarLong(indexes.size());
+                encodeLongs(encoded, Arrays.copyOf(dictionary, indexes.size()), false);
+                encodeLongs(encoded, dictionaryIndexes, false);
+                if (encoded.size() < best.size()) {
+                    best = encoded;
+                }
+            }
+        }
+        sink.put(best);
+    }
+
+    private static long[] decodeLongs(final ByteSource source, final int count) throws IOException {
+        final long[] values = new long[count];
+        final int encoding = source.get();
+        switch (encoding) {
+            case ENCODING_PLAIN:
+                for (int i = 0; i < count; i++) {
+                    values[i] = unZigZag(source.getVarLong());
+                }
+                break;
+            case ENCODING_DELTA:
+                long previous = 0;
+                for (int i = 0; i < count; i++) {
+                    previous += unZigZag(source.getVarLong());
+                    values[i] = previous;
+                }
+                break;
+            case ENCODING_RLE:
+                for (int i = 0; i < count;) {
+                    final long value = unZigZag(source.getVarLong());
+                    final int run = (int) source.getVarLong();
+                    Arrays.fill(values, i, i + run, value);
+                    i += run;
+                }
+                break;
+            case ENCODING_DICTIONARY:
+                final long[] dictionary = decodeLongs(source, (int) source.getVarLong());
+                final long[] indexes = decodeLongs(source, count);
+                for (int i = 0; i < count; i++) {
+                    values[i] = dictionary[(int) indexes[i]];
+                }
+                break;
+            default:
+                throw new IOException("Unknown encoding " + encoding);
+        }
+        return values;
+    }
+
+    private static void encodeDoubles(final ByteSink sink, final long[] bits) {
+        final Map<Long, Integer> indexes = new HashMap<Long, Integer>();
+        final long[] dictionaryIndexes = new long[bits.length];
+        for (int i = 0; i < bits.length && indexes.size() < bits.length / 2; i++) {
+            Integer index = indexes.get(bits[i]);
+            if (index == null) {
+                index = indexes.size();
+                indexes.put(bits[i], index);
+            }
+            dictionaryIndexes[i] = index;
+        }
+        if (bits.length > 0 && indexes.size() < bits.length / 2 && indexes.size() <= MAX_DICTIONARY_SIZE) {
+            sink.put(ENCODING_DICTIONARY);
+            final long[] dictionary = new long[indexes.size()];
+            for (final Map.Entry<Long, Integer> entry : indexes.entrySet()) {
+                dictionary[entry.getValue()] = entry.getKey();
+            }
+            sink.putVarLong(dictionary.length);
+            for (final long value : dictionary) {
+                sink.putLong(value);
+            }
+            encodeLongs(sink, dictionaryIndexes, false);
+            return;
+        }
+        sink.put(ENCODING_PLAIN);
+        for (final long value : bits) {
+            sink.putLong(value);
+        }
+    }
+
+    private static long[] decodeDoubles(final ByteSource source, final int count) throws IOException {
+        final int encoding = source.get();
+        final long[] bits = new long[count];
+        if (encoding == ENCODING_PLAIN) {
+            for (int i = 0; i < count; i++) {
+                bits[i] = source.getLong();
+            }
+        }
+        else if (encoding == ENCODING_DICTIONARY) {
+            final long[] dictionary = new long[(int) source.getVarLong()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = source.getLong();
+            }
+            final long[] indexes = decodeLongs(source, count);
+            for (int i = 0; i < count; i++) {
+                bits[i] = dictionary[(int) indexes[i]];
+            }
+        }
+        else {
+            throw new IOException("Unknown encoding " + encoding);
+        }
+        return bits;
+    }
+
+    private static void encodeStrings(final ByteSink sink, final String[] strings) {
+        final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        final long[] dictionaryIndexes = new long[strings.length];
+        for (int i = 0; i < strings.length && indexes.size() < strings.length / 2; i++) {
+            Integer index = indexes.get(strings[i]);
+            if (index == null) {
+                index = indexes.size();
+                indexes.put(strings[i], index);
+            }
+            dictionaryIndexes[i] = index;
+        }
+        if (strings.length > 0 && indexes.size() < strings.length / 2 && indexes.size() <= MAX_DICTIONARY_SIZE) {
+            sink.put(ENCODING_DICTIONARY);
+            final String[] dictionary = new String[indexes.size()];
+            for (final Map.Entry<String, Integer> entry : indexes.entrySet()) {
+                dictionary[entry.getValue()] = entry.getKey();
+            }
+            sink.putVarLong(dictionary.length);
+            for (final String value : dictionary) {
+                sink.putString(value);
+            }
+            encodeLongs(sink, dictionaryIndexes, false);
+            return;
+        }
+        sink.put(ENCODING_PLAIN);
+        for (final String value : strings) {
+            sink.putString(value);
+        }
+    }
+
+    private static String[] decodeStrings(final ByteSource source, final int count) throws IOException {
+        final int encoding = source.get();
+        final String[] strings = new String[count];
+        if (encoding == ENCODING_PLAIN) {
+            for (int i = 0; i < count; i++) {
+                strings[i] = source.getString();
+            }
+        }
+        else if (encoding == ENCODING_DICTIONARY) {
+            final String[] dictionary = new String[(int) source.getVarLong()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = source.getString();
+            }
+            final long[] indexes = decodeLongs(source, count);
+            for (int i = 0; i < count; i++) {
+                strings[i] = dictionary[(int) indexes[i]];
+            }
+        }
+        else {
+            throw new IOException("Unknown encoding " + encoding);
+        }
+        return strings;
+    }
+
+    private static byte[] deflate(final byte[] bytes) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            final ByteSink sink = new ByteSink(bytes.length / 2 + 64);
+            final byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                final int length = deflater.deflate(buffer);
+                sink.put(buffer, length);
+            }
+            return sink.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(final byte[] bytes, final int length) throws IOException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            final byte[] inflated = new byte[length];
+            int position = 0;
+            while (position < length) {
+                final int read = inflater.inflate(inflated, position, length - position);
+                if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Truncated chunk");
+                }
+                position += read;
+            }
+            return inflated;
+        }
+        catch (final DataFormatException e) {
+            throw new IOException(e);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(UTF8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Growable byte array with the primitives of the chunk encodings
+     */
+    private static final class ByteSink
+    {
+        private byte[] bytes;
+        private int    size;
+
+        ByteSink(final int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void ensureCapacity(final int count) {
+            if (size + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + count, bytes.length * 2));
+            }
+        }
+
+        void put(final int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void put(final byte[] data, final int length) {
+            ensureCapacity(length);
+            System.arraycopy(data, 0, bytes, size, length);
+            size += length;
+        }
+
+        void put(final ByteSink other) {
+            put(other.bytes, other.size);
+        }
+
+        void putVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7fL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void putLong(final long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void putString(final String value) {
+            final byte[] data = value.getBytes(UTF8);
+            putVarLong(data.length);
+            put(data, data.length);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    private static final class ByteSource
+    {
+        private final byte[] bytes;
+        private int          position;
+
+        ByteSource(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int get() throws IOException {
+            if (position >= bytes.length) {
+                throw new IOException("Truncated chunk");
+            }
+            return bytes[position++] & 0xff;
+        }
+
+        long getVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = get();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        long getLong() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | get();
+            }
+            return value;
+        }
+
+        String getString() throws IOException {
+            final int length = (int) getVarLong();
+            if (position + length > bytes.length) {
+                throw new IOException("Truncated chunk");
+            }
+            final String value = new String(bytes, position, length, UTF8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -30,6 +30,10 @@ public class DataRow implements Iterable<String>, Serializable
         this.metadata = new DataRowMetadata();
     }
 
+    protected DataRow(final DataRowMetadata metadata) {
+        this.metadata = metadata;
+    }
+
     public DataRow(final DataRow dataRow) throws DataRowException {
         if (metadata.equals(dataRow.metadata)) {
             this.values = dataRow.values;
@@ -51,6 +55,18 @@ public class DataRow implements Iterable<String>, Serializable
         }
     }
 
+    public DataRowMetadata getMetadata() {
+        return metadata;
+    }
+
+    public int getValueCount() {
+        return values.size();
+    }
+
+    protected final List<String> getValues() {
+        return values;
+    }
+
     public Set<String> getKeySet() {
         return metadata.getKeySet();
     }
@@ -66,6 +82,10 @@ public class DataRow implements Iterable<String>, Serializable
         return null;
     }
 
+    public String getValueAsString(final ColumnHandle column) {
+        return getValueAsString(column.indexIn(metadata));
+    }
+
     public String getValueAsString(final String key) {
         final int index = metadata.getIndexOf(key);
         if (index != -1) {
@@ -76,12 +96,16 @@ public class DataRow implements Iterable<String>, Serializable
 
     public long getValueAsLong(final int index) {
         final String value = getValueAsString(index);
-        if (!isNull(value)) {
+        if (!isNullValue(value)) {
             return Long.parseLong(value);
         }
         return 0L;
     }
 
+    public long getValueAsLong(final ColumnHandle column) {
+        return getValueAsLong(column.indexIn(metadata));
+    }
+
     public long getValueAsLong(final String key) {
         final int index = metadata.getIndexOf(key);
         return getValueAsLong(index);
@@ -89,12 +113,16 @@ public class DataRow implements Iterable<String>, Serializable
 
     public int getValueAsInt(final int index) {
         final String value = getValueAsString(index);
-        if (!isNull(value)) {
+        if (!isNullValue(value)) {
             return Integer.parseInt(value);
         }
         return 0;
     }
 
+    public int getValueAsInt(final ColumnHandle column) {
+        return getValueAsInt(column.indexIn(metadata));
+    }
+
     public int getValueAsInt(final String key) {
         final int index = metadata.getIndexOf(key);
         return getValueAsInt(index);
@@ -102,12 +130,16 @@ public class DataRow implements Iterable<String>, Serializable
 
     public double getValueAsDouble(final int index) {
         final String value = getValueAsString(index);
-        if (!isNull(value)) {
+        if (!isNullValue(value)) {
             return Double.parseDouble(value);
         }
         return 0.0;
     }
 
+    public double getValueAsDouble(final ColumnHandle column) {
+        return getValueAsDouble(column.indexIn(metadata));
+    }
+
     public double getValueAsDouble(final String key) {
         final int index = metadata.getIndexOf(key);
         return getValueAsDouble(index);
@@ -115,12 +147,16 @@ public class DataRow implements Iterable<String>, Serializable
 
     public boolean getValueAsBoolean(final int index) {
         final String value = getValueAsString(index);
-        if (!isNull(value)) {
+        if (!isNullValue(value)) {
             return Boolean.parseBoolean(value);
         }
         return false;
     }
 
+    public boolean getValueAsBoolean(final ColumnHandle column) {
+        return getValueAsBoolean(column.indexIn(metadata));
+    }
+
     public boolean getValueAsBoolean(final String key) {
         final int index = metadata.getIndexOf(key);
         return getValueAsBoolean(index);
@@ -138,11 +174,42 @@ public class DataRow implements Iterable<String>, Serializable
         }
     }
 
+    public Date getValueAsDate(final ColumnHandle column, final String format) throws DataRowException {
+        return getValueAsDate(column.indexIn(metadata), format);
+    }
+
     public Date getValueAsDate(final String key, final String format) throws DataRowException {
         final int index = metadata.getIndexOf(key);
         return getValueAsDate(index, format);
     }
 
+    /**
+     * Empties the row and binds it to the given metadata so it can be refilled
+     * with addValue, the backing storage is kept for reuse.
+     */
+    public void clear(final DataRowMetadata metadata) {
+        this.metadata = metadata;
+        values.clear();
+    }
+
+    /**
+     * Appends the value of the next column of a cleared row
+     */
+    public void addValue(final String value) {
+        values.add(value);
+    }
+
+    /**
+     * Refills this row with the metadata and values of another row
+     */
+    public void copyFrom(final DataRow dataRow) {
+        clear(dataRow.getMetadata());
+        final int count = dataRow.getValueCount();
+        for (int i = 0; i < count; i++) {
+            addValue(dataRow.getValueAsString(i));
+        }
+    }
+
     public void addOrReplaceStringValue(final String key, final String value) {
         final int index = metadata.addKey(key);
         if (index < values.size()) {
@@ -174,7 +241,22 @@ public class DataRow implements Iterable<String>, Serializable
         addOrReplaceStringValue(key, sdf.format(date));
     }
 
-    private boolean isNull(final String value) {
+    /**
+     * Returns true if the value at index is missing, empty or "null"
+     */
+    public boolean isNull(final int index) {
+        return isNullValue(getValueAsString(index));
+    }
+
+    public boolean isNull(final ColumnHandle column) {
+        return isNull(column.indexIn(metadata));
+    }
+
+    public boolean isNull(final String key) {
+        return isNull(metadata.getIndexOf(key));
+    }
+
+    private static boolean isNullValue(final String value) {
         return value == null || value.length() == 0 || value.equals("null");
     }
 
@@ -192,7 +274,7 @@ public class DataRow implements Iterable<String>, Serializable
         Map<String, String> map = new HashMap<String, String>();
         for (String key : metadata) {
             int index = metadata.getIndexOf(key);
-            map.put(key, values.get(index));
+            map.put(key, getValueAsString(index));
         }
         ObjectWriter writer = SerializationUtils.getObjectPrettyPrinter();
         try {
@@ -13,47 +13,152 @@ import java.util.Set;
 
 /**
  * 
+ * Column names of a row mapped to their index, optionally with the type,
+ * nullability and date format of each column. Columns are STRING and nullable
+ * unless declared otherwise, see TypedDataRow for how typed columns are read.
  * 
  */
 public class DataRowMetadata implements Iterable<String>, Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
     private Map<String, Integer> map = new LinkedHashMap<String, Integer>();
     private List<String> keys = new ArrayList<String>();
 
+    public static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd";
+
+    private List<ColumnType> types = new ArrayList<ColumnType>();
+    private List<Boolean> nullable = new ArrayList<Boolean>();
+    private List<String> dateFormats = new ArrayList<String>();
+
     public DataRowMetadata() {
     }
 
+    /**
+     * Every entry of the header is a column, when a name is repeated the last
+     * one is found by getIndexOf
+     */
     public DataRowMetadata(final String header[]) {
         int index = 0;
         for (final String key : header) {
             map.put(key, index);
             keys.add(key);
+            types.add(ColumnType.STRING);
+            nullable.add(Boolean.TRUE);
+            dateFormats.add(DEFAULT_DATE_FORMAT);
             index++;
         }
     }
 
-    public int getIndexOf(final String key) {
-        if (map.containsKey(key)) {
-            return map.get(key);
-        }
-        else {
-            return -1;
+    public DataRowMetadata(final String header[], final ColumnType[] columnTypes) {
+        this(header);
+        for (int i = 0; i < columnTypes.length; i++) {
+            types.set(i, columnTypes[i]);
         }
     }
 
+    public int getIndexOf(final String key) {
+        final Integer index = map.get(key);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Resolves a column to a handle for repeated lookups, see ColumnHandle
+     */
+    public ColumnHandle handle(final String key) {
+        return new ColumnHandle(this, key, getIndexOf(key));
+    }
+
+    public String getKey(final int index) {
+        return keys.get(index);
+    }
+
     public int addKey(final String key) {
-        if (map.containsKey(key)) {
-            return map.get(key);
+        final Integer existing = map.get(key);
+        if (existing != null) {
+            return existing;
         }
         else {
             keys.add(key);
+            types.add(ColumnType.STRING);
+            nullable.add(Boolean.TRUE);
+            dateFormats.add(DEFAULT_DATE_FORMAT);
             final int index = keys.size() - 1;
             map.put(key, index);
             return index;
         }
     }
 
+    public void setColumnType(final String key, final ColumnType type) {
+        setColumnType(key, type, true);
+    }
+
+    /**
+     * Declares the type of a column, adding the column if needed
+     */
+    public void setColumnType(final String key, final ColumnType type, final boolean isNullable) {
+        final int index = addKey(key);
+        types.set(index, type);
+        nullable.set(index, isNullable);
+    }
+
+    /**
+     * Sets the SimpleDateFormat pattern of a DATE column
+     */
+    public void setDateFormat(final String key, final String format) {
+        dateFormats.set(addKey(key), format);
+    }
+
+    /**
+     * Returns the metadata of the given columns, in that order, with their
+     * types, nullability and date formats. Repeated names stay separate
+     * columns, as in the header constructor.
+     */
+    public DataRowMetadata project(final int[] indexes) {
+        final DataRowMetadata projected = new DataRowMetadata();
+        for (final int index : indexes) {
+            final String key = keys.get(index);
+            projected.map.put(key, projected.keys.size());
+            projected.keys.add(key);
+            projected.types.add(types.get(index));
+            projected.nullable.add(nullable.get(index));
+            projected.dateFormats.add(dateFormats.get(index));
+        }
+        return projected;
+    }
+
+    public ColumnType getColumnType(final int index) {
+        return types.get(index);
+    }
+
+    public ColumnType getColumnType(final String key) {
+        final int index = getIndexOf(key);
+        return index == -1 ? null : types.get(index);
+    }
+
+    public ColumnType[] getColumnTypes() {
+        return types.toArray(new ColumnType[types.size()]);
+    }
+
+    public boolean isNullable(final int index) {
+        return nullable.get(index);
+    }
+
+    public String getDateFormat(final int index) {
+        return dateFormats.get(index);
+    }
+
+    /**
+     * Returns true if any column has a type other than STRING
+     */
+    public boolean isTyped() {
+        for (final ColumnType type : types) {
+            if (type != ColumnType.STRING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public Set<String> getKeySet() {
         return map.keySet();
     }
@@ -80,6 +185,7 @@ public class DataRowMetadata implements Iterable<String>, Serializable {
         int result = 1;
         result = prime * result + ((keys == null) ? 0 : keys.hashCode());
         result = prime * result + ((map == null) ? 0 : map.hashCode());
+        result = prime * result + ((types == null) ? 0 : types.hashCode());
         return result;
     }
 
@@ -104,6 +210,24 @@ public class DataRowMetadata implements Iterable<String>, Serializable {
         }
         else if (!map.equals(other.map))
             return false;
+        if (types == null) {
+            if (other.types != null)
+                return false;
+        }
+        else if (!types.equals(other.types))
+            return false;
+        if (nullable == null) {
+            if (other.nullable != null)
+                return false;
+        }
+        else if (!nullable.equals(other.nullable))
+            return false;
+        if (dateFormats == null) {
+            if (other.dateFormats != null)
+                return false;
+        }
+        else if (!dateFormats.equals(other.dateFormats))
+            return false;
         return true;
     }
 }
@@ -0,0 +1,449 @@
+/**
+ *
+ */
+package com.kitschframework.common.io;
+
+import java.util.Arrays;
+
+/**
+ * LazyDataRow
+ *
+ * Base class of rows that keep the raw line they were parsed from plus the
+ * offsets of each field. A field is only decoded to a String when it is read as
+ * a String, the numeric and boolean getters parse straight from the raw
+ * characters. A row can expose only some of the line's fields, when the parser
+ * projects the columns (see TabDelimitedDataRowParser.setProjection).
+ *
+ * Modifying the row, or serializing it, copies every field into regular
+ * DataRow storage first ("detaching" it from the raw line). A parser can
+ * refill a detached or attached row in place, see getBounds().
+ *
+ */
+public abstract class LazyDataRow extends DataRow
+{
+    private static final long     serialVersionUID = 1L;
+
+    private static final double[] POWERS_OF_TEN    = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /**
+     * Position of the delimiter before each field, field i spans
+     * (bounds[i], bounds[i + 1])
+     */
+    private transient int[]       bounds;
+
+    private transient int         fieldCount;
+
+    /**
+     * Raw field of each column when the row exposes a projection of the line,
+     * null when every field is a column
+     */
+    private transient int[]       fields;
+
+    private transient String[]    cache;
+
+    private transient boolean     attached;
+
+    protected LazyDataRow(final DataRowMetadata metadata) {
+        super(metadata);
+        this.bounds = new int[0];
+    }
+
+    protected LazyDataRow(final DataRowMetadata metadata, final int[] bounds, final int fieldCount) {
+        this(metadata, bounds, fieldCount, null);
+    }
+
+    /**
+     * fields maps each column of metadata to a field of the line, ascending,
+     * fieldCount is the number of fields of the line
+     */
+    protected LazyDataRow(final DataRowMetadata metadata, final int[] bounds, final int fieldCount,
+            final int[] fields) {
+        super(metadata);
+        this.bounds = bounds;
+        this.fields = fields;
+        this.fieldCount = countColumns(fieldCount, fields);
+        this.attached = true;
+    }
+
+    /**
+     * Returns the character at a raw position, bytes are returned unsigned
+     */
+    protected abstract int charAt(int position);
+
+    /**
+     * Decodes the raw characters between start and end
+     */
+    protected abstract String decode(int start, int end);
+
+    /**
+     * Called when the row is detached, subclasses drop references to shared
+     * buffers here
+     */
+    protected void release() {
+    }
+
+    /**
+     * Returns the offset array of this row, grown to at least length, for a
+     * parser to scan the next line into before refilling the row
+     */
+    public final int[] getBounds(final int length) {
+        if (bounds == null || bounds.length < length) {
+            bounds = new int[length];
+        }
+        return bounds;
+    }
+
+    /**
+     * Attaches the row to the line whose offsets were written into getBounds()
+     */
+    protected final void attach(final DataRowMetadata metadata, final int fieldCount) {
+        attach(metadata, fieldCount, null);
+    }
+
+    /**
+     * Attaches the row to a projection of the line, see the constructor
+     */
+    protected final void attach(final DataRowMetadata metadata, final int fieldCount, final int[] fields) {
+        super.clear(metadata);
+        this.fields = fields;
+        this.fieldCount = countColumns(fieldCount, fields);
+        this.attached = true;
+        if (cache != null) {
+            if (cache.length < fieldCount) {
+                cache = null;
+            }
+            else {
+                Arrays.fill(cache, 0, fieldCount, null);
+            }
+        }
+    }
+
+    /**
+     * Projected columns past the last field of the line are missing, the same
+     * as trailing fields dropped by the parser
+     */
+    private static int countColumns(final int fieldCount, final int[] fields) {
+        if (fields == null) {
+            return fieldCount;
+        }
+        int count = 0;
+        while (count < fields.length && fields[count] < fieldCount) {
+            count++;
+        }
+        return count;
+    }
+
+    public final boolean isAttached() {
+        return attached;
+    }
+
+    protected final int getFieldStart(final int index) {
+        return bounds[fields == null ? index : fields[index]] + 1;
+    }
+
+    protected final int getFieldEnd(final int index) {
+        return bounds[(fields == null ? index : fields[index]) + 1];
+    }
+
+    @Override
+    public void clear(final DataRowMetadata metadata) {
+        super.clear(metadata);
+        if (attached) {
+            attached = false;
+            release();
+        }
+    }
+
+    @Override
+    public int getValueCount() {
+        return attached ? fieldCount : super.getValueCount();
+    }
+
+    @Override
+    public String getValueAsString(final int index) {
+        if (!attached) {
+            return super.getValueAsString(index);
+        }
+        if (index < 0 || index >= fieldCount) {
+            return null;
+        }
+        if (cache == null) {
+            cache = new String[Math.max(fieldCount, getMetadata().getKeyCount())];
+        }
+        String value = cache[index];
+        if (value == null) {
+            value = decode(getFieldStart(index), getFieldEnd(index));
+            cache[index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public boolean isNull(final int index) {
+        return attached ? isNullField(index) : super.isNull(index);
+    }
+
+    @Override
+    public long getValueAsLong(final int index) {
+        if (!attached) {
+            return super.getValueAsLong(index);
+        }
+        if (isNullField(index)) {
+            return 0L;
+        }
+        return parseLong(index, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public int getValueAsInt(final int index) {
+        if (!attached) {
+            return super.getValueAsInt(index);
+        }
+        if (isNullField(index)) {
+            return 0;
+        }
+        return (int) parseLong(index, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public double getValueAsDouble(final int index) {
+        if (!attached) {
+            return super.getValueAsDouble(index);
+        }
+        if (isNullField(index)) {
+            return 0.0;
+        }
+        return parseDouble(index);
+    }
+
+    @Override
+    public boolean getValueAsBoolean(final int index) {
+        if (!attached) {
+            return super.getValueAsBoolean(index);
+        }
+        if (isNullField(index)) {
+            return false;
+        }
+        final int start = getFieldStart(index);
+        return getFieldEnd(index) - start == 4 && (charAt(start) | 0x20) == 't' && (charAt(start + 1) | 0x20) == 'r'
+                && (charAt(start + 2) | 0x20) == 'u' && (charAt(start + 3) | 0x20) == 'e';
+    }
+
+    @Override
+    public void addOrReplaceStringValue(final String key, final String value) {
+        detach();
+        super.addOrReplaceStringValue(key, value);
+    }
+
+    /**
+     * Compares a field with value without decoding it
+     */
+    public boolean valueEquals(final int index, final String value) {
+        if (!attached) {
+            return value.equals(super.getValueAsString(index));
+        }
+        if (index < 0 || index >= fieldCount) {
+            return false;
+        }
+        final int end = getFieldEnd(index);
+        final int matched = matchPrefix(index, value);
+        if (matched < 0) {
+            return value.equals(getValueAsString(index));
+        }
+        return matched == value.length() && getFieldStart(index) + matched == end;
+    }
+
+    /**
+     * Checks whether a field starts with prefix without decoding it
+     */
+    public boolean valueStartsWith(final int index, final String prefix) {
+        if (!attached) {
+            final String value = super.getValueAsString(index);
+            return value != null && value.startsWith(prefix);
+        }
+        if (index < 0 || index >= fieldCount) {
+            return false;
+        }
+        final int matched = matchPrefix(index, prefix);
+        if (matched < 0) {
+            return getValueAsString(index).startsWith(prefix);
+        }
+        return matched == prefix.length();
+    }
+
+    /**
+     * Returns the String.hashCode of a field without decoding it, or of the
+     * decoded value if the field is not plain ASCII
+     */
+    public int valueHashCode(final int index) {
+        if (!attached || index < 0 || index >= fieldCount) {
+            final String value = getValueAsString(index);
+            return value == null ? 0 : value.hashCode();
+        }
+        final int end = getFieldEnd(index);
+        int hash = 0;
+        for (int position = getFieldStart(index); position < end; position++) {
+            final int c = charAt(position);
+            if (c >= 0x80) {
+                return getValueAsString(index).hashCode();
+            }
+            hash = 31 * hash + c;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns how many leading characters of value match the field, or -1 if
+     * value has a non-ASCII character before a mismatch, raw bytes can't be
+     * compared with those
+     */
+    private int matchPrefix(final int index, final String value) {
+        final int end = getFieldEnd(index);
+        int position = getFieldStart(index);
+        for (int i = 0; i < value.length(); i++, position++) {
+            final char c = value.charAt(i);
+            if (c >= 0x80) {
+                return -1;
+            }
+            if (position == end || charAt(position) != c) {
+                return i;
+            }
+        }
+        return value.length();
+    }
+
+    /**
+     * Same rules as DataRow: missing, empty and "null" fields are null
+     */
+    private boolean isNullField(final int index) {
+        if (index < 0 || index >= fieldCount) {
+            return true;
+        }
+        final int start = getFieldStart(index);
+        final int length = getFieldEnd(index) - start;
+        return length == 0
+                || (length == 4 && charAt(start) == 'n' && charAt(start + 1) == 'u' && charAt(start + 2) == 'l' && charAt(start + 3) == 'l');
+    }
+
+    /**
+     * Parses a decimal integer with the same rules as Long.parseLong,
+     * accumulating negatively so the minimum value does not overflow
+     */
+    private long parseLong(final int index, final long min, final long max) {
+        final int end = getFieldEnd(index);
+        int position = getFieldStart(index);
+
+        final boolean negative = charAt(position) == '-';
+        if (negative || charAt(position) == '+') {
+            position++;
+        }
+        final long limit = negative ? min : -max;
+        if (position == end) {
+            throw invalidNumber(index);
+        }
+
+        long result = 0;
+        for (; position < end; position++) {
+            final int digit = charAt(position) - '0';
+            if (digit < 0 || digit > 9 || result < (limit + digit) / 10) {
+                throw invalidNumber(index);
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses plain decimal numbers with at most 15 digits and a small exponent
+     * exactly (both the digits and the power of ten are exact doubles, so one
+     * multiplication or division rounds correctly). Anything else goes through
+     * Double.parseDouble.
+     */
+    private double parseDouble(final int index) {
+        final int end = getFieldEnd(index);
+        int position = getFieldStart(index);
+
+        final boolean negative = charAt(position) == '-';
+        if (negative || charAt(position) == '+') {
+            position++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; position < end; position++) {
+            final int c = charAt(position);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenPoint) {
+                    exponent--;
+                }
+            }
+            else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            }
+            else {
+                break;
+            }
+        }
+
+        if (position < end && seenDigit && (charAt(position) | 0x20) == 'e') {
+            position++;
+            final boolean negativeExponent = position < end && charAt(position) == '-';
+            if (position < end && (negativeExponent || charAt(position) == '+')) {
+                position++;
+            }
+            int value = 0;
+            final int exponentStart = position;
+            for (; position < end && charAt(position) >= '0' && charAt(position) <= '9' && value < 1000; position++) {
+                value = value * 10 + (charAt(position) - '0');
+            }
+            if (position == exponentStart) {
+                return slowParseDouble(index);
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+
+        if (position != end || !seenDigit || digits > 15 || exponent < -22 || exponent > 22) {
+            return slowParseDouble(index);
+        }
+        final double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    private double slowParseDouble(final int index) {
+        return Double.parseDouble(getValueAsString(index));
+    }
+
+    private NumberFormatException invalidNumber(final int index) {
+        return new NumberFormatException("For input string: \"" + getValueAsString(index) + "\"");
+    }
+
+    /**
+     * Copies every field into regular DataRow storage and releases the raw line
+     */
+    protected final void detach() {
+        if (attached) {
+            for (int i = 0; i < fieldCount; i++) {
+                getValues().add(getValueAsString(i));
+            }
+            attached = false;
+            release();
+        }
+    }
+
+    /**
+     * Serializes the row as a regular DataRow
+     */
+    protected Object writeReplace() {
+        detach();
+        return this;
+    }
+}
@@ -0,0 +1,351 @@
+/**
+ *
+ */
+package com.kitschframework.common.io;
+
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TypedDataRow
+ *
+ * DataRow whose typed columns (see DataRowMetadata.setColumnType) are parsed
+ * once, when the row is bound to a source row, into primitive storage. The
+ * getter matching a column's type reads that storage directly, other getters
+ * convert from the value's string form using the same rules as DataRow.
+ *
+ * Longs, ints, booleans (0/1), dates (epoch milliseconds) and the raw bits of
+ * doubles share one long array, STRING columns keep the source's String. A
+ * typed column's String form is regenerated from the parsed value, so it is
+ * canonical rather than the original text (e.g. "1.50" reads back as "1.5").
+ *
+ * Modifying the row, or serializing it, turns it into a regular DataRow.
+ *
+ */
+public class TypedDataRow extends DataRow
+{
+    private static final long                                  serialVersionUID = 1L;
+
+    private static final ThreadLocal<Map<String, SimpleDateFormat>> DATE_FORMATS    = new ThreadLocal<Map<String, SimpleDateFormat>>();
+
+    private final DataRowMetadata                              schema;
+
+    private transient long[]                                   values;
+    private transient String[]                                 strings;
+    private transient long[]                                   nulls;
+    private transient boolean                                  bound;
+
+    public TypedDataRow(final DataRowMetadata schema) {
+        super(schema);
+        this.schema = schema;
+        final int count = schema.getKeyCount();
+        this.values = new long[count];
+        this.strings = new String[count];
+        this.nulls = new long[(count + 63) >>> 6];
+    }
+
+    /**
+     * Returns, for each column of schema, its index in source, or null if the
+     * two have the same layout
+     */
+    public static int[] mapColumns(final DataRowMetadata schema, final DataRowMetadata source) {
+        if (schema == source) {
+            return null;
+        }
+        final int[] columnMap = new int[schema.getKeyCount()];
+        boolean identity = source.getKeyCount() >= columnMap.length;
+        for (int i = 0; i < columnMap.length; i++) {
+            columnMap[i] = source.getIndexOf(schema.getKey(i));
+            identity &= columnMap[i] == i;
+        }
+        return identity ? null : columnMap;
+    }
+
+    public void bind(final DataRow source) throws DataRowException {
+        bind(source, mapColumns(schema, source.getMetadata()));
+    }
+
+    /**
+     * Parses the values of source into this row, columnMap is the result of
+     * mapColumns for the two metadata. Throws a DataRowException naming the
+     * column if a value does not match its column's type or a non-nullable
+     * column is null.
+     */
+    public void bind(final DataRow source, final int[] columnMap) throws DataRowException {
+        super.clear(schema);
+        Arrays.fill(nulls, 0L);
+        Arrays.fill(strings, null);
+        bound = true;
+
+        for (int column = 0; column < values.length; column++) {
+            final int index = columnMap == null ? column : columnMap[column];
+            final ColumnType type = schema.getColumnType(column);
+            if (source.isNull(index)) {
+                if (!schema.isNullable(column)) {
+                    throw new DataRowException("Column " + schema.getKey(column) + " is not nullable");
+                }
+                if (type == ColumnType.STRING) {
+                    strings[column] = source.getValueAsString(index);
+                }
+                else {
+                    setNullBit(column);
+                }
+                continue;
+            }
+
+            try {
+                switch (type) {
+                    case LONG:
+                        values[column] = source.getValueAsLong(index);
+                        break;
+                    case INT:
+                        values[column] = source.getValueAsInt(index);
+                        break;
+                    case DOUBLE:
+                        values[column] = Double.doubleToRawLongBits(source.getValueAsDouble(index));
+                        break;
+                    case BOOLEAN:
+                        values[column] = parseBoolean(source.getValueAsString(index)) ? 1L : 0L;
+                        break;
+                    case DATE:
+                        values[column] = parseDate(source.getValueAsString(index), schema.getDateFormat(column));
+                        break;
+                    default:
+                        strings[column] = source.getValueAsString(index);
+                }
+            }
+            catch (final NumberFormatException e) {
+                throw invalidValue(source, index, column, e);
+            }
+            catch (final ParseException e) {
+                throw invalidValue(source, index, column, e);
+            }
+        }
+    }
+
+    /**
+     * Starts filling the row with values that are already decoded, such as
+     * those of a binary file, instead of binding a source row. Every column
+     * must then be set with the fill method matching its type, LONG, INT and
+     * DATE columns take a long.
+     */
+    public void startFill() {
+        super.clear(schema);
+        Arrays.fill(nulls, 0L);
+        Arrays.fill(strings, null);
+        bound = true;
+    }
+
+    public void fillLong(final int index, final long value) {
+        values[index] = value;
+    }
+
+    public void fillDouble(final int index, final double value) {
+        values[index] = Double.doubleToRawLongBits(value);
+    }
+
+    public void fillBoolean(final int index, final boolean value) {
+        values[index] = value ? 1L : 0L;
+    }
+
+    public void fillString(final int index, final String value) {
+        strings[index] = value;
+    }
+
+    public void fillNull(final int index) {
+        if (schema.getColumnType(index) == ColumnType.STRING) {
+            strings[index] = null;
+        }
+        else {
+            setNullBit(index);
+        }
+    }
+
+    /**
+     * Marks a typed column null, its slot is zeroed so a reused row reads 0,
+     * 0.0 or false for it like DataRow does for a null value
+     */
+    private void setNullBit(final int index) {
+        nulls[index >>> 6] |= 1L << index;
+        values[index] = 0L;
+    }
+
+    private DataRowException invalidValue(final DataRow source, final int index, final int column, final Exception e) {
+        return new DataRowException("Invalid " + schema.getColumnType(column) + " value \""
+                + source.getValueAsString(index) + "\" for column " + schema.getKey(column), e);
+    }
+
+    private static boolean parseBoolean(final String value) {
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new NumberFormatException(value);
+    }
+
+    /**
+     * Parses a date, unlike DateFormat.parse trailing characters are an error
+     */
+    private static long parseDate(final String value, final String format) throws ParseException {
+        final ParsePosition position = new ParsePosition(0);
+        final Date date = getDateFormat(format).parse(value, position);
+        if (date == null || position.getIndex() != value.length()) {
+            throw new ParseException(value, Math.max(position.getErrorIndex(), position.getIndex()));
+        }
+        return date.getTime();
+    }
+
+    private static SimpleDateFormat getDateFormat(final String format) {
+        Map<String, SimpleDateFormat> formats = DATE_FORMATS.get();
+        if (formats == null) {
+            formats = new HashMap<String, SimpleDateFormat>();
+            DATE_FORMATS.set(formats);
+        }
+        SimpleDateFormat dateFormat = formats.get(format);
+        if (dateFormat == null) {
+            dateFormat = new SimpleDateFormat(format);
+            dateFormat.setLenient(false);
+            formats.put(format, dateFormat);
+        }
+        return dateFormat;
+    }
+
+    private ColumnType typeOf(final int index) {
+        if (!bound || index < 0 || index >= values.length) {
+            return null;
+        }
+        return schema.getColumnType(index);
+    }
+
+    private boolean isNullBit(final int index) {
+        return (nulls[index >>> 6] & (1L << index)) != 0;
+    }
+
+    @Override
+    public int getValueCount() {
+        return bound ? values.length : super.getValueCount();
+    }
+
+    @Override
+    public boolean isNull(final int index) {
+        final ColumnType type = typeOf(index);
+        if (type == null || type == ColumnType.STRING) {
+            return super.isNull(index);
+        }
+        return isNullBit(index);
+    }
+
+    @Override
+    public String getValueAsString(final int index) {
+        final ColumnType type = typeOf(index);
+        if (type == null) {
+            return super.getValueAsString(index);
+        }
+        if (type == ColumnType.STRING) {
+            return strings[index];
+        }
+        if (isNullBit(index)) {
+            return null;
+        }
+        switch (type) {
+            case LONG:
+            case INT:
+                return Long.toString(values[index]);
+            case DOUBLE:
+                return Double.toString(Double.longBitsToDouble(values[index]));
+            case BOOLEAN:
+                return Boolean.toString(values[index] != 0);
+            default:
+                return getDateFormat(schema.getDateFormat(index)).format(new Date(values[index]));
+        }
+    }
+
+    @Override
+    public long getValueAsLong(final int index) {
+        final ColumnType type = typeOf(index);
+        if (type == ColumnType.LONG || type == ColumnType.INT || type == ColumnType.DATE) {
+            return values[index];
+        }
+        return super.getValueAsLong(index);
+    }
+
+    @Override
+    public int getValueAsInt(final int index) {
+        if (typeOf(index) == ColumnType.INT) {
+            return (int) values[index];
+        }
+        return super.getValueAsInt(index);
+    }
+
+    @Override
+    public double getValueAsDouble(final int index) {
+        final ColumnType type = typeOf(index);
+        if (type == ColumnType.DOUBLE) {
+            return Double.longBitsToDouble(values[index]);
+        }
+        if (type == ColumnType.LONG || type == ColumnType.INT) {
+            return values[index];
+        }
+        return super.getValueAsDouble(index);
+    }
+
+    @Override
+    public boolean getValueAsBoolean(final int index) {
+        if (typeOf(index) == ColumnType.BOOLEAN) {
+            return values[index] != 0;
+        }
+        return super.getValueAsBoolean(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * For a DATE column the parsed date is returned and format is ignored
+     */
+    @Override
+    public Date getValueAsDate(final int index, final String format) throws DataRowException {
+        if (typeOf(index) == ColumnType.DATE) {
+            return isNullBit(index) ? null : new Date(values[index]);
+        }
+        return super.getValueAsDate(index, format);
+    }
+
+    @Override
+    public void clear(final DataRowMetadata metadata) {
+        super.clear(metadata);
+        bound = false;
+    }
+
+    @Override
+    public void addOrReplaceStringValue(final String key, final String value) {
+        detach();
+        super.addOrReplaceStringValue(key, value);
+    }
+
+    /**
+     * Copies every value into regular DataRow storage
+     */
+    private void detach() {
+        if (bound) {
+            for (int i = 0; i < values.length; i++) {
+                getValues().add(getValueAsString(i));
+            }
+            bound = false;
+        }
+    }
+
+    /**
+     * Serializes the row as a regular DataRow
+     */
+    protected Object writeReplace() {
+        detach();
+        return this;
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * 
+ */
+package com.kitschframework.common.io;
+
+/**
+ * Wraps a DataRowException where a checked exception can't be thrown, e.g.
+ * from inside a java.util.stream pipeline.
+ *
+ */
+public class UncheckedDataRowException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public UncheckedDataRowException(DataRowException cause) {
+		super(cause);
+	}
+
+	public UncheckedDataRowException(String message, DataRowException cause) {
+		super(message, cause);
+	}
+
+	@Override
+	public DataRowException getCause() {
+		return (DataRowException) super.getCause();
+	}
+}
@@ -0,0 +1,98 @@
+package com.kitschframework.common.io.batch;
+
+import com.kitschframework.common.io.DataRow;
+
+/**
+ * BatchDataRow
+ *
+ * DataRow view of one row of a DataRowBatch, getters read straight from the
+ * column vectors. Modifying the row copies its values out of the batch first.
+ *
+ */
+class BatchDataRow extends DataRow
+{
+    private static final long serialVersionUID = 1L;
+
+    private transient DataRowBatch batch;
+    private final int              row;
+
+    BatchDataRow(final DataRowBatch batch, final int row) {
+        super(batch.getMetadata());
+        this.batch = batch;
+        this.row = row;
+    }
+
+    @Override
+    public int getValueCount() {
+        return batch == null ? super.getValueCount() : batch.getColumnCount();
+    }
+
+    @Override
+    public String getValueAsString(final int index) {
+        if (batch == null) {
+            return super.getValueAsString(index);
+        }
+        final ColumnVector column = batch.getColumn(index);
+        return column == null ? null : column.getString(row);
+    }
+
+    @Override
+    public long getValueAsLong(final int index) {
+        if (batch == null) {
+            return super.getValueAsLong(index);
+        }
+        final ColumnVector column = batch.getColumn(index);
+        return column == null ? 0L : column.getLong(row);
+    }
+
+    @Override
+    public int getValueAsInt(final int index) {
+        if (batch == null) {
+            return super.getValueAsInt(index);
+        }
+        final ColumnVector column = batch.getColumn(index);
+        return column == null ? 0 : column.getInt(row);
+    }
+
+    @Override
+    public double getValueAsDouble(final int index) {
+        if (batch == null) {
+            return super.getValueAsDouble(index);
+        }
+        final ColumnVector column = batch.getColumn(index);
+        return column == null ? 0.0 : column.getDouble(row);
+    }
+
+    @Override
+    public boolean getValueAsBoolean(final int index) {
+        if (batch == null) {
+            return super.getValueAsBoolean(index);
+        }
+        final ColumnVector column = batch.getColumn(index);
+        return column == null ? false : column.getBoolean(row);
+    }
+
+    @Override
+    public void addOrReplaceStringValue(final String key, final String value) {
+        detach();
+        super.addOrReplaceStringValue(key, value);
+    }
+
+    private void detach() {
+        if (batch != null) {
+            for (int i = 0; i < batch.getColumnCount(); i++) {
+                getValues().add(getValueAsString(i));
+            }
+            batch = null;
+        }
+    }
+
+    /**
+     * Serializes the row as a regular DataRow, the values have to be copied
+     * before DataRow's fields are written
+     */
+    private Object writeReplace() {
+        detach();
+        return this;
+    }
+}
@@ -0,0 +1,59 @@
+package com.kitschframework.common.io.batch;
+
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.DataRow;
+
+/**
+ * BooleanColumnVector
+ *
+ * Column of boolean values
+ *
+ */
+public class BooleanColumnVector extends ColumnVector
+{
+    private final boolean[] values;
+
+    public BooleanColumnVector(final int capacity) {
+        super(capacity);
+        this.values = new boolean[capacity];
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.BOOLEAN;
+    }
+
+    @Override
+    protected void set(final int row, final String value) {
+        values[row] = Boolean.parseBoolean(value);
+    }
+
+    public void set(final int row, final boolean value) {
+        clearNull(row);
+        values[row] = value;
+    }
+
+    @Override
+    public void setValue(final int row, final DataRow dataRow, final int index) {
+        if (dataRow.isNull(index)) {
+            setNull(row);
+        }
+        else {
+            set(row, dataRow.getValueAsBoolean(index));
+        }
+    }
+
+    public boolean[] getValues() {
+        return values;
+    }
+
+    @Override
+    public String getString(final int row) {
+        return isNull(row) ? null : Boolean.toString(values[row]);
+    }
+
+    @Override
+    public boolean getBoolean(final int row) {
+        return isNull(row) ? false : values[row];
+    }
+}
@@ -0,0 +1,113 @@
+package com.kitschframework.common.io.batch;
+
+import java.util.Arrays;
+
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.DataRow;
+
+/**
+ * ColumnVector
+ *
+ * Values of a single column for every row of a DataRowBatch, plus a bitmap of
+ * which rows are null. Subclasses store the values in a primitive array of
+ * their type, the accessors for the other types convert from the string form
+ * using the same rules as DataRow.
+ *
+ */
+public abstract class ColumnVector
+{
+    private final long[] nulls;
+
+    protected ColumnVector(final int capacity) {
+        this.nulls = new long[(capacity + 63) >>> 6];
+    }
+
+    public abstract ColumnType getType();
+
+    /**
+     * Parses and stores the value of a row, the value is known not to be null
+     */
+    protected abstract void set(int row, String value);
+
+    public abstract String getString(int row);
+
+    public final boolean isNull(final int row) {
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public final void setNull(final int row) {
+        nulls[row >>> 6] |= 1L << row;
+    }
+
+    protected final void clearNull(final int row) {
+        nulls[row >>> 6] &= ~(1L << row);
+    }
+
+    /**
+     * Stores a value, null, empty and "null" values are recorded as null
+     */
+    public void setValue(final int row, final String value) {
+        if (isNullValue(value)) {
+            setNull(row);
+        }
+        else {
+            clearNull(row);
+            set(row, value);
+        }
+    }
+
+    /**
+     * Stores the value at index of a row, typed columns read it with the typed
+     * getter so rows that parse lazily or are already typed skip the string
+     * form. An index of -1 stores null.
+     */
+    public void setValue(final int row, final DataRow dataRow, final int index) {
+        setValue(row, dataRow.getValueAsString(index));
+    }
+
+    public void reset() {
+        Arrays.fill(nulls, 0L);
+    }
+
+    public long getLong(final int row) {
+        final String value = getString(row);
+        return isNullValue(value) ? 0L : Long.parseLong(value);
+    }
+
+    public int getInt(final int row) {
+        final String value = getString(row);
+        return isNullValue(value) ? 0 : Integer.parseInt(value);
+    }
+
+    public double getDouble(final int row) {
+        final String value = getString(row);
+        return isNullValue(value) ? 0.0 : Double.parseDouble(value);
+    }
+
+    public boolean getBoolean(final int row) {
+        final String value = getString(row);
+        return isNullValue(value) ? false : Boolean.parseBoolean(value);
+    }
+
+    protected static boolean isNullValue(final String value) {
+        return value == null || value.length() == 0 || value.equals("null");
+    }
+
+    /**
+     * Creates a column of the given type, DATE columns are stored as strings
+     */
+    public static ColumnVector create(final ColumnType type, final int capacity) {
+        switch (type) {
+            case LONG:
+                return new LongColumnVector(capacity);
+            case INT:
+                return new IntColumnVector(capacity);
+            case DOUBLE:
+                return new DoubleColumnVector(capacity);
+            case BOOLEAN:
+                return new BooleanColumnVector(capacity);
+            default:
+                return new StringColumnVector(capacity);
+        }
+    }
+}
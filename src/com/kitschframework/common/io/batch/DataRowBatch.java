@@ -0,0 +1,160 @@
+package com.kitschframework.common.io.batch;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.kitschframework.common.io.ColumnHandle;
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+
+/**
+ * DataRowBatch
+ *
+ * Columnar block of up to capacity rows sharing one DataRowMetadata. Each
+ * column is held in a ColumnVector of its type, so numeric columns are parsed
+ * once when the row is added and read back as primitives afterwards.
+ *
+ * getDataRow() returns a lightweight DataRow view of a row for code written
+ * against DataRow. A batch is meant to be refilled: reset() keeps the vectors
+ * and their arrays, views of the previous contents become invalid.
+ *
+ * Usage:
+ * <code>
+ * DataRowBatch batch = new DataRowBatch(metadata, types, 4096);
+ * while (reader.readBatch(batch) > 0) {
+ *     LongColumnVector price = (LongColumnVector) batch.getColumn("price");
+ *     for (int row = 0; row < batch.size(); row++) {
+ *         total += price.getLong(row);
+ *     }
+ * }
+ * </code>
+ */
+public class DataRowBatch implements Iterable<DataRow>
+{
+    private final DataRowMetadata metadata;
+    private final ColumnVector[]  columns;
+    private final int             capacity;
+    private int                   size;
+
+    /**
+     * Creates a batch with the column types declared in the metadata, columns
+     * without a declared type are stored as dictionary encoded strings
+     */
+    public DataRowBatch(final DataRowMetadata metadata, final int capacity) {
+        this(metadata, metadata.getColumnTypes(), capacity);
+    }
+
+    public DataRowBatch(final DataRowMetadata metadata, final ColumnType[] types, final int capacity) {
+        this.metadata = metadata;
+        this.capacity = capacity;
+        this.columns = new ColumnVector[types.length];
+        for (int i = 0; i < types.length; i++) {
+            columns[i] = ColumnVector.create(types[i], capacity);
+        }
+    }
+
+    public DataRowMetadata getMetadata() {
+        return metadata;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public ColumnVector getColumn(final int index) {
+        if (index < 0 || index >= columns.length) {
+            return null;
+        }
+        return columns[index];
+    }
+
+    public ColumnVector getColumn(final String key) {
+        return getColumn(metadata.getIndexOf(key));
+    }
+
+    public ColumnVector getColumn(final ColumnHandle column) {
+        return getColumn(column.indexIn(metadata));
+    }
+
+    /**
+     * Appends a row, values are parsed into the vector of their column.
+     * 
+     * @throws DataRowException
+     *             if the batch is full or a value does not match the column type
+     */
+    public void addDataRow(final DataRow dataRow) throws DataRowException {
+        if (size == capacity) {
+            throw new DataRowException("DataRowBatch is full");
+        }
+
+        final boolean sameMetadata = dataRow.getMetadata() == metadata;
+        int column = 0;
+        try {
+            for (; column < columns.length; column++) {
+                final int index = sameMetadata ? column : dataRow.getMetadata().getIndexOf(metadata.getKey(column));
+                columns[column].setValue(size, dataRow, index);
+            }
+        }
+        catch (final NumberFormatException e) {
+            throw new DataRowException("Invalid " + columns[column].getType() + " value for column "
+                    + metadata.getKey(column), e);
+        }
+        size++;
+    }
+
+    /**
+     * Returns a DataRow view of a row of the batch
+     */
+    public DataRow getDataRow(final int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return new BatchDataRow(this, row);
+    }
+
+    public void reset() {
+        for (final ColumnVector column : columns) {
+            column.reset();
+        }
+        size = 0;
+    }
+
+    @Override
+    public Iterator<DataRow> iterator() {
+        return new Iterator<DataRow>() {
+            private int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row < size;
+            }
+
+            @Override
+            public DataRow next() {
+                if (row >= size) {
+                    throw new NoSuchElementException();
+                }
+                return getDataRow(row++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
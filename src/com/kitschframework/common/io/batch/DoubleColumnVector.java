@@ -0,0 +1,59 @@
+package com.kitschframework.common.io.batch;
+
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.DataRow;
+
+/**
+ * DoubleColumnVector
+ *
+ * Column of double values
+ *
+ */
+public class DoubleColumnVector extends ColumnVector
+{
+    private final double[] values;
+
+    public DoubleColumnVector(final int capacity) {
+        super(capacity);
+        this.values = new double[capacity];
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.DOUBLE;
+    }
+
+    @Override
+    protected void set(final int row, final String value) {
+        values[row] = Double.parseDouble(value);
+    }
+
+    public void set(final int row, final double value) {
+        clearNull(row);
+        values[row] = value;
+    }
+
+    @Override
+    public void setValue(final int row, final DataRow dataRow, final int index) {
+        if (dataRow.isNull(index)) {
+            setNull(row);
+        }
+        else {
+            set(row, dataRow.getValueAsDouble(index));
+        }
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    @Override
+    public String getString(final int row) {
+        return isNull(row) ? null : Double.toString(values[row]);
+    }
+
+    @Override
+    public double getDouble(final int row) {
+        return isNull(row) ? 0.0 : values[row];
+    }
+}
@@ -0,0 +1,69 @@
+package com.kitschframework.common.io.batch;
+
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.DataRow;
+
+/**
+ * IntColumnVector
+ *
+ * Column of int values
+ *
+ */
+public class IntColumnVector extends ColumnVector
+{
+    private final int[] values;
+
+    public IntColumnVector(final int capacity) {
+        super(capacity);
+        this.values = new int[capacity];
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.INT;
+    }
+
+    @Override
+    protected void set(final int row, final String value) {
+        values[row] = Integer.parseInt(value);
+    }
+
+    public void set(final int row, final int value) {
+        clearNull(row);
+        values[row] = value;
+    }
+
+    @Override
+    public void setValue(final int row, final DataRow dataRow, final int index) {
+        if (dataRow.isNull(index)) {
+            setNull(row);
+        }
+        else {
+            set(row, dataRow.getValueAsInt(index));
+        }
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+
+    @Override
+    public String getString(final int row) {
+        return isNull(row) ? null : Integer.toString(values[row]);
+    }
+
+    @Override
+    public long getLong(final int row) {
+        return isNull(row) ? 0L : values[row];
+    }
+
+    @Override
+    public int getInt(final int row) {
+        return isNull(row) ? 0 : values[row];
+    }
+
+    @Override
+    public double getDouble(final int row) {
+        return isNull(row) ? 0.0 : values[row];
+    }
+}
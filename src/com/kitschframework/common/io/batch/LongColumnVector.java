@@ -0,0 +1,69 @@
+package com.kitschframework.common.io.batch;
+
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.DataRow;
+
+/**
+ * LongColumnVector
+ *
+ * Column of long values
+ *
+ */
+public class LongColumnVector extends ColumnVector
+{
+    private final long[] values;
+
+    public LongColumnVector(final int capacity) {
+        super(capacity);
+        this.values = new long[capacity];
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.LONG;
+    }
+
+    @Override
+    protected void set(final int row, final String value) {
+        values[row] = Long.parseLong(value);
+    }
+
+    public void set(final int row, final long value) {
+        clearNull(row);
+        values[row] = value;
+    }
+
+    @Override
+    public void setValue(final int row, final DataRow dataRow, final int index) {
+        if (dataRow.isNull(index)) {
+            setNull(row);
+        }
+        else {
+            set(row, dataRow.getValueAsLong(index));
+        }
+    }
+
+    public long[] getValues() {
+        return values;
+    }
+
+    @Override
+    public String getString(final int row) {
+        return isNull(row) ? null : Long.toString(values[row]);
+    }
+
+    @Override
+    public long getLong(final int row) {
+        return isNull(row) ? 0L : values[row];
+    }
+
+    @Override
+    public int getInt(final int row) {
+        return isNull(row) ? 0 : (int) values[row];
+    }
+
+    @Override
+    public double getDouble(final int row) {
+        return isNull(row) ? 0.0 : values[row];
+    }
+}
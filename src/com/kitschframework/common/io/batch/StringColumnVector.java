@@ -0,0 +1,87 @@
+package com.kitschframework.common.io.batch;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.kitschframework.common.io.ColumnType;
+
+/**
+ * StringColumnVector
+ *
+ * Dictionary encoded column of strings. Each distinct value is stored once per
+ * batch and rows hold an int code into the dictionary, repeated values share a
+ * single String instance.
+ *
+ * Only a Java null is treated as null, empty and "null" strings are kept as is
+ * so the column returns exactly what was read.
+ *
+ */
+public class StringColumnVector extends ColumnVector
+{
+    private final int[]                codes;
+    private final Map<String, Integer> lookup     = new HashMap<String, Integer>();
+    private String[]                   dictionary = new String[16];
+
+    public StringColumnVector(final int capacity) {
+        super(capacity);
+        this.codes = new int[capacity];
+    }
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.STRING;
+    }
+
+    @Override
+    public void setValue(final int row, final String value) {
+        if (value == null) {
+            setNull(row);
+        }
+        else {
+            clearNull(row);
+            set(row, value);
+        }
+    }
+
+    @Override
+    protected void set(final int row, final String value) {
+        Integer code = lookup.get(value);
+        if (code == null) {
+            code = lookup.size();
+            if (code == dictionary.length) {
+                dictionary = Arrays.copyOf(dictionary, code * 2);
+            }
+            dictionary[code] = value;
+            lookup.put(value, code);
+        }
+        codes[row] = code;
+    }
+
+    @Override
+    public String getString(final int row) {
+        return isNull(row) ? null : dictionary[codes[row]];
+    }
+
+    /**
+     * Returns the dictionary code of a row, only meaningful for non null rows
+     */
+    public int getCode(final int row) {
+        return codes[row];
+    }
+
+    public String getDictionaryValue(final int code) {
+        return dictionary[code];
+    }
+
+    public int getDictionarySize() {
+        return lookup.size();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        lookup.clear();
+        Arrays.fill(dictionary, null);
+    }
+}
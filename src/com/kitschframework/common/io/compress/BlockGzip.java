@@ -0,0 +1,103 @@
+package com.kitschframework.common.io.compress;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * BlockGzip
+ *
+ * Constants and helpers for the blocked gzip (BGZF) format. A blocked gzip file
+ * is a series of independent gzip members of at most 64KB each, every member
+ * records its own size in a 'BC' extra field. Standard gunzip reads such a file
+ * like any other multi-member gzip file, but because the members are
+ * independent they can be compressed and decompressed in parallel and a reader
+ * can start at the beginning of any block.
+ *
+ */
+public final class BlockGzip
+{
+    /**
+     * Uncompressed bytes per block, chosen so even incompressible data fits in
+     * a 64KB member
+     */
+    public static final int     MAX_BLOCK_DATA_SIZE = 0xff00;
+
+    public static final int     MAX_BLOCK_SIZE      = 0x10000;
+
+    static final int            HEADER_SIZE         = 18;
+    static final int            FOOTER_SIZE         = 8;
+
+    /**
+     * Empty block terminating a blocked gzip file
+     */
+    static final byte[]         EOF_BLOCK           = { 0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00,
+            0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00, 0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00,
+            0x00, 0x00, 0x00, 0x00                     };
+
+    private static ExecutorService defaultExecutor;
+
+    private BlockGzip() {
+    }
+
+    /**
+     * Returns true if the bytes start with a blocked gzip member header
+     */
+    public static boolean isBlockGzip(final byte[] header, final int length) {
+        return length >= HEADER_SIZE && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b
+                && header[2] == 0x08 && (header[3] & 0x04) != 0 && header[10] == 0x06 && header[11] == 0x00
+                && header[12] == 'B' && header[13] == 'C' && header[14] == 0x02 && header[15] == 0x00;
+    }
+
+    /**
+     * Returns the total size of the block starting with the given header
+     */
+    static int getBlockSize(final byte[] header) {
+        return ((header[16] & 0xff) | ((header[17] & 0xff) << 8)) + 1;
+    }
+
+    /**
+     * Wraps a gzip stream, blocked gzip input is decompressed in parallel on the
+     * default executor and any other gzip input falls back to GZIPInputStream.
+     */
+    public static InputStream newInputStream(final InputStream in) throws IOException {
+        final BufferedInputStream buffered = new BufferedInputStream(in, MAX_BLOCK_SIZE);
+        final byte[] header = new byte[HEADER_SIZE];
+        buffered.mark(HEADER_SIZE);
+        int length = 0;
+        int read = 0;
+        while (length < HEADER_SIZE && (read = buffered.read(header, length, HEADER_SIZE - length)) != -1) {
+            length += read;
+        }
+        buffered.reset();
+
+        if (isBlockGzip(header, length)) {
+            return new BlockGzipInputStream(buffered);
+        }
+        return new GZIPInputStream(buffered);
+    }
+
+    /**
+     * Shared pool of daemon threads sized to the number of processors
+     */
+    public static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            defaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+                            final Thread thread = new Thread(runnable, "block-gzip-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return defaultExecutor;
+    }
+}
@@ -0,0 +1,174 @@
+package com.kitschframework.common.io.compress;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * BlockGzipIndex
+ *
+ * Maps the start of every block of a blocked gzip file to its compressed and
+ * uncompressed offsets, so a reader can start decompressing at the block that
+ * holds any uncompressed position.
+ *
+ * The sidecar file uses the same layout as bgzip's .gzi index: a little endian
+ * entry count followed by (compressed, uncompressed) offset pairs, the implicit
+ * first block at (0, 0) is not stored.
+ *
+ */
+public class BlockGzipIndex
+{
+    public static final String INDEX_SUFFIX      = ".gzi";
+
+    private long[]             compressedOffsets   = new long[64];
+    private long[]             uncompressedOffsets = new long[64];
+    private int                size;
+
+    public BlockGzipIndex() {
+    }
+
+    public void add(final long compressedOffset, final long uncompressedOffset) {
+        if (size == compressedOffsets.length) {
+            compressedOffsets = Arrays.copyOf(compressedOffsets, size * 2);
+            uncompressedOffsets = Arrays.copyOf(uncompressedOffsets, size * 2);
+        }
+        compressedOffsets[size] = compressedOffset;
+        uncompressedOffsets[size] = uncompressedOffset;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getCompressedOffset(final int block) {
+        return compressedOffsets[block];
+    }
+
+    public long getUncompressedOffset(final int block) {
+        return uncompressedOffsets[block];
+    }
+
+    /**
+     * Returns the block holding the given uncompressed offset
+     */
+    public int findBlock(final long uncompressedOffset) {
+        int index = Arrays.binarySearch(uncompressedOffsets, 0, size, uncompressedOffset);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        else {
+            // empty blocks share an offset with the following block
+            while (index + 1 < size && uncompressedOffsets[index + 1] == uncompressedOffset) {
+                index++;
+            }
+        }
+        return Math.max(index, 0);
+    }
+
+    /**
+     * Writes the index to the sidecar of fileName. The index is written to a
+     * temporary file that is then renamed, so a reader never sees half of it.
+     */
+    public void write(final String fileName) throws IOException {
+        final File indexFile = new File(fileName + INDEX_SUFFIX);
+        final File tempFile = new File(indexFile.getPath() + ".tmp");
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile));
+        try {
+            final byte[] entry = new byte[16];
+            writeLong(entry, 0, Math.max(size - 1, 0));
+            out.write(entry, 0, 8);
+            for (int i = 1; i < size; i++) {
+                writeLong(entry, 0, compressedOffsets[i]);
+                writeLong(entry, 8, uncompressedOffsets[i]);
+                out.write(entry);
+            }
+        }
+        finally {
+            out.close();
+        }
+        if (indexFile.exists() && !indexFile.delete() || !tempFile.renameTo(indexFile)) {
+            tempFile.delete();
+            throw new IOException("Can't replace " + indexFile);
+        }
+    }
+
+    /**
+     * Loads the index of a blocked gzip file from its sidecar. If there is no
+     * sidecar, or it is older than the file, the index is built by scanning
+     * the block headers and written to the sidecar for the next reader, when
+     * the directory is writable.
+     */
+    public static BlockGzipIndex load(final String fileName) throws IOException {
+        final File indexFile = new File(fileName + INDEX_SUFFIX);
+        if (!indexFile.exists() || indexFile.lastModified() < new File(fileName).lastModified()) {
+            final BlockGzipIndex index = build(new FileInputStream(fileName));
+            try {
+                index.write(fileName);
+            }
+            catch (final IOException e) {
+                // the sidecar is only a cache, the index is built again next time
+            }
+            return index;
+        }
+
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            final byte[] entry = new byte[16];
+            in.readFully(entry, 0, 8);
+            final long count = readLong(entry, 0);
+
+            final BlockGzipIndex index = new BlockGzipIndex();
+            index.add(0, 0);
+            for (long i = 0; i < count; i++) {
+                in.readFully(entry);
+                index.add(readLong(entry, 0), readLong(entry, 8));
+            }
+            return index;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Builds an index by reading only the header and footer of every block,
+     * nothing is decompressed. The stream is closed.
+     */
+    public static BlockGzipIndex build(final InputStream input) throws IOException {
+        final InputStream in = new BufferedInputStream(input, BlockGzip.MAX_BLOCK_SIZE);
+        try {
+            final BlockGzipIndex index = new BlockGzipIndex();
+            final byte[] block = new byte[BlockGzip.MAX_BLOCK_SIZE];
+            long compressedOffset = 0;
+            long uncompressedOffset = 0;
+            int blockSize;
+            while ((blockSize = BlockGzipInputStream.readBlock(in, block)) > 0) {
+                index.add(compressedOffset, uncompressedOffset);
+                compressedOffset += blockSize;
+                uncompressedOffset += BlockGzipOutputStream.readInt(block, blockSize - 4) & 0xffffffffL;
+            }
+            return index;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private static void writeLong(final byte[] buffer, final int offset, final long value) {
+        BlockGzipOutputStream.writeInt(buffer, offset, (int) value);
+        BlockGzipOutputStream.writeInt(buffer, offset + 4, (int) (value >>> 32));
+    }
+
+    private static long readLong(final byte[] buffer, final int offset) {
+        return (BlockGzipOutputStream.readInt(buffer, offset) & 0xffffffffL)
+                | ((long) BlockGzipOutputStream.readInt(buffer, offset + 4) << 32);
+    }
+}
@@ -0,0 +1,203 @@
+package com.kitschframework.common.io.compress;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * BlockGzipInputStream
+ *
+ * Reads blocked gzip (BGZF) input. Compressed blocks are read ahead on the
+ * calling thread and decompressed concurrently on an executor, data is returned
+ * in file order.
+ *
+ * Every block is independent so the stream may be opened at the compressed
+ * offset of any block, see BlockGzipIndex.
+ *
+ */
+public class BlockGzipInputStream extends InputStream
+{
+    private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<Inflater>();
+
+    private static final byte[]                EMPTY     = new byte[0];
+
+    private final InputStream                  in;
+    private final ExecutorService              executor;
+    private final int                          maxBlocksInFlight;
+
+    private final LinkedList<Future<byte[]>>   pending   = new LinkedList<Future<byte[]>>();
+
+    private byte[]                             current   = EMPTY;
+    private int                                position;
+    private boolean                            endOfInput;
+
+    public BlockGzipInputStream(final InputStream in) {
+        this(in, BlockGzip.getDefaultExecutor(), Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public BlockGzipInputStream(final InputStream in, final ExecutorService executor, final int maxBlocksInFlight) {
+        this.in = in;
+        this.executor = executor;
+        this.maxBlocksInFlight = maxBlocksInFlight;
+    }
+
+    /**
+     * Opens a blocked gzip file at the compressed offset of one of its blocks
+     */
+    public static BlockGzipInputStream open(final String fileName, final long compressedOffset) throws IOException {
+        final FileInputStream input = new FileInputStream(fileName);
+        input.getChannel().position(compressedOffset);
+        return new BlockGzipInputStream(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == current.length && !nextBlock()) {
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (position == current.length && !nextBlock()) {
+            return -1;
+        }
+        final int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (final Future<byte[]> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+        in.close();
+    }
+
+    private boolean nextBlock() throws IOException {
+        while (position == current.length) {
+            fill();
+            if (pending.isEmpty()) {
+                return false;
+            }
+            try {
+                current = pending.removeFirst().get();
+                position = 0;
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            catch (final ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+        return true;
+    }
+
+    private void fill() throws IOException {
+        while (!endOfInput && pending.size() < maxBlocksInFlight) {
+            final byte[] block = new byte[BlockGzip.MAX_BLOCK_SIZE];
+            final int blockSize = readBlock(in, block);
+            if (blockSize == 0) {
+                endOfInput = true;
+            }
+            else {
+                pending.addLast(executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return decompress(block, blockSize);
+                    }
+                }));
+            }
+        }
+    }
+
+    /**
+     * Reads one complete compressed block into the buffer and returns its size,
+     * or 0 at the end of the stream
+     */
+    static int readBlock(final InputStream in, final byte[] block) throws IOException {
+        int length = readFully(in, block, 0, BlockGzip.HEADER_SIZE);
+        if (length == 0) {
+            return 0;
+        }
+        if (!BlockGzip.isBlockGzip(block, length)) {
+            throw new IOException("Not a blocked gzip block");
+        }
+        final int blockSize = BlockGzip.getBlockSize(block);
+        length += readFully(in, block, length, blockSize - length);
+        if (length < blockSize) {
+            throw new EOFException("Truncated blocked gzip block");
+        }
+        return blockSize;
+    }
+
+    private static int readFully(final InputStream in, final byte[] buffer, final int offset, final int length)
+            throws IOException {
+        int total = 0;
+        int read = 0;
+        while (total < length && (read = in.read(buffer, offset + total, length - total)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    static byte[] decompress(final byte[] block, final int blockSize) throws IOException {
+        Inflater inflater = INFLATERS.get();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+            INFLATERS.set(inflater);
+        }
+        inflater.reset();
+
+        final int dataSize = blockSize - BlockGzip.HEADER_SIZE - BlockGzip.FOOTER_SIZE;
+        final byte[] data = new byte[BlockGzipOutputStream.readInt(block, blockSize - 4)];
+        inflater.setInput(block, BlockGzip.HEADER_SIZE, dataSize);
+        try {
+            int length = 0;
+            while (length < data.length) {
+                final int count = inflater.inflate(data, length, data.length - length);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                length += count;
+            }
+            if (length != data.length) {
+                throw new IOException("Corrupt blocked gzip block, expected " + data.length + " bytes but got "
+                        + length);
+            }
+        }
+        catch (final DataFormatException e) {
+            throw new IOException(e);
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        if ((int) crc.getValue() != BlockGzipOutputStream.readInt(block, blockSize - 8)) {
+            throw new IOException("Blocked gzip CRC mismatch");
+        }
+        return data;
+    }
+}
@@ -0,0 +1,200 @@
+package com.kitschframework.common.io.compress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * BlockGzipOutputStream
+ *
+ * Writes blocked gzip (BGZF) output. Data is cut into blocks that are
+ * compressed concurrently on an executor and written out in order, so a
+ * single writer can use every core. The result is readable by standard gunzip.
+ *
+ * The offsets of every block are recorded while writing and are available
+ * through getIndex() once the stream has been closed.
+ *
+ */
+public class BlockGzipOutputStream extends OutputStream
+{
+    private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<Deflater>();
+
+    private final OutputStream                 out;
+    private final ExecutorService              executor;
+    private final int                          level;
+    private final int                          maxBlocksInFlight;
+
+    private final LinkedList<Future<byte[]>>   pending   = new LinkedList<Future<byte[]>>();
+    private final BlockGzipIndex               index     = new BlockGzipIndex();
+
+    private byte[]                             block     = new byte[BlockGzip.MAX_BLOCK_DATA_SIZE];
+    private int                                blockLength;
+
+    private long                               compressedOffset;
+    private long                               uncompressedOffset;
+    private boolean                            closed;
+
+    public BlockGzipOutputStream(final OutputStream out) {
+        this(out, BlockGzip.getDefaultExecutor(), Deflater.DEFAULT_COMPRESSION, Runtime.getRuntime()
+                .availableProcessors() * 2);
+    }
+
+    public BlockGzipOutputStream(final OutputStream out, final ExecutorService executor, final int level,
+            final int maxBlocksInFlight) {
+        this.out = out;
+        this.executor = executor;
+        this.level = level;
+        this.maxBlocksInFlight = maxBlocksInFlight;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (blockLength == block.length) {
+            submitBlock();
+        }
+        block[blockLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (blockLength == block.length) {
+                submitBlock();
+            }
+            final int count = Math.min(length, block.length - blockLength);
+            System.arraycopy(bytes, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Like GZIPOutputStream this does not force out the partially filled block,
+     * otherwise every flush would end a block and the writers' periodic flushes
+     * would produce small, poorly compressed blocks.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Compresses the partially filled block and writes out every pending block
+     */
+    public void finish() throws IOException {
+        if (blockLength > 0) {
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeBlock(pending.removeFirst());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            finish();
+            // indexed like the other blocks, as BlockGzipIndex.build does
+            index.add(compressedOffset, uncompressedOffset);
+            out.write(BlockGzip.EOF_BLOCK);
+            out.close();
+            closed = true;
+        }
+    }
+
+    /**
+     * Returns the index of the blocks written so far
+     */
+    public BlockGzipIndex getIndex() {
+        return index;
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        pending.addLast(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return compress(data, length, level);
+            }
+        }));
+
+        block = new byte[BlockGzip.MAX_BLOCK_DATA_SIZE];
+        blockLength = 0;
+
+        while (pending.size() >= maxBlocksInFlight) {
+            writeBlock(pending.removeFirst());
+        }
+    }
+
+    private void writeBlock(final Future<byte[]> future) throws IOException {
+        try {
+            final byte[] compressed = future.get();
+            index.add(compressedOffset, uncompressedOffset);
+            out.write(compressed);
+            compressedOffset += compressed.length;
+            uncompressedOffset += readInt(compressed, compressed.length - 4);
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch (final ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    static byte[] compress(final byte[] data, final int length, final int level) {
+        Deflater deflater = DEFLATERS.get();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+            DEFLATERS.set(deflater);
+        }
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+
+        final byte[] buffer = new byte[BlockGzip.MAX_BLOCK_SIZE];
+        int size = BlockGzip.HEADER_SIZE;
+        while (!deflater.finished()) {
+            size += deflater.deflate(buffer, size, buffer.length - BlockGzip.FOOTER_SIZE - size);
+            if (size == buffer.length - BlockGzip.FOOTER_SIZE && !deflater.finished()) {
+                throw new IllegalStateException("Compressed block exceeds " + BlockGzip.MAX_BLOCK_SIZE + " bytes");
+            }
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+
+        System.arraycopy(BlockGzip.EOF_BLOCK, 0, buffer, 0, 16);
+        final int blockSize = size + BlockGzip.FOOTER_SIZE;
+        buffer[16] = (byte) ((blockSize - 1) & 0xff);
+        buffer[17] = (byte) ((blockSize - 1) >>> 8);
+        writeInt(buffer, size, (int) crc.getValue());
+        writeInt(buffer, size + 4, length);
+
+        final byte[] compressed = new byte[blockSize];
+        System.arraycopy(buffer, 0, compressed, 0, blockSize);
+        return compressed;
+    }
+
+    static void writeInt(final byte[] buffer, final int offset, final int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >>> 8);
+        buffer[offset + 2] = (byte) (value >>> 16);
+        buffer[offset + 3] = (byte) (value >>> 24);
+    }
+
+    static int readInt(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8) | ((buffer[offset + 2] & 0xff) << 16)
+                | ((buffer[offset + 3] & 0xff) << 24);
+    }
+}
@@ -0,0 +1,103 @@
+package com.kitschframework.common.io.compress;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CompressionBenchmark
+ *
+ * Compresses and decompresses a sample file in memory with each codec and
+ * prints the ratio and throughput, to choose a codec for a kind of file. The
+ * gzip row is the blocked gzip path FileDataWriter and FileDataReader use for
+ * .gz files. Throughput is in MB of uncompressed data per second, the best of
+ * several rounds after a warm up round.
+ *
+ * Usage:
+ * <code>
+ * java -cp ... com.kitschframework.common.io.compress.CompressionBenchmark /data/sample.tsv [gzip lz4 zstd snappy]
+ * </code>
+ *
+ */
+public final class CompressionBenchmark
+{
+    private static final int ROUNDS = 5;
+
+    private CompressionBenchmark() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: CompressionBenchmark <file> [codec...]");
+            System.exit(1);
+        }
+        final byte[] data = Files.readAllBytes(Paths.get(args[0]));
+
+        final List<CompressionCodec> codecs = new ArrayList<CompressionCodec>();
+        if (args.length == 1) {
+            codecs.addAll(CompressionCodecs.getCodecs());
+        }
+        for (int i = 1; i < args.length; i++) {
+            final CompressionCodec codec = CompressionCodecs.forName(args[i]);
+            if (codec == null) {
+                System.err.println("Unknown codec " + args[i] + ", known codecs are " + CompressionCodecs.getCodecs());
+                System.exit(1);
+            }
+            codecs.add(codec);
+        }
+
+        System.out.println(String.format("%s, %.1f MB", args[0], data.length / 1e6));
+        System.out.println(String.format("%-10s %8s %16s %16s", "codec", "ratio", "compress MB/s", "decompress MB/s"));
+        for (final CompressionCodec codec : codecs) {
+            try {
+                run(codec, data);
+            }
+            catch (final IOException e) {
+                System.out.println(String.format("%-10s %s", codec.getName(), e.getMessage()));
+            }
+        }
+    }
+
+    private static void run(final CompressionCodec codec, final byte[] data) throws IOException {
+        byte[] compressed = null;
+        long bestCompress = Long.MAX_VALUE;
+        long bestDecompress = Long.MAX_VALUE;
+        final byte[] buffer = new byte[64 * 1024];
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2);
+            final OutputStream output = codec.newOutputStream(bytes);
+            output.write(data);
+            output.close();
+            final long compressTime = System.nanoTime() - start;
+            compressed = bytes.toByteArray();
+
+            start = System.nanoTime();
+            final InputStream input = codec.newInputStream(new ByteArrayInputStream(compressed));
+            long total = 0;
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                total += read;
+            }
+            input.close();
+            final long decompressTime = System.nanoTime() - start;
+            if (total != data.length) {
+                throw new IOException("decompressed " + total + " bytes instead of " + data.length);
+            }
+            if (round > 0) {
+                // round 0 warms up the JIT
+                bestCompress = Math.min(bestCompress, compressTime);
+                bestDecompress = Math.min(bestDecompress, decompressTime);
+            }
+        }
+        System.out.println(String.format("%-10s %8.2f %16.1f %16.1f", codec.getName(),
+                (double) data.length / compressed.length, data.length * 1e3 / bestCompress,
+                data.length * 1e3 / bestDecompress));
+    }
+}
@@ -0,0 +1,36 @@
+package com.kitschframework.common.io.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * CompressionCodec
+ *
+ * A compression format readers and writers can use for their files and S3
+ * objects. Codecs are looked up in CompressionCodecs by file extension when
+ * writing, and by extension or by the magic bytes the compressed data starts
+ * with when reading.
+ *
+ */
+public interface CompressionCodec
+{
+    /**
+     * Returns the short name of the codec, e.g. "gzip"
+     */
+    public abstract String getName();
+
+    /**
+     * Returns the file extension of the codec, dot included, e.g. ".gz"
+     */
+    public abstract String getExtension();
+
+    /**
+     * Returns the bytes every stream written by the codec starts with
+     */
+    public abstract byte[] getMagic();
+
+    public abstract InputStream newInputStream(InputStream in) throws IOException;
+
+    public abstract OutputStream newOutputStream(OutputStream out) throws IOException;
+}
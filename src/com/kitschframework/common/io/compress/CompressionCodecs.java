@@ -0,0 +1,179 @@
+package com.kitschframework.common.io.compress;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * CompressionCodecs
+ *
+ * Registry of the compression codecs known to the readers and writers, gzip,
+ * lz4, zstd and snappy to begin with. Writers pick the codec from the file
+ * extension. Readers pick it from the extension, or when the extension isn't
+ * one of a codec from the magic bytes the data starts with, so compressed
+ * files and S3 objects are read whatever they are named.
+ *
+ * Usage:
+ * <code>
+ * CompressionCodecs.register(new ZstdCodec(9));
+ * DataWriter writer = new TabDelimitedDataWriter("/data/out/part-00000.zst");
+ * </code>
+ *
+ */
+public final class CompressionCodecs
+{
+    /** Enough bytes to recognize any registered codec */
+    public static final int                       MAX_MAGIC_LENGTH = 16;
+
+    private static final List<CompressionCodec> CODECS           = new CopyOnWriteArrayList<CompressionCodec>();
+
+    static {
+        register(new GzipCodec());
+        register(new Lz4Codec());
+        register(new ZstdCodec());
+        register(new SnappyCodec());
+    }
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Adds a codec, replacing any codec with the same name or extension
+     */
+    public static synchronized void register(final CompressionCodec codec) {
+        if (codec.getMagic().length > MAX_MAGIC_LENGTH) {
+            throw new IllegalArgumentException("Magic of codec " + codec.getName() + " is longer than "
+                    + MAX_MAGIC_LENGTH + " bytes");
+        }
+        final List<CompressionCodec> replaced = new ArrayList<CompressionCodec>();
+        for (final CompressionCodec registered : CODECS) {
+            if (registered.getName().equals(codec.getName())
+                    || registered.getExtension().equals(codec.getExtension())) {
+                replaced.add(registered);
+            }
+        }
+        CODECS.removeAll(replaced);
+        CODECS.add(codec);
+    }
+
+    public static List<CompressionCodec> getCodecs() {
+        return new ArrayList<CompressionCodec>(CODECS);
+    }
+
+    /**
+     * Returns the codec with the given name, or null
+     */
+    public static CompressionCodec forName(final String name) {
+        for (final CompressionCodec codec : CODECS) {
+            if (codec.getName().equals(name)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the codec whose extension ends fileName, or null when the name
+     * isn't that of a compressed file
+     */
+    public static CompressionCodec forFileName(final String fileName) {
+        for (final CompressionCodec codec : CODECS) {
+            if (fileName.endsWith(codec.getExtension())) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the codec whose magic bytes start header, or null
+     */
+    public static CompressionCodec forMagic(final byte[] header, final int length) {
+        for (final CompressionCodec codec : CODECS) {
+            final byte[] magic = codec.getMagic();
+            if (magic.length > 0 && startsWith(header, length, magic)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the codec of a local file, from its extension or else its first
+     * bytes, or null if the file isn't compressed. A file that can't be read
+     * is reported as not compressed, opening it fails later.
+     */
+    public static CompressionCodec forFile(final String fileName) {
+        final CompressionCodec codec = forFileName(fileName);
+        if (codec != null) {
+            return codec;
+        }
+        try {
+            final FileInputStream input = new FileInputStream(fileName);
+            try {
+                final byte[] header = new byte[MAX_MAGIC_LENGTH];
+                return forMagic(header, readFully(input, header));
+            }
+            finally {
+                input.close();
+            }
+        }
+        catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Wraps the input of fileName in its codec, picked from the extension or
+     * else from the first bytes of input. Input that isn't compressed is
+     * returned as it is, possibly buffered.
+     */
+    public static InputStream decompress(final String fileName, final InputStream input) throws IOException {
+        CompressionCodec codec = forFileName(fileName);
+        if (codec != null) {
+            return codec.newInputStream(input);
+        }
+        final BufferedInputStream buffered = new BufferedInputStream(input);
+        final byte[] header = new byte[MAX_MAGIC_LENGTH];
+        buffered.mark(MAX_MAGIC_LENGTH);
+        final int length = readFully(buffered, header);
+        buffered.reset();
+        codec = forMagic(header, length);
+        return codec == null ? buffered : codec.newInputStream(buffered);
+    }
+
+    /**
+     * Wraps the output of fileName in the codec of its extension, output is
+     * returned as it is when the name isn't that of a compressed file
+     */
+    public static OutputStream compress(final String fileName, final OutputStream output) throws IOException {
+        final CompressionCodec codec = forFileName(fileName);
+        return codec == null ? output : codec.newOutputStream(output);
+    }
+
+    private static boolean startsWith(final byte[] header, final int length, final byte[] magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readFully(final InputStream input, final byte[] header) throws IOException {
+        int length = 0;
+        int read;
+        while (length < header.length && (read = input.read(header, length, header.length - length)) != -1) {
+            length += read;
+        }
+        return length;
+    }
+}
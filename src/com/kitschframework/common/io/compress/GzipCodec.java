@@ -0,0 +1,48 @@
+package com.kitschframework.common.io.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * GzipCodec
+ *
+ * Gzip, written as blocked gzip (see BlockGzip) so it is compressed and
+ * decompressed in parallel and can be read from any block. Any gzip input is
+ * read, blocked or not.
+ *
+ */
+public class GzipCodec implements CompressionCodec
+{
+    private static final byte[] MAGIC = { 0x1f, (byte) 0x8b };
+
+    @Override
+    public String getName() {
+        return "gzip";
+    }
+
+    @Override
+    public String getExtension() {
+        return ".gz";
+    }
+
+    @Override
+    public byte[] getMagic() {
+        return MAGIC.clone();
+    }
+
+    @Override
+    public InputStream newInputStream(final InputStream in) throws IOException {
+        return BlockGzip.newInputStream(in);
+    }
+
+    @Override
+    public OutputStream newOutputStream(final OutputStream out) throws IOException {
+        return new BlockGzipOutputStream(out);
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
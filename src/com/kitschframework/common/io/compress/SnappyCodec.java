@@ -0,0 +1,61 @@
+package com.kitschframework.common.io.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.xerial.snappy.SnappyFramedInputStream;
+import org.xerial.snappy.SnappyFramedOutputStream;
+
+/**
+ * SnappyCodec
+ *
+ * The Snappy framing format. About as fast as LZ4, at a similar ratio. Needs
+ * org.xerial.snappy:snappy-java at runtime, an optional dependency that
+ * applications reading or writing .sz files add themselves.
+ *
+ */
+public class SnappyCodec implements CompressionCodec
+{
+    private static final byte[] MAGIC = { (byte) 0xff, 0x06, 0x00, 0x00, 's', 'N', 'a', 'P', 'p', 'Y' };
+
+    @Override
+    public String getName() {
+        return "snappy";
+    }
+
+    @Override
+    public String getExtension() {
+        return ".sz";
+    }
+
+    @Override
+    public byte[] getMagic() {
+        return MAGIC.clone();
+    }
+
+    @Override
+    public InputStream newInputStream(final InputStream in) throws IOException {
+        try {
+            return new SnappyFramedInputStream(in);
+        }
+        catch (final NoClassDefFoundError e) {
+            throw new IOException("The snappy codec needs org.xerial.snappy:snappy-java on the classpath", e);
+        }
+    }
+
+    @Override
+    public OutputStream newOutputStream(final OutputStream out) throws IOException {
+        try {
+            return new SnappyFramedOutputStream(out);
+        }
+        catch (final NoClassDefFoundError e) {
+            throw new IOException("The snappy codec needs org.xerial.snappy:snappy-java on the classpath", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
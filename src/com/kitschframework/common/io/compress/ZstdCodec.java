@@ -0,0 +1,77 @@
+package com.kitschframework.common.io.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+/**
+ * ZstdCodec
+ *
+ * Zstandard, compatible with the zstd command line tool. Compresses better
+ * than gzip and decompresses several times faster. Needs
+ * com.github.luben:zstd-jni at runtime, an optional dependency that
+ * applications reading or writing .zst files add themselves.
+ *
+ */
+public class ZstdCodec implements CompressionCodec
+{
+    public static final int     DEFAULT_LEVEL = 3;
+
+    private static final byte[] MAGIC         = { 0x28, (byte) 0xb5, 0x2f, (byte) 0xfd };
+
+    private final int           level;
+
+    public ZstdCodec() {
+        this(DEFAULT_LEVEL);
+    }
+
+    /**
+     * level is the compression level, 1 (fastest) to 22
+     */
+    public ZstdCodec(final int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String getName() {
+        return "zstd";
+    }
+
+    @Override
+    public String getExtension() {
+        return ".zst";
+    }
+
+    @Override
+    public byte[] getMagic() {
+        return MAGIC.clone();
+    }
+
+    @Override
+    public InputStream newInputStream(final InputStream in) throws IOException {
+        try {
+            return new ZstdInputStream(in);
+        }
+        catch (final NoClassDefFoundError e) {
+            throw new IOException("The zstd codec needs com.github.luben:zstd-jni on the classpath", e);
+        }
+    }
+
+    @Override
+    public OutputStream newOutputStream(final OutputStream out) throws IOException {
+        try {
+            return new ZstdOutputStream(out, level);
+        }
+        catch (final NoClassDefFoundError e) {
+            throw new IOException("The zstd codec needs com.github.luben:zstd-jni on the classpath", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getName() + "(" + level + ")";
+    }
+}
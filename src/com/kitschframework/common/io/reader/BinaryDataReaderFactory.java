@@ -0,0 +1,21 @@
+/**
+ * 
+ */
+package com.kitschframework.common.io.reader;
+
+import com.kitschframework.common.io.DataRowException;
+
+/**
+ * BinaryDataReaderFactory
+ * 
+ * Reads the files written by BinaryDataWriterFactory
+ * 
+ */
+public class BinaryDataReaderFactory extends DataReaderFactory
+{
+
+    @Override
+    public DataReader create(String fileName) throws DataRowException {
+        return new FileDataReader(fileName, new BinaryDataRowParser());
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import com.kitschframework.common.io.BinaryRowFormat;
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+import com.kitschframework.common.io.TypedDataRow;
+
+/**
+ * BinaryDataRowParser
+ *
+ * Reads the files written by BinaryDataWriter, see BinaryRowFormat. The
+ * metadata, column types included, comes from the file's header.
+ *
+ * When the header declares typed columns the rows are TypedDataRows filled
+ * straight from the decoded values, numbers are never turned into text. A row
+ * holding a value that was written as a string because it didn't parse as its
+ * column's type is returned as a regular DataRow. Files without typed columns
+ * produce regular DataRows.
+ *
+ */
+public class BinaryDataRowParser implements StreamDataRowParser
+{
+    private DataRowMetadata    metadata;
+    private boolean            typed;
+
+    /** Body of the current row */
+    private byte[]             body = new byte[256];
+    private int                position;
+
+    /** Decoded fields of the current row */
+    private int[]              tags;
+    private long[]             numbers;
+    private String[]           strings;
+    private SimpleDateFormat[] dateFormats;
+
+    private long               rowsScanned;
+
+    public BinaryDataRowParser() {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void readMetadata(final DataInputStream input) throws DataRowException {
+        try {
+            metadata = BinaryRowFormat.readMetadata(input);
+        }
+        catch (final IOException e) {
+            throw new DataRowException("Malformed binary header", e);
+        }
+        rowsScanned = 0;
+        if (metadata != null) {
+            final int count = metadata.getKeyCount();
+            typed = metadata.isTyped();
+            tags = new int[count];
+            numbers = new long[count];
+            strings = new String[count];
+            dateFormats = new SimpleDateFormat[count];
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DataRow readDataRow(final DataInputStream input) throws DataRowException {
+        if (metadata == null) {
+            return null;
+        }
+        try {
+            final int first = input.read();
+            if (first == -1) {
+                return null;
+            }
+            long length = first & 0x7f;
+            if ((first & 0x80) != 0) {
+                length |= BinaryRowFormat.readVarLong(input) << 7;
+            }
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new DataRowException("Row of " + length + " bytes is too large");
+            }
+            if (length > body.length) {
+                body = new byte[Math.max((int) length, body.length * 2)];
+            }
+            input.readFully(body, 0, (int) length);
+            position = 0;
+
+            final int fieldCount = (int) readVarLong();
+            if (fieldCount > metadata.getKeyCount()) {
+                throw new DataRowException("Row has " + fieldCount + " fields, the header has "
+                        + metadata.getKeyCount() + " columns");
+            }
+            boolean compatible = typed;
+            for (int i = 0; i < fieldCount; i++) {
+                final int tag = body[position++];
+                tags[i] = tag;
+                switch (tag) {
+                    case BinaryRowFormat.TAG_VARINT:
+                        numbers[i] = BinaryRowFormat.unZigZag(readVarLong());
+                        if (metadata.getColumnType(i) == ColumnType.INT
+                                && (int) numbers[i] != numbers[i]) {
+                            throw new DataRowException("Value " + numbers[i] + " of INT column "
+                                    + metadata.getKey(i) + " is out of range");
+                        }
+                        break;
+                    case BinaryRowFormat.TAG_DOUBLE:
+                        numbers[i] = readLong();
+                        break;
+                    case BinaryRowFormat.TAG_STRING:
+                        final long stringLength = readVarLong();
+                        if (stringLength < 0 || stringLength > length - position) {
+                            throw new DataRowException("Malformed binary row, string of " + stringLength
+                                    + " bytes");
+                        }
+                        strings[i] = new String(body, position, (int) stringLength, BinaryRowFormat.UTF8);
+                        position += (int) stringLength;
+                        break;
+                    case BinaryRowFormat.TAG_NULL:
+                    case BinaryRowFormat.TAG_FALSE:
+                    case BinaryRowFormat.TAG_TRUE:
+                        break;
+                    default:
+                        throw new DataRowException("Unknown field tag " + tag);
+                }
+                compatible = compatible && isCompatible(tag, metadata.getColumnType(i));
+            }
+            rowsScanned++;
+            return compatible ? typedRow(fieldCount) : stringRow(fieldCount);
+        }
+        catch (final IOException e) {
+            throw new DataRowException(e);
+        }
+        catch (final IndexOutOfBoundsException e) {
+            // ArrayIndexOutOfBounds or StringIndexOutOfBounds of a corrupt row
+            throw new DataRowException("Malformed binary row", e);
+        }
+    }
+
+    private static boolean isCompatible(final int tag, final ColumnType type) {
+        switch (tag) {
+            case BinaryRowFormat.TAG_NULL:
+                return true;
+            case BinaryRowFormat.TAG_VARINT:
+                return type == ColumnType.LONG || type == ColumnType.INT || type == ColumnType.DATE;
+            case BinaryRowFormat.TAG_DOUBLE:
+                return type == ColumnType.DOUBLE;
+            case BinaryRowFormat.TAG_STRING:
+                return type == ColumnType.STRING;
+            default:
+                return type == ColumnType.BOOLEAN;
+        }
+    }
+
+    private DataRow typedRow(final int fieldCount) {
+        final TypedDataRow row = new TypedDataRow(metadata);
+        row.startFill();
+        final int count = metadata.getKeyCount();
+        for (int i = 0; i < count; i++) {
+            switch (i < fieldCount ? tags[i] : BinaryRowFormat.TAG_NULL) {
+                case BinaryRowFormat.TAG_VARINT:
+                    row.fillLong(i, numbers[i]);
+                    break;
+                case BinaryRowFormat.TAG_DOUBLE:
+                    row.fillDouble(i, Double.longBitsToDouble(numbers[i]));
+                    break;
+                case BinaryRowFormat.TAG_FALSE:
+                    row.fillBoolean(i, false);
+                    break;
+                case BinaryRowFormat.TAG_TRUE:
+                    row.fillBoolean(i, true);
+                    break;
+                case BinaryRowFormat.TAG_STRING:
+                    row.fillString(i, strings[i]);
+                    break;
+                default:
+                    row.fillNull(i);
+            }
+        }
+        return row;
+    }
+
+    private DataRow stringRow(final int fieldCount) throws DataRowException {
+        final String[] values = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            switch (tags[i]) {
+                case BinaryRowFormat.TAG_VARINT:
+                    if (metadata.getColumnType(i) == ColumnType.DATE) {
+                        values[i] = getDateFormat(i).format(new Date(numbers[i]));
+                    }
+                    else {
+                        values[i] = Long.toString(numbers[i]);
+                    }
+                    break;
+                case BinaryRowFormat.TAG_DOUBLE:
+                    values[i] = Double.toString(Double.longBitsToDouble(numbers[i]));
+                    break;
+                case BinaryRowFormat.TAG_FALSE:
+                    values[i] = "false";
+                    break;
+                case BinaryRowFormat.TAG_TRUE:
+                    values[i] = "true";
+                    break;
+                case BinaryRowFormat.TAG_STRING:
+                    values[i] = strings[i];
+                    break;
+                default:
+                    values[i] = null;
+            }
+        }
+        return new DataRow(metadata, values);
+    }
+
+    private SimpleDateFormat getDateFormat(final int index) {
+        if (dateFormats[index] == null) {
+            dateFormats[index] = new SimpleDateFormat(metadata.getDateFormat(index));
+        }
+        return dateFormats[index];
+    }
+
+    private long readVarLong() throws DataRowException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = body[position++];
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new DataRowException("Malformed varint");
+    }
+
+    private long readLong() {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (body[position++] & 0xff);
+        }
+        return value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getRowsEmitted() {
+        return rowsScanned;
+    }
+
+    /**
+     * Returns the metadata read from the header
+     */
+    protected final DataRowMetadata getMetadata() {
+        return metadata;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getDescription() {
+        return "BinaryDataParser";
+    }
+
+    @Override
+    public String toString() {
+        return getDescription();
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+import java.nio.ByteBuffer;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+
+/**
+ * ByteDataRowParser
+ *
+ * A DataRowParser that can also read rows directly from a ByteBuffer, used by
+ * FileDataReader to parse uncompressed files through a memory-mapped view
+ * instead of a BufferedReader.
+ *
+ * Parsing starts at the buffer's position and the position is left after the
+ * consumed line.
+ *
+ */
+public interface ByteDataRowParser extends DataRowParser
+{
+    public abstract void readMetadata(ByteBuffer buffer) throws DataRowException;
+
+    /**
+     * Reads a single line from the buffer.
+     *
+     * Returns null without moving the position when the buffer does not hold a
+     * complete line and endOfInput is false, the caller is expected to supply
+     * more data and try again. Returns null after consuming a line that does
+     * not produce a row (blank or malformed).
+     */
+    public abstract DataRow readDataRow(ByteBuffer buffer, boolean endOfInput);
+
+    /**
+     * Reads a single line from the buffer into target instead of allocating a
+     * new row. Returns true if target was filled, otherwise the position rules
+     * of readDataRow(ByteBuffer, boolean) apply and the contents of target are
+     * undefined.
+     */
+    public abstract boolean readDataRow(ByteBuffer buffer, boolean endOfInput, DataRow target);
+}
@@ -0,0 +1,133 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+/**
+ * ColumnStatistics
+ *
+ * What is known about the values of one column over a group of rows, such as
+ * a row group of ColumnarDataReader: how many are null and the range of the
+ * others, as numbers, as strings, or neither. RowPredicate.mightMatch uses
+ * them to rule out a whole group without looking at its rows, so every test
+ * here only answers false when no value can match.
+ *
+ */
+public final class ColumnStatistics
+{
+    private final long   rowCount;
+    private final long   nullCount;
+    private final double minNumber;
+    private final double maxNumber;
+    private final String minString;
+    private final String maxString;
+
+    /**
+     * minNumber and maxNumber are NaN when there is no numeric range,
+     * minString and maxString null when there is no string range
+     */
+    public ColumnStatistics(final long rowCount, final long nullCount, final double minNumber, final double maxNumber,
+            final String minString, final String maxString) {
+        this.rowCount = rowCount;
+        this.nullCount = nullCount;
+        this.minNumber = minNumber;
+        this.maxNumber = maxNumber;
+        this.minString = minString;
+        this.maxString = maxString;
+    }
+
+    /**
+     * Statistics of a column whose values are all null, or that doesn't exist
+     */
+    public static ColumnStatistics allNull(final long rowCount) {
+        return new ColumnStatistics(rowCount, rowCount, Double.NaN, Double.NaN, null, null);
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    public boolean isAllNull() {
+        return nullCount >= rowCount;
+    }
+
+    public boolean hasNumberRange() {
+        return !Double.isNaN(minNumber) && !Double.isNaN(maxNumber);
+    }
+
+    public double getMinNumber() {
+        return minNumber;
+    }
+
+    public double getMaxNumber() {
+        return maxNumber;
+    }
+
+    public boolean hasStringRange() {
+        return minString != null && maxString != null;
+    }
+
+    public String getMinString() {
+        return minString;
+    }
+
+    public String getMaxString() {
+        return maxString;
+    }
+
+    /**
+     * Returns false if no value can be equal to value
+     */
+    public boolean mightContain(final String value) {
+        if (hasStringRange() && (value.compareTo(minString) < 0 || value.compareTo(maxString) > 0)) {
+            return false;
+        }
+        if (hasNumberRange()) {
+            try {
+                final double number = Double.parseDouble(value);
+                if (number < minNumber || number > maxNumber) {
+                    return false;
+                }
+            }
+            catch (final NumberFormatException e) {
+                // compared as text
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns false if no value can be a number between min and max
+     */
+    public boolean mightOverlap(final double min, final double max) {
+        return !hasNumberRange() || (max >= minNumber && min <= maxNumber);
+    }
+
+    /**
+     * Returns false if no value can start with prefix
+     */
+    public boolean mightStartWith(final String prefix) {
+        if (!hasStringRange()) {
+            return true;
+        }
+        // some string of the range starts with prefix if prefix itself is in it or the range starts inside prefix's
+        return maxString.compareTo(prefix) >= 0 && (minString.compareTo(prefix) <= 0 || minString.startsWith(prefix));
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("ColumnStatistics(rows=").append(rowCount).append(", nulls=").append(nullCount);
+        if (hasNumberRange()) {
+            builder.append(", ").append(minNumber).append("..").append(maxNumber);
+        }
+        if (hasStringRange()) {
+            builder.append(", \"").append(minString).append("\"..\"").append(maxString).append('"');
+        }
+        return builder.append(')').toString();
+    }
+}
@@ -0,0 +1,478 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.ColumnarFormat;
+import com.kitschframework.common.io.ColumnarFormat.ChunkInfo;
+import com.kitschframework.common.io.ColumnarFormat.ColumnValues;
+import com.kitschframework.common.io.ColumnarFormat.RowGroupInfo;
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+import com.kitschframework.common.io.TypedDataRow;
+
+/**
+ * ColumnarDataReader
+ *
+ * Reads the files written by ColumnarDataWriter, see ColumnarFormat. Only the
+ * chunks of the projected columns and of the columns the predicate reads are
+ * read and decoded. Before a row group is read the predicate is asked, through
+ * RowPredicate.mightMatch, whether any of its rows can match given the
+ * statistics in the footer; row groups that can't are skipped without reading
+ * them. The rows of the other row groups are then tested one by one.
+ *
+ * Like FileDataReader with a projection, rows only hold the projected columns,
+ * in file order. When the file has typed columns the rows are TypedDataRows
+ * filled from the decoded values, except in row groups where a typed column
+ * had to be stored as text, which produce regular DataRows.
+ *
+ * Usage:
+ * <code>
+ * DataReader reader = new ColumnarDataReader("items.kcol", Arrays.asList("id", "price"),
+ *         RowPredicate.between("price", 10, 100));
+ * while (reader.hasNextDataRow()) {
+ *     DataRow row = reader.getNextDataRow();
+ * }
+ * reader.close();
+ * </code>
+ *
+ */
+public class ColumnarDataReader implements DataReader
+{
+    private final String             fileName;
+    private final Set<String>        projection;
+    private final RowPredicate       predicate;
+
+    private FileChannel              channel;
+    private DataRowMetadata          fileMetadata;
+    private final List<RowGroupInfo> rowGroups = new ArrayList<RowGroupInfo>();
+
+    /** Columns of the file that are decoded, projected ones first */
+    private int[]                    readColumns;
+    private int                      projectedCount;
+    private DataRowMetadata          metadata;
+    /** Metadata of every decoded column, for testing the predicate */
+    private DataRowMetadata          readMetadata;
+    /** Columns the predicate reads, null if every one */
+    private Set<String>              predicateColumns;
+    private SimpleDateFormat[]       dateFormats;
+
+    private int                      nextRowGroup;
+    private ColumnValues[]           values;
+    private boolean                  typedRowGroup;
+    private int                      rowGroupRows;
+    private int                      nextRow;
+    private TypedDataRow             testRow;
+    private DataRow                  next;
+
+    private long                     rowsScanned;
+    private long                     rowsEmitted;
+    private int                      rowGroupsRead;
+    private int                      rowGroupsSkipped;
+
+    public ColumnarDataReader(final String fileName) throws DataRowException {
+        this(fileName, null, null);
+    }
+
+    public ColumnarDataReader(final String fileName, final Collection<String> columns) throws DataRowException {
+        this(fileName, columns, null);
+    }
+
+    /**
+     * Reads the given columns, or every column when columns is null, of the
+     * rows accepted by predicate, or of every row when predicate is null
+     */
+    public ColumnarDataReader(final String fileName, final Collection<String> columns, final RowPredicate predicate)
+            throws DataRowException {
+        this.fileName = fileName;
+        this.projection = columns == null ? null : new HashSet<String>(columns);
+        this.predicate = predicate;
+        reset();
+    }
+
+    @Override
+    public void reset() throws DataRowException {
+        close();
+        try {
+            channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+            readFooter();
+        }
+        catch (final IOException e) {
+            close();
+            throw new DataRowException("Failed to open columnar file " + fileName, e);
+        }
+        resolveColumns();
+        nextRowGroup = 0;
+        values = null;
+        rowGroupRows = 0;
+        nextRow = 0;
+        next = null;
+        rowsScanned = 0;
+        rowsEmitted = 0;
+        rowGroupsRead = 0;
+        rowGroupsSkipped = 0;
+        // read ahead, like FileDataReader, so hasNextDataRow is exact
+        next = readNext();
+    }
+
+    private void readFooter() throws IOException {
+        final long size = channel.size();
+        final int magicLength = ColumnarFormat.MAGIC.length;
+        if (size < 2 * magicLength + 4) {
+            throw new IOException(fileName + " is not a columnar file");
+        }
+        final ByteBuffer trailer = read(size - magicLength - 4, magicLength + 4);
+        final int footerLength = trailer.getInt();
+        final byte[] magic = new byte[magicLength];
+        trailer.get(magic);
+        if (!Arrays.equals(magic, ColumnarFormat.MAGIC) || footerLength < 0
+                || footerLength > size - 2 * magicLength - 4) {
+            throw new IOException(fileName + " is not a columnar file or wasn't closed");
+        }
+        final ByteBuffer footer = read(size - magicLength - 4 - footerLength, footerLength);
+        rowGroups.clear();
+        fileMetadata = ColumnarFormat.readFooter(
+                new DataInputStream(new ByteArrayInputStream(footer.array(), 0, footerLength)), rowGroups);
+    }
+
+    private ByteBuffer read(final long offset, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) == -1) {
+                throw new IOException("Unexpected end of " + fileName);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Works out which columns to decode and the metadata of the rows
+     */
+    private void resolveColumns() throws DataRowException {
+        if (projection != null) {
+            for (final String column : projection) {
+                if (!fileMetadata.containsKey(column)) {
+                    throw new DataRowException("Projected column " + column + " is not in " + fileName);
+                }
+            }
+        }
+        predicateColumns = predicate == null ? new HashSet<String>() : predicate.getColumns();
+
+        final int count = fileMetadata.getKeyCount();
+        final int[] columns = new int[count];
+        final boolean[] projected = new boolean[count];
+        int read = 0;
+        for (int i = 0; i < count; i++) {
+            if (projection == null || projection.contains(fileMetadata.getKey(i))) {
+                projected[i] = true;
+                columns[read++] = i;
+            }
+        }
+        projectedCount = read;
+        for (int i = 0; i < count; i++) {
+            if (!projected[i] && (predicateColumns == null || predicateColumns.contains(fileMetadata.getKey(i)))) {
+                columns[read++] = i;
+            }
+        }
+        readColumns = Arrays.copyOf(columns, read);
+
+        if (read == count && projectedCount == count) {
+            metadata = fileMetadata;
+            readMetadata = fileMetadata;
+        }
+        else {
+            metadata = subset(projectedCount);
+            readMetadata = read == projectedCount ? metadata : subset(read);
+        }
+        dateFormats = new SimpleDateFormat[count];
+        testRow = null;
+    }
+
+    private DataRowMetadata subset(final int count) {
+        final DataRowMetadata subset = new DataRowMetadata();
+        for (int i = 0; i < count; i++) {
+            final int column = readColumns[i];
+            final String key = fileMetadata.getKey(column);
+            subset.setColumnType(key, fileMetadata.getColumnType(column), fileMetadata.isNullable(column));
+            subset.setDateFormat(key, fileMetadata.getDateFormat(column));
+        }
+        return subset;
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            }
+            catch (final IOException e) {
+                // nothing left to read
+            }
+            channel = null;
+        }
+        values = null;
+        next = null;
+    }
+
+    @Override
+    public boolean hasNextDataRow() {
+        return next != null;
+    }
+
+    @Override
+    public DataRow getNextDataRow() throws DataRowException {
+        final DataRow row = next;
+        next = readNext();
+        return row;
+    }
+
+    private DataRow readNext() throws DataRowException {
+        while (true) {
+            while (nextRow < rowGroupRows) {
+                final int row = nextRow++;
+                rowsScanned++;
+                if (predicate == null) {
+                    rowsEmitted++;
+                    return buildRow(metadata, projectedCount, row, null);
+                }
+                if (readMetadata == metadata) {
+                    final DataRow candidate = buildRow(metadata, projectedCount, row, null);
+                    if (predicate.test(candidate)) {
+                        rowsEmitted++;
+                        return candidate;
+                    }
+                }
+                else {
+                    // predicate only columns are tested on a reused row and left out of the result
+                    final DataRow candidate = buildRow(readMetadata, readColumns.length, row, testRow);
+                    if (candidate instanceof TypedDataRow) {
+                        testRow = (TypedDataRow) candidate;
+                    }
+                    if (predicate.test(candidate)) {
+                        rowsEmitted++;
+                        return buildRow(metadata, projectedCount, row, null);
+                    }
+                }
+            }
+            if (channel == null || nextRowGroup >= rowGroups.size()) {
+                values = null;
+                return null;
+            }
+            readRowGroup(rowGroups.get(nextRowGroup++));
+        }
+    }
+
+    private void readRowGroup(final RowGroupInfo rowGroup) throws DataRowException {
+        values = null;
+        rowGroupRows = 0;
+        nextRow = 0;
+        if (predicate != null && !predicate.mightMatch(getStatistics(rowGroup))) {
+            rowGroupsSkipped++;
+            return;
+        }
+
+        final int rowCount = rowGroup.getRowCount();
+        final ColumnValues[] decoded = new ColumnValues[readColumns.length];
+        boolean typed = fileMetadata.isTyped();
+        try {
+            for (int i = 0; i < readColumns.length; i++) {
+                final ChunkInfo chunk = rowGroup.getChunk(readColumns[i]);
+                final ByteBuffer bytes = read(chunk.getOffset(), chunk.getLength());
+                decoded[i] = ColumnarFormat.decode(bytes.array(), chunk, rowCount);
+                typed = typed && chunk.getKind() == ColumnarFormat.getKind(fileMetadata.getColumnType(readColumns[i]));
+            }
+        }
+        catch (final IOException e) {
+            throw new DataRowException("Failed to read row group " + (nextRowGroup - 1) + " of " + fileName, e);
+        }
+        catch (final RuntimeException e) {
+            throw new DataRowException("Malformed row group " + (nextRowGroup - 1) + " of " + fileName, e);
+        }
+        values = decoded;
+        typedRowGroup = typed;
+        rowGroupRows = rowCount;
+        rowGroupsRead++;
+    }
+
+    /**
+     * Statistics of the columns the predicate reads, columns missing from the
+     * file are all null
+     */
+    private Map<String, ColumnStatistics> getStatistics(final RowGroupInfo rowGroup) {
+        final Map<String, ColumnStatistics> statistics = new HashMap<String, ColumnStatistics>();
+        final Collection<String> columns = predicateColumns == null ? fileMetadata.getKeySet() : predicateColumns;
+        for (final String column : columns) {
+            final int index = fileMetadata.getIndexOf(column);
+            if (index == -1) {
+                statistics.put(column, ColumnStatistics.allNull(rowGroup.getRowCount()));
+            }
+            else {
+                statistics.put(column, getStatistics(rowGroup, index));
+            }
+        }
+        return statistics;
+    }
+
+    private ColumnStatistics getStatistics(final RowGroupInfo rowGroup, final int column) {
+        final ChunkInfo chunk = rowGroup.getChunk(column);
+        final ColumnType type = fileMetadata.getColumnType(column);
+        double minNumber = Double.NaN;
+        double maxNumber = Double.NaN;
+        String minString = null;
+        String maxString = null;
+        switch (chunk.getStatsKind()) {
+            case ColumnarFormat.STATS_LONG:
+                // DATE and BOOLEAN values are compared as text, only numbers have a numeric range
+                if (type == ColumnType.LONG || type == ColumnType.INT) {
+                    // widened by an ulp so longs that don't fit a double stay inside the range
+                    minNumber = Math.nextDown((double) chunk.getMinLong());
+                    maxNumber = Math.nextUp((double) chunk.getMaxLong());
+                }
+                break;
+            case ColumnarFormat.STATS_DOUBLE:
+                minNumber = chunk.getMinDouble();
+                maxNumber = chunk.getMaxDouble();
+                break;
+            case ColumnarFormat.STATS_STRING:
+                minString = chunk.getMinString();
+                maxString = chunk.getMaxString();
+                break;
+            default:
+                break;
+        }
+        return new ColumnStatistics(rowGroup.getRowCount(), chunk.getNullCount(), minNumber, maxNumber, minString,
+                maxString);
+    }
+
+    /**
+     * Builds row of the current row group from the first count decoded
+     * columns, reusing reuse when the row is typed and reuse is not null
+     */
+    private DataRow buildRow(final DataRowMetadata rowMetadata, final int count, final int row,
+            final TypedDataRow reuse) throws DataRowException {
+        if (typedRowGroup) {
+            final TypedDataRow typedRow = reuse != null ? reuse : new TypedDataRow(rowMetadata);
+            typedRow.startFill();
+            for (int i = 0; i < count; i++) {
+                final ColumnValues column = values[i];
+                if (column.isNull(row)) {
+                    typedRow.fillNull(i);
+                    continue;
+                }
+                switch (column.getKind()) {
+                    case ColumnarFormat.KIND_LONG:
+                        typedRow.fillLong(i, column.getLong(row));
+                        break;
+                    case ColumnarFormat.KIND_DOUBLE:
+                        typedRow.fillDouble(i, column.getDouble(row));
+                        break;
+                    case ColumnarFormat.KIND_BOOLEAN:
+                        typedRow.fillBoolean(i, column.getLong(row) != 0);
+                        break;
+                    default:
+                        typedRow.fillString(i, column.getString(row));
+                }
+            }
+            return typedRow;
+        }
+
+        final String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            final ColumnValues column = values[i];
+            if (column.isNull(row)) {
+                continue;
+            }
+            switch (column.getKind()) {
+                case ColumnarFormat.KIND_LONG:
+                    if (fileMetadata.getColumnType(readColumns[i]) == ColumnType.DATE) {
+                        strings[i] = getDateFormat(readColumns[i]).format(new Date(column.getLong(row)));
+                    }
+                    else {
+                        strings[i] = Long.toString(column.getLong(row));
+                    }
+                    break;
+                case ColumnarFormat.KIND_DOUBLE:
+                    strings[i] = Double.toString(column.getDouble(row));
+                    break;
+                case ColumnarFormat.KIND_BOOLEAN:
+                    strings[i] = column.getLong(row) != 0 ? "true" : "false";
+                    break;
+                default:
+                    strings[i] = column.getString(row);
+            }
+        }
+        return new DataRow(rowMetadata, strings);
+    }
+
+    private SimpleDateFormat getDateFormat(final int column) {
+        if (dateFormats[column] == null) {
+            dateFormats[column] = new SimpleDateFormat(fileMetadata.getDateFormat(column));
+        }
+        return dateFormats[column];
+    }
+
+    /**
+     * Returns the metadata of the rows, after projection
+     */
+    public DataRowMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Returns the metadata stored in the file
+     */
+    public DataRowMetadata getFileMetadata() {
+        return fileMetadata;
+    }
+
+    public int getRowGroupCount() {
+        return rowGroups.size();
+    }
+
+    public int getRowGroupsRead() {
+        return rowGroupsRead;
+    }
+
+    public int getRowGroupsSkipped() {
+        return rowGroupsSkipped;
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public long getRowsEmitted() {
+        return rowsEmitted;
+    }
+
+    @Override
+    public String getDescription() {
+        return "ColumnarDataReader(" + fileName + ")";
+    }
+
+    @Override
+    public String toString() {
+        return getDescription();
+    }
+}
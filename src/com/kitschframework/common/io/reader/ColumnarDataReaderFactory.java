@@ -0,0 +1,35 @@
+/**
+ * 
+ */
+package com.kitschframework.common.io.reader;
+
+import java.util.Collection;
+
+import com.kitschframework.common.io.DataRowException;
+
+/**
+ * ColumnarDataReaderFactory
+ * 
+ * Reads the files written by ColumnarDataWriterFactory, projected columns and
+ * predicates are pushed down to the row groups
+ * 
+ */
+public class ColumnarDataReaderFactory extends DataReaderFactory
+{
+
+    @Override
+    public DataReader create(String fileName) throws DataRowException {
+        return new ColumnarDataReader(fileName);
+    }
+
+    @Override
+    public DataReader create(String fileName, Collection<String> columns) throws DataRowException {
+        return new ColumnarDataReader(fileName, columns);
+    }
+
+    @Override
+    public DataReader create(String fileName, Collection<String> columns, RowPredicate predicate)
+            throws DataRowException {
+        return new ColumnarDataReader(fileName, columns, predicate);
+    }
+}
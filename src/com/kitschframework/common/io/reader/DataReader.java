@@ -1,7 +1,11 @@
 package com.kitschframework.common.io.reader;
 
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 import com.kitschframework.common.io.DataRow;
 import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.batch.DataRowBatch;
 
 public interface DataReader
 {
@@ -14,4 +18,48 @@ public interface DataReader
     public abstract DataRow getNextDataRow() throws DataRowException;
 
     public abstract String getDescription();
+
+    /**
+     * Returns the remaining rows as a Stream. The stream splits off batches of
+     * rows for parallel processing, readers that know more about their input
+     * may split it differently. Closing the stream closes this reader.
+     * 
+     * A DataRowException raised while streaming is thrown as an
+     * UncheckedDataRowException.
+     */
+    public default Stream<DataRow> stream() {
+        return StreamSupport.stream(new DataReaderSpliterator(this), false).onClose(this::close);
+    }
+
+    /**
+     * Reads up to maxRows rows into a new columnar batch using the metadata of
+     * the first row, columns are stored with the types declared in it (see
+     * TypedDataReader) or as dictionary encoded strings. Returns null when there
+     * are no more rows.
+     */
+    public default DataRowBatch readBatch(final int maxRows) throws DataRowException {
+        if (!hasNextDataRow()) {
+            return null;
+        }
+        final DataRow first = getNextDataRow();
+        final DataRowBatch batch = new DataRowBatch(first.getMetadata(), maxRows);
+        batch.addDataRow(first);
+        while (!batch.isFull() && hasNextDataRow()) {
+            batch.addDataRow(getNextDataRow());
+        }
+        return batch;
+    }
+
+    /**
+     * Refills a batch with the next rows, up to its capacity, and returns the
+     * number of rows read. Reusing one typed batch avoids reallocating its
+     * column vectors.
+     */
+    public default int readBatch(final DataRowBatch batch) throws DataRowException {
+        batch.reset();
+        while (!batch.isFull() && hasNextDataRow()) {
+            batch.addDataRow(getNextDataRow());
+        }
+        return batch.size();
+    }
 }
@@ -3,12 +3,32 @@
  */
 package com.kitschframework.common.io.reader;
 
+import java.util.Collection;
+
 import com.kitschframework.common.io.DataRowException;
 
 public abstract class DataReaderFactory
 {
     public abstract DataReader create(String fileName) throws DataRowException;
 
+    /**
+     * Returns a reader whose rows only hold the given columns, factories whose
+     * parser can't skip columns throw a DataRowException
+     */
+    public DataReader create(String fileName, Collection<String> columns) throws DataRowException {
+        throw new DataRowException(getClass().getSimpleName() + " does not support column projection");
+    }
+
+    /**
+     * Returns a reader that only returns the rows accepted by predicate, with
+     * the given columns or every column when columns is null. Factories whose
+     * parser can't filter rows throw a DataRowException.
+     */
+    public DataReader create(String fileName, Collection<String> columns, RowPredicate predicate)
+            throws DataRowException {
+        throw new DataRowException(getClass().getSimpleName() + " does not support row predicates");
+    }
+
     public final static DataReaderFactory
             getFactory(String dataReaderFactoryClassName) throws DataRowException {
 
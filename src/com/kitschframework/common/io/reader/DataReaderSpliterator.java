@@ -0,0 +1,82 @@
+package com.kitschframework.common.io.reader;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.UncheckedDataRowException;
+
+/**
+ * DataReaderSpliterator
+ * 
+ * Spliterator over the rows of a DataReader. The reader can only be consumed
+ * sequentially, so trySplit() pulls the next batch of rows into an array and
+ * hands that off; batches grow with every split to amortize the copying, the
+ * same way the JDK handles iterators of unknown size.
+ *
+ */
+public class DataReaderSpliterator implements Spliterator<DataRow>
+{
+    static final int         BATCH_UNIT = 1024;
+
+    static final int         MAX_BATCH  = 1 << 25;
+
+    private final DataReader reader;
+
+    private int              batchSize  = 0;
+
+    public DataReaderSpliterator(final DataReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super DataRow> action) {
+        if (!reader.hasNextDataRow()) {
+            return false;
+        }
+        action.accept(next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super DataRow> action) {
+        while (reader.hasNextDataRow()) {
+            action.accept(next());
+        }
+    }
+
+    @Override
+    public Spliterator<DataRow> trySplit() {
+        if (!reader.hasNextDataRow()) {
+            return null;
+        }
+        batchSize = Math.min(batchSize + BATCH_UNIT, MAX_BATCH);
+        final DataRow[] batch = new DataRow[batchSize];
+        int count = 0;
+        while (count < batch.length && reader.hasNextDataRow()) {
+            batch[count++] = next();
+        }
+        return Spliterators.spliterator(batch, 0, count, characteristics());
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    private DataRow next() {
+        try {
+            return reader.getNextDataRow();
+        }
+        catch (final DataRowException e) {
+            throw new UncheckedDataRowException(reader.getDescription(), e);
+        }
+    }
+}
@@ -4,6 +4,7 @@
 package com.kitschframework.common.io.reader;
 
 import java.io.BufferedReader;
+import java.util.Collection;
 
 import com.kitschframework.common.io.DataRow;
 import com.kitschframework.common.io.DataRowException;
@@ -12,7 +13,66 @@ public interface DataRowParser
 {
     public abstract void readMetadata(BufferedReader reader) throws DataRowException;
 
-    public abstract DataRow readDataRow(BufferedReader reader);
+    /**
+     * Returns the next row, or null when there are no more rows
+     */
+    public abstract DataRow readDataRow(BufferedReader reader) throws DataRowException;
+
+    /**
+     * Reads the next row into target, reusing its storage, and returns false
+     * when there are no more rows. Parsers that can't refill a row in place copy
+     * a freshly parsed row.
+     */
+    public default boolean readDataRow(BufferedReader reader, DataRow target) throws DataRowException {
+        final DataRow dataRow = readDataRow(reader);
+        if (dataRow == null) {
+            return false;
+        }
+        target.copyFrom(dataRow);
+        return true;
+    }
+
+    /**
+     * Restricts the rows to the given columns, resolved against the header when
+     * the metadata is read. Must be set before readMetadata.
+     */
+    public default void setProjection(Collection<String> columns) throws DataRowException {
+        throw new DataRowException(getDescription() + " does not support column projection");
+    }
+
+    /**
+     * Only returns rows accepted by predicate, parsers that keep the raw line
+     * test it before building the row
+     */
+    public default void setPredicate(RowPredicate predicate) throws DataRowException {
+        throw new DataRowException(getDescription() + " does not support row predicates");
+    }
+
+    /**
+     * Returns the number of well-formed lines parsed since the metadata was read,
+     * or -1 if the parser does not count them
+     */
+    public default long getRowsScanned() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of rows returned since the metadata was read, or -1
+     * if the parser does not count them
+     */
+    public default long getRowsEmitted() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of lines consumed since the metadata was read,
+     * including blank, malformed and rejected lines, or -1 if the parser does
+     * not count them. Used to resume a reader at a line, see
+     * FileDataReader.getCheckpoint.
+     */
+    public default long getLinesRead() {
+        return -1;
+    }
 
     public abstract String getDescription();
 
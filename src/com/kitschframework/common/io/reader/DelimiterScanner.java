@@ -0,0 +1,120 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * DelimiterScanner
+ *
+ * Finds the tabs and the newline of a line of bytes eight bytes at a time.
+ * Each long read from the buffer is tested for tab and newline bytes with
+ * word-wide arithmetic (SWAR, "SIMD within a register"), so a run of eight
+ * bytes without a delimiter costs a couple of operations instead of eight
+ * compares and branches. The bytes left at the end of the buffer, and every
+ * byte when created with swar false, go through the plain per-byte loop.
+ *
+ * Used by MappedTabDelimitedDataRowParser, the positions it records are the
+ * field bounds of ByteDataRow.
+ *
+ */
+public final class DelimiterScanner
+{
+    private static final long ONES    = 0x0101010101010101L;
+    private static final long LOW7    = 0x7f7f7f7f7f7f7f7fL;
+    private static final long TABS    = '\t' * ONES;
+    private static final long NEWLINE = '\n' * ONES;
+
+    private final boolean     swar;
+    private int               tabCount;
+
+    public DelimiterScanner() {
+        this(true);
+    }
+
+    /**
+     * swar false scans one byte at a time, for comparison
+     */
+    public DelimiterScanner(final boolean swar) {
+        this.swar = swar;
+    }
+
+    /**
+     * Scans from start for the newline ending the line, recording the
+     * position of the first maxTabs tabs before it in tabs[1], tabs[2], ...
+     * Returns the position of the newline, or limit if there is none.
+     * getTabCount then returns the number of tabs of the line, recorded or
+     * not.
+     */
+    public int scanLine(final ByteBuffer buffer, final int start, final int limit, final int[] tabs, final int maxTabs) {
+        int count = 0;
+        int position = start;
+        if (swar) {
+            final boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+            for (; position + 8 <= limit; position += 8) {
+                final long word = buffer.getLong(position);
+                long tabBytes = zeroBytes(word ^ TABS);
+                final long newlineBytes = zeroBytes(word ^ NEWLINE);
+                if ((tabBytes | newlineBytes) == 0) {
+                    continue;
+                }
+                final int newline = newlineBytes == 0 ? 8 : firstByte(newlineBytes, bigEndian);
+                while (tabBytes != 0) {
+                    final int tab = firstByte(tabBytes, bigEndian);
+                    if (tab > newline) {
+                        break;
+                    }
+                    count++;
+                    if (count <= maxTabs) {
+                        tabs[count] = position + tab;
+                    }
+                    tabBytes = bigEndian ? tabBytes ^ Long.highestOneBit(tabBytes) : tabBytes & (tabBytes - 1);
+                }
+                if (newline < 8) {
+                    tabCount = count;
+                    return position + newline;
+                }
+            }
+        }
+        for (; position < limit; position++) {
+            final byte b = buffer.get(position);
+            if (b == '\n') {
+                break;
+            }
+            if (b == '\t') {
+                count++;
+                if (count <= maxTabs) {
+                    tabs[count] = position;
+                }
+            }
+        }
+        tabCount = count;
+        return position;
+    }
+
+    /**
+     * Returns the number of tabs found by the last scanLine
+     */
+    public int getTabCount() {
+        return tabCount;
+    }
+
+    /**
+     * Sets the high bit of every zero byte of x and clears every other bit.
+     * Unlike the usual (x - ONES) & ~x & HIGH test no borrow crosses a byte,
+     * so there are no false positives.
+     */
+    private static long zeroBytes(final long x) {
+        return ~(((x & LOW7) + LOW7) | x | LOW7);
+    }
+
+    /**
+     * Returns the index, in memory order, of the first byte flagged by
+     * zeroBytes
+     */
+    private static int firstByte(final long bytes, final boolean bigEndian) {
+        return (bigEndian ? Long.numberOfLeadingZeros(bytes) : Long.numberOfTrailingZeros(bytes)) >>> 3;
+    }
+}
@@ -1,5 +1,6 @@
 package com.kitschframework.common.io.reader;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
@@ -7,31 +8,109 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.zip.GZIPInputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
 
 import com.kitschframework.common.io.DataRow;
 import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.compress.BlockGzip;
+import com.kitschframework.common.io.compress.BlockGzipIndex;
+import com.kitschframework.common.io.compress.CompressionCodec;
+import com.kitschframework.common.io.compress.CompressionCodecs;
+import com.kitschframework.common.io.compress.GzipCodec;
 
 /**
  * FileDataReader
  * 
  * Abstract class that reads from a local file system file
  * 
+ * Uncompressed files read with a ByteDataRowParser are parsed straight from a
+ * memory-mapped view of the file, a StreamDataRowParser reads the bytes of the
+ * file through a DataInputStream, everything else goes through a BufferedReader.
+ * 
+ * Compressed files are decompressed with the codec of CompressionCodecs
+ * matching their extension or, failing that, their first bytes.
+ * 
+ * A reader can be moved to any line with seekToRow, which uses the file's
+ * RowOffsetIndex to skip to the line without parsing the rows before it, and
+ * getCheckpoint returns a token that resumes reading at the current row, see
+ * seekTo(ReaderCheckpoint). Lines are numbered from the first line after the
+ * header, blank and malformed lines included.
+ * 
  * 
  *
  */
 public class FileDataReader implements DataReader {
 
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
 	private BufferedReader reader;
+	private LineOffsetInputStream lineInput;
+	/** Lines of lineInput before firstLine, 1 when it starts with the header */
+	private long lineInputHeaderLines;
+	private DataInputStream dataInput;
+	private FileChannel channel;
+	private MappedFileInput mappedInput;
 	private DataRowParser parser;
+	private StreamDataRowParser streamParser;
 	private String fileName;
 	private DataRow nextDataRow = null;
 
+	/** Line the current input starts at */
+	private long firstLine;
+	/** Line and mapped offset the parser started at when reading nextDataRow */
+	private long nextRowLine;
+	private long nextRowOffset;
+
+	private CompressionCodec codec;
+	private boolean codecResolved;
+
+	private RowOffsetIndex rowIndex;
+	private BlockGzipIndex blockIndex;
+	private boolean blockIndexLoaded;
+
 	public FileDataReader(String fileName, DataRowParser parser)  throws DataRowException {
 		this.fileName = fileName;
 		this.parser = parser;
 		reset();
 	}
+
+	/**
+	 * Creates a reader of a binary file, see StreamDataRowParser
+	 */
+	public FileDataReader(String fileName, StreamDataRowParser parser) throws DataRowException {
+		this.fileName = fileName;
+		this.streamParser = parser;
+		reset();
+	}
+
+	/**
+	 * Creates a reader whose rows only hold the given columns, see
+	 * DataRowParser.setProjection
+	 */
+	public FileDataReader(String fileName, DataRowParser parser, Collection<String> columns) throws DataRowException {
+		this.fileName = fileName;
+		this.parser = parser;
+		parser.setProjection(columns);
+		reset();
+	}
+
+	/**
+	 * Creates a reader that only returns the rows accepted by predicate, see
+	 * DataRowParser.setPredicate. columns may be null to keep every column.
+	 */
+	public FileDataReader(String fileName, DataRowParser parser, Collection<String> columns, RowPredicate predicate) throws DataRowException {
+		this.fileName = fileName;
+		this.parser = parser;
+		if (columns != null) {
+			parser.setProjection(columns);
+		}
+		if (predicate != null) {
+			parser.setPredicate(predicate);
+		}
+		reset();
+	}
 	
 	@Override
 	public final boolean hasNextDataRow() {
@@ -41,40 +120,347 @@ public class FileDataReader implements DataReader {
 	@Override
 	public final DataRow getNextDataRow() throws DataRowException {
 		DataRow thisRow = nextDataRow;
-		nextDataRow = parser.readDataRow(reader);
+		nextDataRow = readDataRow();
 		return thisRow;
 	}
+
+	/**
+	 * Reads the next row into target instead of allocating a new one, target's
+	 * storage is reused so a full scan allocates next to nothing per row. For
+	 * memory-mapped input pass a ByteDataRow, for a LazyTabDelimitedDataRowParser
+	 * a CharDataRow, so fields are only decoded when read. Returns false once
+	 * there are no more rows.
+	 * 
+	 * Rows read this way are not visible through hasNextDataRow/getNextDataRow,
+	 * don't mix the two on one reader.
+	 */
+	public final boolean readInto(DataRow target) throws DataRowException {
+		if (nextDataRow != null) {
+			// the row read ahead by reset()
+			target.copyFrom(nextDataRow);
+			nextDataRow = null;
+			return true;
+		}
+		if (dataInput != null) {
+			DataRow dataRow = readDataRow();
+			if (dataRow == null) {
+				return false;
+			}
+			target.copyFrom(dataRow);
+			return true;
+		}
+		if (mappedInput == null) {
+			if (reader == null) {
+				return false;
+			}
+			findLineOffset(parser.getLinesRead());
+			return parser.readDataRow(reader, target);
+		}
+		try {
+			return mappedInput.readDataRow((ByteDataRowParser) parser, target);
+		}
+		catch (IOException e) {
+			throw new DataRowException(e);
+		}
+	}
+
+	private DataRow readDataRow() throws DataRowException {
+		if (dataInput != null) {
+			return streamParser.readDataRow(dataInput);
+		}
+		nextRowLine = firstLine + parser.getLinesRead();
+		if (mappedInput == null) {
+			nextRowOffset = findLineOffset(parser.getLinesRead());
+			return parser.readDataRow(reader);
+		}
+		nextRowOffset = mappedInput.getPosition();
+		try {
+			return mappedInput.readDataRow((ByteDataRowParser) parser);
+		}
+		catch (IOException e) {
+			throw new DataRowException(e);
+		}
+	}
 	
 	@Override
 	public final void reset() throws DataRowException {
-	    try {
-			// If the provided input file is a GZIP file pass the FileInputStream to a GZIPInputStream.
-			FileInputStream fileInput = new FileInputStream(fileName);
-			InputStream input = null;
-			
-			if (fileName.endsWith(".gz")) {
-			    input = new GZIPInputStream(fileInput);
+		open(0, -1, -1, 0);
+	}
+
+	/**
+	 * Moves the reader so the next row returned is the first one at or after
+	 * the given line. The line's offset comes from the RowOffsetIndex sidecar,
+	 * which is built by reading the whole file once if it is missing, and at
+	 * most interval - 1 lines are skipped from there. Seeking past the last
+	 * line leaves the reader at the end.
+	 */
+	public final void seekToRow(long line) throws DataRowException {
+		if (streamParser != null) {
+			throw new DataRowException(streamParser.getDescription() + " has no lines to seek to");
+		}
+		try {
+			line = Math.min(Math.max(line, 0), getRowIndex().getLineCount());
+			long offset = findOffset(line);
+			long[] block = findBlock(offset);
+			open(line, offset, block[0], block[1]);
+		}
+		catch (IOException e) {
+			throw new DataRowException(e);
+		}
+	}
+
+	/**
+	 * Returns a token for the position of the reader, passing it to seekTo
+	 * makes the next row returned the same one this reader would return next.
+	 * The offset of the row is tracked while reading, so taking a checkpoint
+	 * reads nothing but, once per reader, the block index of a blocked gzip
+	 * file.
+	 */
+	public final ReaderCheckpoint getCheckpoint() throws DataRowException {
+		if (streamParser != null || parser.getLinesRead() < 0) {
+			throw new DataRowException(getParserDescription() + " does not count lines, can't take a checkpoint");
+		}
+		long line;
+		long offset;
+		if (nextDataRow != null) {
+			line = nextRowLine;
+			offset = nextRowOffset;
+		}
+		else {
+			line = firstLine + parser.getLinesRead();
+			offset = mappedInput != null ? mappedInput.getPosition() : findLineOffset(parser.getLinesRead());
+		}
+		try {
+			if (offset < 0) {
+				// not tracked, e.g. the reader is closed
+				offset = findOffset(line);
+			}
+			long[] block = findBlock(offset);
+			return new ReaderCheckpoint(fileName, line, offset, block[0], block[1]);
+		}
+		catch (IOException e) {
+			throw new DataRowException(e);
+		}
+	}
+
+	/**
+	 * Resumes reading at a checkpoint taken by a reader of the same file. Only
+	 * the header and, for blocked gzip files, the part of the block before the
+	 * checkpoint are read, other gzip files are decompressed up to it.
+	 */
+	public final void seekTo(ReaderCheckpoint checkpoint) throws DataRowException {
+		if (!checkpoint.getFileName().equals(fileName)) {
+			throw new DataRowException("Checkpoint " + checkpoint + " is not in " + fileName);
+		}
+		if (!checkpoint.isCurrent()) {
+			throw new DataRowException(fileName + " has changed since checkpoint " + checkpoint);
+		}
+		open(checkpoint.getLine(), checkpoint.getOffset(), checkpoint.getBlockOffset(),
+				checkpoint.getBlockUncompressedOffset());
+	}
+
+	/**
+	 * Reads the header and positions the input at the uncompressed offset of
+	 * line, or right after the header when offset is -1
+	 */
+	private void open(long line, long offset, long blockOffset, long blockUncompressedOffset) throws DataRowException {
+		try {
+			closeInput();
+			firstLine = line;
+			if (streamParser != null) {
+				if (offset >= 0) {
+					throw new DataRowException(streamParser.getDescription() + " has no lines to seek to");
+				}
+				dataInput = new DataInputStream(new BufferedInputStream(openAt(0, -1, 0), STREAM_BUFFER_SIZE));
+				streamParser.readMetadata(dataInput);
+				nextDataRow = readDataRow();
+				return;
 			}
-			else {
-			    input = fileInput;
+			if (parser instanceof ByteDataRowParser && getCodec() == null) {
+				channel = new RandomAccessFile(fileName, "r").getChannel();
+				mappedInput = new MappedFileInput(channel, 0, channel.size(), MappedFileInput.DEFAULT_WINDOW_SIZE);
+				((ByteDataRowParser) parser).readMetadata(mappedInput.getBuffer());
+				if (offset >= 0) {
+					mappedInput = new MappedFileInput(channel, offset, channel.size(),
+							MappedFileInput.DEFAULT_WINDOW_SIZE);
+				}
+				nextDataRow = readDataRow();
+				return;
 			}
-			
-			reader = new BufferedReader(new InputStreamReader(new DataInputStream(input)));
+
+			lineInput = new LineOffsetInputStream(openAt(0, -1, 0), 0);
+			lineInputHeaderLines = 1;
+			reader = newReader(lineInput);
 			parser.readMetadata(reader);
-			nextDataRow = parser.readDataRow(reader);
+			if (offset >= 0) {
+				reader.close();
+				lineInput = new LineOffsetInputStream(openAt(offset, blockOffset, blockUncompressedOffset), offset);
+				lineInputHeaderLines = 0;
+				reader = newReader(lineInput);
+			}
+			nextDataRow = readDataRow();
 		}
-	    catch (FileNotFoundException e) {
+		catch (FileNotFoundException e) {
 			throw new DataRowException(e);
 		}
-	    catch (IOException e) {
+		catch (IOException e) {
 			throw new DataRowException(e);
 		}
 	}
 
+	private static BufferedReader newReader(InputStream input) {
+		return new BufferedReader(new InputStreamReader(new DataInputStream(input)));
+	}
+
+	/**
+	 * Opens the file at an uncompressed offset. A compressed file's
+	 * FileInputStream is passed to its codec, blocked gzip files are
+	 * decompressed in parallel starting at blockOffset, other compressed files
+	 * from the start.
+	 */
+	private InputStream openAt(long offset, long blockOffset, long blockUncompressedOffset) throws IOException {
+		FileInputStream fileInput = new FileInputStream(fileName);
+		try {
+			CompressionCodec codec = getCodec();
+			if (codec == null) {
+				fileInput.getChannel().position(offset);
+				return fileInput;
+			}
+			long skip = offset;
+			if (blockOffset >= 0) {
+				fileInput.getChannel().position(blockOffset);
+				skip = offset - blockUncompressedOffset;
+			}
+			InputStream input = codec.newInputStream(fileInput);
+			try {
+				RowOffsetIndex.skipFully(input, skip);
+			}
+			catch (IOException e) {
+				input.close();
+				throw e;
+			}
+			return input;
+		}
+		catch (IOException e) {
+			fileInput.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the uncompressed offset of the line the parser is at after
+	 * linesRead lines, or -1 if it isn't known. Lines before it are released.
+	 */
+	private long findLineOffset(long linesRead) {
+		if (lineInput == null || linesRead < 0) {
+			return -1;
+		}
+		long line = lineInputHeaderLines + linesRead;
+		lineInput.release(line);
+		return lineInput.getLineStart(line);
+	}
+
+	/**
+	 * Returns the uncompressed offset of a line, from the closest indexed line
+	 * before it
+	 */
+	private long findOffset(long line) throws IOException {
+		RowOffsetIndex index = getRowIndex();
+		int entry = index.findEntry(line);
+		long indexedLine = (long) entry * index.getInterval();
+		long offset = index.getOffset(entry);
+		if (indexedLine < line) {
+			long[] block = findBlock(offset);
+			BufferedInputStream input = new BufferedInputStream(openAt(offset, block[0], block[1]));
+			try {
+				offset += RowOffsetIndex.skipLines(input, line - indexedLine);
+			}
+			finally {
+				input.close();
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Returns the compressed and uncompressed offsets of the blocked gzip block
+	 * holding an uncompressed offset, or -1 when the file isn't blocked gzip
+	 */
+	private long[] findBlock(long offset) throws IOException {
+		BlockGzipIndex index = getBlockIndex();
+		if (index == null) {
+			return new long[] { -1, 0 };
+		}
+		int block = index.findBlock(offset);
+		return new long[] { index.getCompressedOffset(block), index.getUncompressedOffset(block) };
+	}
+
+	/**
+	 * Returns the codec of the file, or null if it isn't compressed
+	 */
+	private CompressionCodec getCodec() {
+		if (!codecResolved) {
+			codec = CompressionCodecs.forFile(fileName);
+			codecResolved = true;
+		}
+		return codec;
+	}
+
+	private RowOffsetIndex getRowIndex() throws IOException {
+		if (rowIndex == null || !rowIndex.isCurrent(fileName)) {
+			rowIndex = RowOffsetIndex.load(fileName);
+		}
+		return rowIndex;
+	}
+
+	private BlockGzipIndex getBlockIndex() throws IOException {
+		if (!blockIndexLoaded && getCodec() instanceof GzipCodec) {
+			byte[] header = new byte[32];
+			int length = 0;
+			FileInputStream input = new FileInputStream(fileName);
+			try {
+				int read;
+				while (length < 32 && (read = input.read(header, length, 32 - length)) != -1) {
+					length += read;
+				}
+			}
+			finally {
+				input.close();
+			}
+			if (BlockGzip.isBlockGzip(header, length)) {
+				blockIndex = BlockGzipIndex.load(fileName);
+			}
+		}
+		blockIndexLoaded = true;
+		return blockIndex;
+	}
+
+	private void closeInput() throws IOException {
+		nextDataRow = null;
+		if (reader != null) {
+			reader.close();
+			reader = null;
+			lineInput = null;
+		}
+		if (dataInput != null) {
+			dataInput.close();
+			dataInput = null;
+		}
+		closeChannel();
+	}
+
+	private void closeChannel() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+			mappedInput = null;
+		}
+	}
+
 	@Override
 	public final void close() {
 	    try {
-			reader.close();
+	    	closeInput();
 		}
 	    catch (IOException e) {
 	    	//TODO what do you do when you get this exception, honestly?
@@ -86,7 +472,28 @@ public class FileDataReader implements DataReader {
 		return reader;
 	}
 	
+	/**
+	 * Returns the number of rows the parser has looked at, including the ones
+	 * a predicate rejected, or -1 if the parser does not count them
+	 */
+	public final long getRowsScanned() {
+		return streamParser != null ? streamParser.getRowsScanned() : parser.getRowsScanned();
+	}
+
+	/**
+	 * Returns the number of rows the parser has returned, or -1 if the parser
+	 * does not count them
+	 */
+	public final long getRowsEmitted() {
+		return streamParser != null ? streamParser.getRowsEmitted() : parser.getRowsEmitted();
+	}
+
+	@Override
 	public final String getDescription() {
-		return fileName + "[" + parser.getDescription() + "]";
+		return fileName + "[" + getParserDescription() + "]";
+	}
+
+	private String getParserDescription() {
+		return streamParser != null ? streamParser.getDescription() : parser.getDescription();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+
+/**
+ * FileSplitDataReader
+ *
+ * Reads the rows of an uncompressed file that start within a byte range. The
+ * range does not have to be aligned, a split that starts in the middle of a line
+ * skips ahead to the next one and the last line of a split is read to its end,
+ * so adjacent splits together read every line exactly once.
+ *
+ * The parser must already hold the file's metadata, the header is not read.
+ *
+ */
+public class FileSplitDataReader implements DataReader {
+
+	private final String fileName;
+	private final long start;
+	private final long end;
+	private final ByteDataRowParser parser;
+
+	private FileChannel channel;
+	private MappedFileInput input;
+	private DataRow nextDataRow = null;
+
+	public FileSplitDataReader(String fileName, long start, long end, ByteDataRowParser parser) throws DataRowException {
+		this.fileName = fileName;
+		this.start = start;
+		this.end = end;
+		this.parser = parser;
+		reset();
+	}
+
+	@Override
+	public final boolean hasNextDataRow() {
+		return nextDataRow != null;
+	}
+
+	@Override
+	public final DataRow getNextDataRow() throws DataRowException {
+		DataRow thisRow = nextDataRow;
+		nextDataRow = readDataRow();
+		return thisRow;
+	}
+
+	private DataRow readDataRow() throws DataRowException {
+		try {
+			return input.readDataRow(parser);
+		}
+		catch (IOException e) {
+			throw new DataRowException(e);
+		}
+	}
+
+	@Override
+	public final void reset() throws DataRowException {
+		try {
+			close();
+			channel = new RandomAccessFile(fileName, "r").getChannel();
+			if (start > 0) {
+				// only start at the first line beginning at or after start
+				input = new MappedFileInput(channel, start - 1, end, MappedFileInput.DEFAULT_WINDOW_SIZE);
+				input.skipLine();
+			}
+			else {
+				input = new MappedFileInput(channel, start, end, MappedFileInput.DEFAULT_WINDOW_SIZE);
+			}
+			nextDataRow = readDataRow();
+		}
+		catch (FileNotFoundException e) {
+			throw new DataRowException(e);
+		}
+		catch (IOException e) {
+			throw new DataRowException(e);
+		}
+	}
+
+	@Override
+	public final void close() {
+		try {
+			if (channel != null) {
+				channel.close();
+				channel = null;
+			}
+		}
+		catch (IOException e) {
+			// the channel is only read, nothing is lost when closing it fails
+			channel = null;
+		}
+	}
+
+	public final long getStart() {
+		return start;
+	}
+
+	public final long getEnd() {
+		return end;
+	}
+
+	@Override
+	public final String getDescription() {
+		return fileName + "(" + start + "-" + end + ")[" + parser.getDescription() + "]";
+	}
+}
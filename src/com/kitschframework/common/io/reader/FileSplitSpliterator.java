@@ -0,0 +1,106 @@
+package com.kitschframework.common.io.reader;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+import com.kitschframework.common.io.UncheckedDataRowException;
+
+/**
+ * FileSplitSpliterator
+ *
+ * Spliterator over the rows of a byte range of an uncompressed tab delimited
+ * file. trySplit() cuts the range in half without touching the file, the halves
+ * are read by their own FileSplitDataReader once traversal starts, so a
+ * parallel stream parses the file on every core.
+ *
+ * The size estimate is in bytes, not rows.
+ *
+ */
+public class FileSplitSpliterator implements Spliterator<DataRow>
+{
+    private final String          fileName;
+    private final DataRowMetadata metadata;
+    private final long            end;
+    private final long            minSplitSize;
+
+    private long                  start;
+    private FileSplitDataReader   reader;
+
+    public FileSplitSpliterator(final String fileName, final DataRowMetadata metadata, final long start,
+            final long end, final long minSplitSize) {
+        this.fileName = fileName;
+        this.metadata = metadata;
+        this.start = start;
+        this.end = end;
+        this.minSplitSize = minSplitSize;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super DataRow> action) {
+        final FileSplitDataReader reader = open();
+        if (!reader.hasNextDataRow()) {
+            reader.close();
+            return false;
+        }
+        action.accept(next(reader));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super DataRow> action) {
+        final FileSplitDataReader reader = open();
+        try {
+            while (reader.hasNextDataRow()) {
+                action.accept(next(reader));
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    @Override
+    public Spliterator<DataRow> trySplit() {
+        if (reader != null || end - start < 2 * minSplitSize) {
+            return null;
+        }
+        final long middle = start + (end - start) / 2;
+        final FileSplitSpliterator prefix = new FileSplitSpliterator(fileName, metadata, start, middle, minSplitSize);
+        start = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - start;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    private FileSplitDataReader open() {
+        if (reader == null) {
+            try {
+                reader = new FileSplitDataReader(fileName, start, end, new MappedTabDelimitedDataRowParser(metadata));
+            }
+            catch (final DataRowException e) {
+                throw new UncheckedDataRowException(fileName, e);
+            }
+        }
+        return reader;
+    }
+
+    private static DataRow next(final FileSplitDataReader reader) {
+        try {
+            return reader.getNextDataRow();
+        }
+        catch (final DataRowException e) {
+            throw new UncheckedDataRowException(reader.getDescription(), e);
+        }
+    }
+}
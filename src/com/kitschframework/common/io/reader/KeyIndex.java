@@ -0,0 +1,524 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+import com.kitschframework.common.io.compress.CompressionCodecs;
+
+/**
+ * KeyIndex
+ *
+ * On-disk hash index of an uncompressed tab delimited file from the value of a
+ * key column to the byte offset of the lines holding it. build() scans the
+ * file once and writes the index next to it, open() memory-maps the index so a
+ * lookup probes a few slots of the table and reads and parses only the
+ * matching lines.
+ *
+ * The index is an open addressing table of 16 byte slots, the 64-bit hash of
+ * the key followed by the offset of its line, at most half full. Keys that
+ * appear on several lines get a slot per line. Hashes are verified against the
+ * parsed row, so collisions never return the wrong row.
+ *
+ * Like RowOffsetIndex, the index records the length and modification time of
+ * the file, open() rebuilds an index that is out of date.
+ *
+ * Lookups are synchronized, share one KeyIndex between threads or open one per
+ * thread.
+ *
+ * Usage:
+ * <code>
+ * KeyIndex index = KeyIndex.open("/data/users.tsv", "user_id");
+ * DataRow user = index.lookup("12345");
+ * index.close();
+ * </code>
+ *
+ */
+public class KeyIndex
+{
+    public static final String   INDEX_SUFFIX      = ".keyidx";
+
+    private static final Charset UTF8              = Charset.forName("UTF-8");
+
+    private static final int     MAGIC             = 0x4b4b4958;
+    private static final int     HEADER_SIZE       = 40;
+    private static final int     SLOT_SIZE         = 16;
+    /** Slots per mapping, a mapping is limited to 2GB */
+    private static final int     SEGMENT_SHIFT     = 26;
+    private static final int     INITIAL_LINE_SIZE = 512;
+
+    private final String         fileName;
+    private final String         keyColumn;
+    private final RandomAccessFile dataFile;
+    private final FileChannel    data;
+    private final MappedByteBuffer[] segments;
+    private final long           slotMask;
+    private final long           entryCount;
+    private final DataRowMetadata metadata;
+    private final MappedTabDelimitedDataRowParser parser;
+
+    private KeyIndex(final String fileName, final String keyColumn, final MappedByteBuffer[] segments,
+            final long slotCount, final long entryCount) throws IOException, DataRowException {
+        this.fileName = fileName;
+        this.keyColumn = keyColumn;
+        this.segments = segments;
+        this.slotMask = slotCount - 1;
+        this.entryCount = entryCount;
+        this.dataFile = new RandomAccessFile(fileName, "r");
+        this.data = dataFile.getChannel();
+
+        final MappedTabDelimitedDataRowParser headerParser = new MappedTabDelimitedDataRowParser();
+        headerParser.readMetadata(readLine(0));
+        this.metadata = headerParser.getMetadata();
+        this.parser = new MappedTabDelimitedDataRowParser(metadata);
+    }
+
+    /**
+     * Returns the name of the index of keyColumn in fileName
+     */
+    public static String getIndexFileName(final String fileName, final String keyColumn) {
+        return fileName + "." + keyColumn + INDEX_SUFFIX;
+    }
+
+    /**
+     * Opens the index of keyColumn, building it first if it is missing or the
+     * file has changed since it was built
+     */
+    public static KeyIndex open(final String fileName, final String keyColumn) throws DataRowException {
+        final File indexFile = new File(getIndexFileName(fileName, keyColumn));
+        try {
+            if (!indexFile.exists() || !isCurrent(indexFile, new File(fileName))) {
+                build(fileName, keyColumn);
+            }
+            final RandomAccessFile index = new RandomAccessFile(indexFile, "r");
+            try {
+                final FileChannel channel = index.getChannel();
+                final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                final long slotCount = header.getLong(8);
+                return new KeyIndex(fileName, keyColumn, map(channel, slotCount, FileChannel.MapMode.READ_ONLY),
+                        slotCount, header.getLong(16));
+            }
+            finally {
+                // the mappings stay valid
+                index.close();
+            }
+        }
+        catch (final IOException e) {
+            throw new DataRowException(e);
+        }
+    }
+
+    /**
+     * Scans the file and writes the index of keyColumn. Blank lines are not
+     * indexed, rows without the key column are indexed under the empty key.
+     * The hash and offset of every line are spilled to a temporary file while
+     * scanning and inserted from it once the size of the table is known, so
+     * building takes the same memory whatever the number of lines.
+     */
+    public static void build(final String fileName, final String keyColumn) throws DataRowException {
+        if (CompressionCodecs.forFile(fileName) != null) {
+            throw new DataRowException("Key indexes need an uncompressed file, " + fileName + " is compressed");
+        }
+        final File file = new File(fileName);
+        final long fileLength = file.length();
+        final long lastModified = file.lastModified();
+
+        final File indexFile = new File(getIndexFileName(fileName, keyColumn));
+        final File entriesFile = new File(indexFile.getPath() + ".entries.tmp");
+        final File tempFile = new File(indexFile.getPath() + ".tmp");
+        try {
+            final LineScanner scanner;
+            final DataOutputStream entries = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                    entriesFile), 64 * 1024));
+            try {
+                scanner = new LineScanner(keyColumn, fileName, entries);
+                final InputStream input = new FileInputStream(file);
+                try {
+                    final byte[] chunk = new byte[64 * 1024];
+                    long position = 0;
+                    int read;
+                    while ((read = input.read(chunk)) != -1) {
+                        for (int i = 0; i < read; i++) {
+                            scanner.accept(chunk[i], position + i);
+                        }
+                        position += read;
+                    }
+                    scanner.finish();
+                }
+                finally {
+                    input.close();
+                }
+            }
+            finally {
+                entries.close();
+            }
+            final long count = scanner.getCount();
+
+            long slotCount = 2;
+            while (slotCount < count * 2) {
+                slotCount <<= 1;
+            }
+            final RandomAccessFile index = new RandomAccessFile(tempFile, "rw");
+            try {
+                index.setLength(0);
+                index.setLength(HEADER_SIZE + slotCount * SLOT_SIZE);
+                final FileChannel channel = index.getChannel();
+                final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                header.putInt(0, MAGIC);
+                header.putInt(4, scanner.getKeyField());
+                header.putLong(8, slotCount);
+                header.putLong(16, count);
+                header.putLong(24, fileLength);
+                header.putLong(32, lastModified);
+
+                final MappedByteBuffer[] segments = map(channel, slotCount, FileChannel.MapMode.READ_WRITE);
+                final long mask = slotCount - 1;
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+                        entriesFile), 64 * 1024));
+                try {
+                    for (long i = 0; i < count; i++) {
+                        final long hash = in.readLong();
+                        final long offset = in.readLong();
+                        long slot = hash & mask;
+                        while (getLong(segments, slot, 0) != 0) {
+                            slot = (slot + 1) & mask;
+                        }
+                        putLong(segments, slot, 0, hash);
+                        putLong(segments, slot, 8, offset);
+                    }
+                }
+                finally {
+                    in.close();
+                }
+                header.force();
+                for (final MappedByteBuffer segment : segments) {
+                    segment.force();
+                }
+            }
+            finally {
+                index.close();
+            }
+            if (indexFile.exists() && !indexFile.delete() || !tempFile.renameTo(indexFile)) {
+                throw new IOException("Can't replace " + indexFile);
+            }
+        }
+        catch (final IOException e) {
+            tempFile.delete();
+            throw new DataRowException(e);
+        }
+        finally {
+            entriesFile.delete();
+        }
+    }
+
+    private static boolean isCurrent(final File indexFile, final File file) throws IOException {
+        final RandomAccessFile index = new RandomAccessFile(indexFile, "r");
+        try {
+            if (index.length() < HEADER_SIZE || index.readInt() != MAGIC) {
+                return false;
+            }
+            index.seek(24);
+            return index.readLong() == file.length() && index.readLong() == file.lastModified();
+        }
+        finally {
+            index.close();
+        }
+    }
+
+    private static MappedByteBuffer[] map(final FileChannel channel, final long slotCount,
+            final FileChannel.MapMode mode) throws IOException {
+        final long slotsPerSegment = 1L << SEGMENT_SHIFT;
+        final int segmentCount = (int) ((slotCount + slotsPerSegment - 1) >>> SEGMENT_SHIFT);
+        final MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            final long slots = Math.min(slotsPerSegment, slotCount - i * slotsPerSegment);
+            segments[i] = channel.map(mode, HEADER_SIZE + i * slotsPerSegment * SLOT_SIZE, slots * SLOT_SIZE);
+        }
+        return segments;
+    }
+
+    private static long getLong(final MappedByteBuffer[] segments, final long slot, final int field) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) (slot & ((1L << SEGMENT_SHIFT) - 1))
+                * SLOT_SIZE + field);
+    }
+
+    private static void putLong(final MappedByteBuffer[] segments, final long slot, final int field,
+            final long value) {
+        segments[(int) (slot >>> SEGMENT_SHIFT)].putLong((int) (slot & ((1L << SEGMENT_SHIFT) - 1)) * SLOT_SIZE
+                + field, value);
+    }
+
+    /**
+     * Returns the first row whose key column equals key, or null
+     */
+    public synchronized DataRow lookup(final String key) throws DataRowException {
+        final List<DataRow> rows = lookup(key, true);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Returns every row whose key column equals key, in file order
+     */
+    public synchronized List<DataRow> lookupAll(final String key) throws DataRowException {
+        return lookup(key, false);
+    }
+
+    private List<DataRow> lookup(final String key, final boolean first) throws DataRowException {
+        final byte[] bytes = key.getBytes(UTF8);
+        long hash = LineScanner.FNV_OFFSET;
+        for (final byte b : bytes) {
+            hash = LineScanner.fnv(hash, b);
+        }
+        hash = LineScanner.finish(hash);
+
+        List<Long> offsets = null;
+        for (long slot = hash & slotMask; getLong(segments, slot, 0) != 0; slot = (slot + 1) & slotMask) {
+            if (getLong(segments, slot, 0) == hash) {
+                if (offsets == null) {
+                    offsets = new ArrayList<Long>(1);
+                }
+                offsets.add(getLong(segments, slot, 8));
+            }
+        }
+        if (offsets == null) {
+            return Collections.emptyList();
+        }
+
+        // slots of a key aren't in file order once the probe wraps around
+        Collections.sort(offsets);
+        final List<DataRow> rows = new ArrayList<DataRow>(offsets.size());
+        try {
+            for (final long offset : offsets) {
+                final DataRow row = parser.readDataRow(readLine(offset), true);
+                if (row != null) {
+                    final String value = row.getValueAsString(keyColumn);
+                    if (key.equals(value == null ? "" : value)) {
+                        rows.add(row);
+                        if (first) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        catch (final IOException e) {
+            throw new DataRowException(e);
+        }
+        return rows;
+    }
+
+    /**
+     * Reads the line starting at offset into a buffer of its own, the rows
+     * parsed from it keep referencing it
+     */
+    private ByteBuffer readLine(final long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_LINE_SIZE);
+        int scanned = 0;
+        while (true) {
+            final int read = data.read(buffer, offset + buffer.position());
+            final int end = buffer.position();
+            for (; scanned < end; scanned++) {
+                if (buffer.get(scanned) == '\n') {
+                    buffer.flip();
+                    buffer.limit(scanned + 1);
+                    return buffer;
+                }
+            }
+            if (read == -1) {
+                buffer.flip();
+                return buffer;
+            }
+            if (!buffer.hasRemaining()) {
+                final ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+        }
+    }
+
+    public DataRowMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Returns the number of indexed lines
+     */
+    public long size() {
+        return entryCount;
+    }
+
+    public void close() {
+        try {
+            dataFile.close();
+        }
+        catch (final IOException e) {
+            // the file is only read, nothing is lost when closing it fails
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "KeyIndex(" + fileName + ", " + keyColumn + ", " + entryCount + " lines)";
+    }
+
+    /**
+     * Splits the file into lines byte by byte, hashing the key field of each
+     * line the same way lookups hash a key and recording its offset
+     */
+    private static final class LineScanner
+    {
+        static final long                  FNV_OFFSET  = 0xcbf29ce484222325L;
+        static final long                  FNV_PRIME   = 0x100000001b3L;
+
+        private final String                keyColumn;
+        private final String                fileName;
+        private final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        private int                         keyField    = -1;
+
+        private final DataOutputStream      entries;
+        private long                        count;
+
+        private long                        lineStart;
+        private boolean                     started;
+        private int                         field;
+        private long                        hash;
+        private boolean                     pendingCR;
+        private boolean                     blank;
+
+        /**
+         * The hash and offset of every line are written to entries
+         */
+        LineScanner(final String keyColumn, final String fileName, final DataOutputStream entries) {
+            this.keyColumn = keyColumn;
+            this.fileName = fileName;
+            this.entries = entries;
+            nextLine();
+        }
+
+        static long fnv(final long hash, final byte b) {
+            return (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+
+        /**
+         * Mixes the bits of the hash and keeps 0 free to mark empty slots
+         */
+        static long finish(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash == 0 ? 1 : hash;
+        }
+
+        /**
+         * Consumes the byte at the given offset of the file
+         */
+        void accept(final byte b, final long offset) throws IOException {
+            if (!started) {
+                started = true;
+                lineStart = offset;
+            }
+            if (b == '\n') {
+                endLine();
+                return;
+            }
+            if (keyField < 0) {
+                headerBytes.write(b);
+                return;
+            }
+            if ((b & 0xff) > ' ') {
+                blank = false;
+            }
+            if (b == '\t') {
+                if (pendingCR) {
+                    hash = fnv(hash, (byte) '\r');
+                    pendingCR = false;
+                }
+                field++;
+            }
+            else if (field == keyField) {
+                if (pendingCR) {
+                    hash = fnv(hash, (byte) '\r');
+                    pendingCR = false;
+                }
+                if (b == '\r') {
+                    // stripped if it ends the line
+                    pendingCR = true;
+                }
+                else {
+                    hash = fnv(hash, b);
+                }
+            }
+        }
+
+        /**
+         * Ends an unterminated last line
+         */
+        void finish() throws IOException {
+            if (started) {
+                endLine();
+            }
+            if (keyField < 0) {
+                throw new IOException(fileName + " has no header");
+            }
+        }
+
+        private void endLine() throws IOException {
+            if (keyField < 0) {
+                final byte[] bytes = headerBytes.toByteArray();
+                int length = bytes.length;
+                if (length > 0 && bytes[length - 1] == '\r') {
+                    length--;
+                }
+                final String header = new String(bytes, 0, length, UTF8);
+                keyField = Arrays.asList(header.split("\t")).indexOf(keyColumn);
+                if (keyField == -1) {
+                    throw new IOException("Key column " + keyColumn + " is not in the header of " + fileName);
+                }
+            }
+            else if (!blank) {
+                entries.writeLong(finish(hash));
+                entries.writeLong(lineStart);
+                count++;
+            }
+            nextLine();
+        }
+
+        private void nextLine() {
+            started = false;
+            field = 0;
+            hash = FNV_OFFSET;
+            pendingCR = false;
+            blank = true;
+        }
+
+        int getKeyField() {
+            return keyField;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
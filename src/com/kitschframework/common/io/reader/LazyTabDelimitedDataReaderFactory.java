@@ -0,0 +1,28 @@
+/**
+ * 
+ */
+package com.kitschframework.common.io.reader;
+
+import java.util.Collection;
+
+import com.kitschframework.common.io.DataRowException;
+
+public class LazyTabDelimitedDataReaderFactory extends DataReaderFactory
+{
+
+    @Override
+    public DataReader create(String fileName) throws DataRowException {
+        return new FileDataReader(fileName, new LazyTabDelimitedDataRowParser());
+    }
+
+    @Override
+    public DataReader create(String fileName, Collection<String> columns) throws DataRowException {
+        return new FileDataReader(fileName, new LazyTabDelimitedDataRowParser(), columns);
+    }
+
+    @Override
+    public DataReader create(String fileName, Collection<String> columns, RowPredicate predicate)
+            throws DataRowException {
+        return new FileDataReader(fileName, new LazyTabDelimitedDataRowParser(), columns, predicate);
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.kitschframework.common.io.CharDataRow;
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+
+/**
+ * LazyTabDelimitedDataRowParser
+ *
+ * Tab delimited parser that reads the BufferedReader in blocks and scans the
+ * characters for tabs and newlines itself instead of going through readLine
+ * and split. Only the field offsets are recorded while scanning, the returned
+ * CharDataRow keeps a copy of the line and decodes a field when it is first
+ * read. Numeric getters parse the raw characters without creating a String.
+ *
+ * Rows follow the same rules as TabDelimitedDataRowParser: blank lines are
+ * skipped, trailing empty fields are dropped and rows with more fields than the
+ * header are ignored. Lines end at a newline, a trailing carriage return is
+ * stripped. With a projection the skipped fields are only scanned past, the
+ * row is attached to the projected fields of the line. A RowPredicate is
+ * tested against the raw line, rejected lines are never copied.
+ *
+ * The parser buffers input past the current row, so once readMetadata has been
+ * called the reader must only be read through this parser.
+ *
+ */
+public class LazyTabDelimitedDataRowParser extends TabDelimitedDataRowParser
+{
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    protected static final int SKIPPED           = 0;
+
+    private char[]           chars               = new char[INITIAL_BUFFER_SIZE];
+    private int              position;
+    private int              limit;
+    private boolean          endOfInput;
+
+    /** Attached to the current line of the buffer, for the predicate */
+    private final CharDataRow scratch            = new CharDataRow();
+    private int               rowStart;
+    private int               rowEnd;
+
+    public LazyTabDelimitedDataRowParser() throws DataRowException {
+    }
+
+    public LazyTabDelimitedDataRowParser(final DataRowMetadata metadata) throws DataRowException {
+        super(metadata);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void readMetadata(final BufferedReader reader) throws DataRowException {
+        super.readMetadata(reader);
+        position = 0;
+        limit = 0;
+        endOfInput = false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DataRow readDataRow(final BufferedReader reader) throws DataRowException {
+        try {
+            final int fieldCount = nextRow(reader);
+            if (fieldCount == -1) {
+                return null;
+            }
+            final int[] bounds = Arrays.copyOf(scratch.getBounds(0), fieldCount + 1);
+            rebase(bounds, fieldCount, rowStart);
+            final char[] line = Arrays.copyOfRange(chars, rowStart, rowEnd);
+            return new CharDataRow(getMetadata(), line, bounds, fieldCount, getProjectedFields());
+        }
+        catch (IOException ioe) {
+            throw new DataRowException(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * A CharDataRow target gets a copy of the line without decoding anything,
+     * any other target is filled with decoded values.
+     */
+    @Override
+    public boolean readDataRow(final BufferedReader reader, final DataRow target) throws DataRowException {
+        try {
+            final int fieldCount = nextRow(reader);
+            if (fieldCount == -1) {
+                return false;
+            }
+            final int[] scratchBounds = scratch.getBounds(0);
+            if (target instanceof CharDataRow) {
+                final CharDataRow charRow = (CharDataRow) target;
+                final int[] bounds = charRow.getBounds(fieldCount + 1);
+                System.arraycopy(scratchBounds, 0, bounds, 0, fieldCount + 1);
+                rebase(bounds, fieldCount, rowStart);
+                System.arraycopy(chars, rowStart, charRow.getChars(rowEnd - rowStart), 0, rowEnd - rowStart);
+                charRow.refill(getMetadata(), fieldCount, getProjectedFields());
+                return true;
+            }
+
+            target.clear(getMetadata());
+            final int[] fields = getProjectedFields();
+            final int count = fields == null ? fieldCount : fields.length;
+            for (int i = 0; i < count; i++) {
+                final int field = fields == null ? i : fields[i];
+                if (field >= fieldCount) {
+                    break;
+                }
+                final ValueInterner interner = getInterner(field);
+                if (interner != null) {
+                    target.addValue(interner.intern(chars, scratchBounds[field] + 1, scratchBounds[field + 1]));
+                }
+                else {
+                    target.addValue(new String(chars, scratchBounds[field] + 1, scratchBounds[field + 1]
+                            - scratchBounds[field] - 1));
+                }
+            }
+            return true;
+        }
+        catch (IOException ioe) {
+            throw new DataRowException(ioe);
+        }
+    }
+
+    /**
+     * Scans lines until one produces a row the predicate accepts and returns
+     * its number of fields, or -1 at the end of input. The line is left
+     * between rowStart and rowEnd of the buffer with the scratch row attached
+     * to it, nothing is allocated for the lines skipped on the way.
+     */
+    private int nextRow(final BufferedReader reader) throws IOException {
+        final int[] bounds = scratch.getBounds(getHeaderKeyCount() + 2);
+        final RowPredicate predicate = getPredicate();
+        int lineEnd;
+        while ((lineEnd = nextLine(reader)) != -1) {
+            final int lineStart = consumeLine(lineEnd);
+            final int fieldCount = scan(lineStart, lineEnd, bounds);
+            if (fieldCount > 0) {
+                scratch.refill(getHeaderMetadata(), chars, fieldCount);
+                final boolean accepted = predicate == null || predicate.test(scratch);
+                countRow(accepted);
+                if (accepted) {
+                    rowStart = lineStart;
+                    rowEnd = lineEnd;
+                    return fieldCount;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Makes sure the next line is in the buffer, starting at position, and
+     * returns the index of its terminating newline (or of the end of input for
+     * an unterminated last line), or -1 at the end of input
+     */
+    private int nextLine(final BufferedReader reader) throws IOException {
+        int scan = position;
+        while (true) {
+            for (; scan < limit; scan++) {
+                if (chars[scan] == '\n') {
+                    return scan;
+                }
+            }
+            if (endOfInput) {
+                return position < limit ? limit : -1;
+            }
+
+            if (limit == chars.length) {
+                if (position > 0) {
+                    System.arraycopy(chars, position, chars, 0, limit - position);
+                    scan -= position;
+                    limit -= position;
+                    position = 0;
+                }
+                else {
+                    final char[] grown = new char[chars.length * 2];
+                    System.arraycopy(chars, 0, grown, 0, limit);
+                    chars = grown;
+                }
+            }
+
+            final int read = reader.read(chars, limit, chars.length - limit);
+            if (read == -1) {
+                endOfInput = true;
+            }
+            else {
+                limit += read;
+            }
+        }
+    }
+
+    /**
+     * Moves past the line ending at lineEnd and returns its start
+     */
+    private int consumeLine(final int lineEnd) {
+        final int lineStart = position;
+        position = lineEnd < limit ? lineEnd + 1 : lineEnd;
+        countLine();
+        return lineStart;
+    }
+
+    /**
+     * Scans the line between start and end, recording the position of the
+     * delimiter before each field and the end of the line in bounds, which must
+     * hold at least keyCount + 2 entries. Returns the number of fields or
+     * SKIPPED when the line does not produce a row.
+     */
+    private int scan(final int start, int end, final int[] bounds) {
+        final int keyCount = getHeaderKeyCount();
+        if (end > start && chars[end - 1] == '\r') {
+            end--;
+        }
+
+        bounds[0] = start - 1;
+        int tabCount = 0;
+        boolean isBlank = true;
+        for (int position = start; position < end; position++) {
+            final char c = chars[position];
+            if (c == '\t') {
+                tabCount++;
+                if (tabCount <= keyCount) {
+                    bounds[tabCount] = position;
+                }
+            }
+            else if (tabCount >= keyCount) {
+                // more fields than the header
+                return SKIPPED;
+            }
+            else if (c > ' ') {
+                isBlank = false;
+            }
+        }
+        if (isBlank) {
+            return SKIPPED;
+        }
+
+        // see MappedTabDelimitedDataRowParser.scan
+        int fieldCount = keyCount;
+        if (tabCount < keyCount) {
+            fieldCount = tabCount + 1;
+            bounds[fieldCount] = end;
+        }
+        while (fieldCount > 0 && bounds[fieldCount] == bounds[fieldCount - 1] + 1) {
+            fieldCount--;
+        }
+        return fieldCount;
+    }
+
+    /**
+     * Makes the offsets relative to a copy of the line starting at lineStart
+     */
+    private static void rebase(final int[] bounds, final int fieldCount, final int lineStart) {
+        for (int i = 0; i <= fieldCount; i++) {
+            bounds[i] -= lineStart;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getDescription() {
+        return "LazyTabDelimitedDataParser";
+    }
+}
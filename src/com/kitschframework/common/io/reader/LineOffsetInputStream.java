@@ -0,0 +1,143 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * LineOffsetInputStream
+ *
+ * Records the uncompressed offset at which each line of the stream starts as
+ * the bytes go through it, so FileDataReader knows the offset of the line a
+ * parser is at without reading the file again. Lines end at a newline byte,
+ * as RowOffsetIndex counts them, which holds for ASCII compatible charsets.
+ *
+ * The reader above the stream reads ahead, so the offsets of the lines it has
+ * buffered are kept until release says they are no longer needed.
+ *
+ */
+final class LineOffsetInputStream extends FilterInputStream
+{
+    private final long start;
+    private long       position;
+    private boolean    endOfInput;
+
+    /** Offset after each newline kept, the first is newline number base + 1 */
+    private long[]     lineEnds = new long[256];
+    private int        size;
+    private long       base;
+    private long       released;
+
+    /**
+     * start is the uncompressed offset of the first byte of in
+     */
+    LineOffsetInputStream(final InputStream in, final long start) {
+        super(in);
+        this.start = start;
+    }
+
+    /**
+     * Returns the offset the given line of the stream starts at, counting from
+     * 0 at the first byte, or -1 if the line hasn't been read yet or was
+     * released
+     */
+    long getLineStart(final long line) {
+        if (line == 0) {
+            return start;
+        }
+        final long index = line - 1 - base;
+        if (index >= 0 && index < size) {
+            return lineEnds[(int) index];
+        }
+        if (endOfInput && index == size) {
+            // after an unterminated last line
+            return start + position;
+        }
+        return -1;
+    }
+
+    /**
+     * Drops the offsets of the lines before line, they are never asked for
+     * again
+     */
+    void release(final long line) {
+        released = Math.max(released, line);
+    }
+
+    private void addLineEnd(final long offset) {
+        if (size == lineEnds.length) {
+            final int dropped = (int) Math.min(Math.max(released - 1 - base, 0), size);
+            if (dropped > 0) {
+                System.arraycopy(lineEnds, dropped, lineEnds, 0, size - dropped);
+                size -= dropped;
+                base += dropped;
+            }
+            else {
+                lineEnds = Arrays.copyOf(lineEnds, size * 2);
+            }
+        }
+        lineEnds[size++] = offset;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = in.read();
+        if (b == -1) {
+            endOfInput = true;
+            return -1;
+        }
+        position++;
+        if (b == '\n') {
+            addLineEnd(start + position);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        final int read = in.read(bytes, offset, length);
+        if (read == -1) {
+            endOfInput = true;
+            return -1;
+        }
+        for (int i = 0; i < read; i++) {
+            if (bytes[offset + i] == '\n') {
+                addLineEnd(start + position + i + 1);
+            }
+        }
+        position += read;
+        return read;
+    }
+
+    /**
+     * Skipped bytes are read, so their newlines are counted
+     */
+    @Override
+    public long skip(final long count) throws IOException {
+        final byte[] skipped = new byte[(int) Math.min(count, 8192)];
+        long remaining = count;
+        while (remaining > 0) {
+            final int read = read(skipped, 0, (int) Math.min(remaining, skipped.length));
+            if (read == -1) {
+                break;
+            }
+            remaining -= read;
+        }
+        return count - remaining;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(final int limit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+}
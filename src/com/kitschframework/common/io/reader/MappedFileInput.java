@@ -0,0 +1,137 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.kitschframework.common.io.DataRow;
+
+/**
+ * MappedFileInput
+ *
+ * Sliding memory-mapped window over a range of a file. A single mapping is
+ * limited to 2GB, so large files are mapped a window at a time; the window is
+ * moved forward whenever the parser runs out of complete lines. Rows that still
+ * reference an old window keep that mapping alive.
+ *
+ */
+final class MappedFileInput
+{
+    static final int          DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final long        size;
+    private final long        end;
+    private final int         windowSize;
+
+    private MappedByteBuffer  buffer;
+    private long              windowStart;
+
+    /**
+     * Maps the file starting at start, rows are read while they begin before
+     * end
+     */
+    MappedFileInput(final FileChannel channel, final long start, final long end, final int windowSize)
+            throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.end = end;
+        this.windowSize = windowSize;
+        map(start, windowSize);
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    long getPosition() {
+        return windowStart + buffer.position();
+    }
+
+    boolean isEndOfFile() {
+        return windowStart + buffer.limit() >= size;
+    }
+
+    boolean hasRemaining() {
+        return getPosition() < end;
+    }
+
+    /**
+     * Remaps the window so it starts at the current position. If nothing was
+     * consumed from the current window the line does not fit and the window
+     * size is doubled.
+     */
+    void advance() throws IOException {
+        int length = windowSize;
+        if (buffer.position() == 0) {
+            if (buffer.capacity() == Integer.MAX_VALUE) {
+                throw new IOException("Line at offset " + windowStart + " exceeds the maximum mappable size");
+            }
+            length = (int) Math.min(Integer.MAX_VALUE, buffer.capacity() * 2L);
+        }
+        map(getPosition(), length);
+    }
+
+    /**
+     * Consumes everything up to and including the next newline
+     */
+    void skipLine() throws IOException {
+        while (true) {
+            final int limit = buffer.limit();
+            int position = buffer.position();
+            while (position < limit && buffer.get(position) != '\n') {
+                position++;
+            }
+            if (position < limit) {
+                buffer.position(position + 1);
+                return;
+            }
+            buffer.position(position);
+            if (isEndOfFile()) {
+                return;
+            }
+            advance();
+        }
+    }
+
+    /**
+     * Reads the next row starting before the end of the range, moving the
+     * window as required. Returns null once the range is exhausted.
+     */
+    DataRow readDataRow(final ByteDataRowParser parser) throws IOException {
+        while (hasRemaining()) {
+            final int position = buffer.position();
+            final DataRow dataRow = parser.readDataRow(buffer, isEndOfFile());
+            if (dataRow != null) {
+                return dataRow;
+            }
+            if (buffer.position() == position) {
+                advance();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the next row starting before the end of the range into target,
+     * returns false once the range is exhausted
+     */
+    boolean readDataRow(final ByteDataRowParser parser, final DataRow target) throws IOException {
+        while (hasRemaining()) {
+            final int position = buffer.position();
+            if (parser.readDataRow(buffer, isEndOfFile(), target)) {
+                return true;
+            }
+            if (buffer.position() == position) {
+                advance();
+            }
+        }
+        return false;
+    }
+
+    private void map(final long position, final int length) throws IOException {
+        this.windowStart = position;
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(length, size - position));
+    }
+}
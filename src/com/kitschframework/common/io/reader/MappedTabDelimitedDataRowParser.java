@@ -0,0 +1,210 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.kitschframework.common.io.ByteDataRow;
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+
+/**
+ * MappedTabDelimitedDataRowParser
+ *
+ * Tab delimited parser that scans raw bytes for tab and newline characters
+ * instead of going through readLine and split. Only the field offsets are
+ * recorded while scanning, the returned ByteDataRow decodes a field when it is
+ * first read.
+ *
+ * Rows follow the same rules as TabDelimitedDataRowParser: blank lines are
+ * skipped, trailing empty fields are dropped and rows with more fields than the
+ * header are ignored. A trailing carriage return is stripped. Compressed input
+ * goes through the char based path of LazyTabDelimitedDataRowParser. A
+ * RowPredicate is tested against the raw bytes, a rejected line is consumed
+ * without creating a row. Fields are decoded with the platform charset, as
+ * FileDataReader decodes the lines of the other parsers.
+ *
+ */
+public class MappedTabDelimitedDataRowParser extends LazyTabDelimitedDataRowParser implements ByteDataRowParser
+{
+    private static final int     INCOMPLETE  = -1;
+
+    /** Attached to the current line while the predicate is tested */
+    private final ByteDataRow    scratch     = new ByteDataRow();
+
+    private final DelimiterScanner scanner   = new DelimiterScanner();
+
+    public MappedTabDelimitedDataRowParser() throws DataRowException {
+    }
+
+    public MappedTabDelimitedDataRowParser(final DataRowMetadata metadata) throws DataRowException {
+        super(metadata);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void readMetadata(final ByteBuffer buffer) throws DataRowException {
+        final int start = buffer.position();
+        final int limit = buffer.limit();
+        int position = start;
+        while (position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+        buffer.position(position < limit ? position + 1 : position);
+
+        int end = position;
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end > start) {
+            final String[] header = ByteDataRow.decode(buffer, start, end).split("\t");
+            setMetadata(new DataRowMetadata(header));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DataRow readDataRow(final ByteBuffer buffer, final boolean endOfInput) {
+        final int fieldCount = nextRow(buffer, endOfInput);
+        if (fieldCount <= 0) {
+            return null;
+        }
+        final int[] bounds = Arrays.copyOf(scratch.getBounds(0), fieldCount + 1);
+        return new ByteDataRow(getMetadata(), buffer, bounds, fieldCount, getProjectedFields());
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * A ByteDataRow target is pointed at the line without decoding anything,
+     * any other target is filled with decoded values.
+     */
+    @Override
+    public boolean readDataRow(final ByteBuffer buffer, final boolean endOfInput, final DataRow target) {
+        final int fieldCount = nextRow(buffer, endOfInput);
+        if (fieldCount <= 0) {
+            return false;
+        }
+        final int[] scratchBounds = scratch.getBounds(0);
+        if (target instanceof ByteDataRow) {
+            final ByteDataRow byteRow = (ByteDataRow) target;
+            System.arraycopy(scratchBounds, 0, byteRow.getBounds(fieldCount + 1), 0, fieldCount + 1);
+            byteRow.refill(getMetadata(), buffer, fieldCount, getProjectedFields());
+            return true;
+        }
+
+        target.clear(getMetadata());
+        final int[] fields = getProjectedFields();
+        final int count = fields == null ? fieldCount : fields.length;
+        for (int i = 0; i < count; i++) {
+            final int field = fields == null ? i : fields[i];
+            if (field >= fieldCount) {
+                break;
+            }
+            final ValueInterner interner = getInterner(field);
+            if (interner != null) {
+                target.addValue(interner.intern(buffer, scratchBounds[field] + 1, scratchBounds[field + 1]));
+            }
+            else {
+                target.addValue(ByteDataRow.decode(buffer, scratchBounds[field] + 1, scratchBounds[field + 1]));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scans one line into the scratch row and tests it against the predicate.
+     * Returns the number of fields, INCOMPLETE, or SKIPPED when the consumed
+     * line is rejected or does not produce a row.
+     */
+    private int nextRow(final ByteBuffer buffer, final boolean endOfInput) {
+        final int fieldCount = scan(buffer, endOfInput, scratch.getBounds(getHeaderKeyCount() + 2));
+        if (fieldCount <= 0) {
+            return fieldCount;
+        }
+        final RowPredicate predicate = getPredicate();
+        if (predicate == null) {
+            countRow(true);
+            return fieldCount;
+        }
+        scratch.refill(getHeaderMetadata(), buffer, fieldCount);
+        final boolean accepted = predicate.test(scratch);
+        scratch.clear(getHeaderMetadata());
+        countRow(accepted);
+        return accepted ? fieldCount : SKIPPED;
+    }
+
+    /**
+     * Scans one line starting at the buffer position, recording the position
+     * of the delimiter before each field and the end of the line in bounds,
+     * which must hold at least keyCount + 2 entries.
+     * 
+     * Returns the number of fields, or INCOMPLETE (position unchanged) when
+     * the line does not end within the buffer, or SKIPPED when the consumed
+     * line does not produce a row.
+     */
+    private int scan(final ByteBuffer buffer, final boolean endOfInput, final int[] bounds) {
+        final int keyCount = getHeaderKeyCount();
+        final int start = buffer.position();
+        final int limit = buffer.limit();
+
+        bounds[0] = start - 1;
+        final int position = scanner.scanLine(buffer, start, limit, bounds, keyCount);
+        final int tabCount = scanner.getTabCount();
+
+        if (position == limit && !endOfInput) {
+            // incomplete line, wait for more input
+            return INCOMPLETE;
+        }
+        buffer.position(position < limit ? position + 1 : position);
+        countLine();
+
+        if (isBlank(buffer, start, position)) {
+            return SKIPPED;
+        }
+
+        int lineEnd = position;
+        if (buffer.get(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+        if (tabCount >= keyCount) {
+            // more fields than the header unless everything past the last column is tabs
+            for (int i = bounds[keyCount] + 1; i < lineEnd; i++) {
+                if (buffer.get(i) != '\t') {
+                    return SKIPPED;
+                }
+            }
+        }
+
+        // fields past the header are known to be empty, drop them along with
+        // any other trailing empty fields the same way String.split does. The
+        // last kept field then already ends at the tab recorded in bounds.
+        int fieldCount = keyCount;
+        if (tabCount < keyCount) {
+            fieldCount = tabCount + 1;
+            bounds[fieldCount] = lineEnd;
+        }
+        while (fieldCount > 0 && bounds[fieldCount] == bounds[fieldCount - 1] + 1) {
+            fieldCount--;
+        }
+        return fieldCount;
+    }
+
+    private static boolean isBlank(final ByteBuffer buffer, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if ((buffer.get(i) & 0xff) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getDescription() {
+        return "MappedTabDelimitedDataParser";
+    }
+}
@@ -0,0 +1,287 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+
+/**
+ * ParallelFileDataReader
+ *
+ * Reads a single uncompressed tab delimited file on several threads. The header
+ * is read once, the rest of the file is cut into byte ranges and every range is
+ * parsed by its own FileSplitDataReader on a fork-join pool.
+ *
+ * Rows can either be consumed through this reader, in which case they arrive in
+ * batches from whichever split produced them first (no ordering across splits),
+ * or through getSplitReaders() which returns one independent, ordered reader per
+ * split for callers that schedule the work themselves. stream() splits the
+ * file by byte ranges so reader.stream().parallel() scales the same way.
+ *
+ */
+public class ParallelFileDataReader implements DataReader {
+
+	public static final long DEFAULT_SPLIT_SIZE = 64L * 1024 * 1024;
+
+	private static final int BATCH_SIZE = 1024;
+
+	private final String fileName;
+	private final long splitSize;
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+
+	private DataRowMetadata metadata;
+	private List<long[]> splits;
+	private long dataStart;
+	private long fileSize;
+
+	private LinkedBlockingQueue<List<DataRow>> queue;
+	private AtomicBoolean cancelled;
+	private volatile DataRowException failure;
+
+	private List<DataRow> batch = Collections.emptyList();
+	private int batchIndex = 0;
+	private boolean started = false;
+	private boolean finished = false;
+
+	public ParallelFileDataReader(String fileName) throws DataRowException {
+		this(fileName, DEFAULT_SPLIT_SIZE, new ForkJoinPool(), true);
+	}
+
+	public ParallelFileDataReader(String fileName, long splitSize, ForkJoinPool pool) throws DataRowException {
+		this(fileName, splitSize, pool, false);
+	}
+
+	private ParallelFileDataReader(String fileName, long splitSize, ForkJoinPool pool, boolean ownsPool)
+			throws DataRowException {
+		this.fileName = fileName;
+		this.splitSize = splitSize;
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+		reset();
+	}
+
+	@Override
+	public final void reset() throws DataRowException {
+		stop();
+		try {
+			FileChannel channel = new RandomAccessFile(fileName, "r").getChannel();
+			try {
+				MappedFileInput input = new MappedFileInput(channel, 0, channel.size(), MappedFileInput.DEFAULT_WINDOW_SIZE);
+				MappedTabDelimitedDataRowParser parser = new MappedTabDelimitedDataRowParser();
+				parser.readMetadata(input.getBuffer());
+				metadata = parser.getMetadata();
+
+				splits = new ArrayList<long[]>();
+				dataStart = input.getPosition();
+				fileSize = channel.size();
+				for (long start = dataStart; start < fileSize; start += splitSize) {
+					splits.add(new long[] { start, Math.min(start + splitSize, fileSize) });
+				}
+			}
+			finally {
+				channel.close();
+			}
+		}
+		catch (FileNotFoundException e) {
+			throw new DataRowException(e);
+		}
+		catch (IOException e) {
+			throw new DataRowException(e);
+		}
+
+		failure = null;
+		batch = Collections.emptyList();
+		batchIndex = 0;
+		started = false;
+		finished = false;
+	}
+
+	/**
+	 * Returns a new reader for every split of the file, in file order. The
+	 * readers are independent of this reader and of each other.
+	 */
+	public final List<DataReader> getSplitReaders() throws DataRowException {
+		List<DataReader> readers = new ArrayList<DataReader>(splits.size());
+		for (long[] split : splits) {
+			readers.add(createSplitReader(split));
+		}
+		return readers;
+	}
+
+	public final DataRowMetadata getMetadata() {
+		return metadata;
+	}
+
+	public final int getSplitCount() {
+		return splits.size();
+	}
+
+	/**
+	 * Streams every row of the file, independent of rows already read through
+	 * this reader. Splits are byte ranges no smaller than the split size.
+	 */
+	@Override
+	public Stream<DataRow> stream() {
+		FileSplitSpliterator spliterator = new FileSplitSpliterator(fileName, metadata, dataStart, fileSize, splitSize);
+		return StreamSupport.stream(spliterator, false).onClose(this::close);
+	}
+
+	private FileSplitDataReader createSplitReader(long[] split) throws DataRowException {
+		return new FileSplitDataReader(fileName, split[0], split[1], new MappedTabDelimitedDataRowParser(metadata));
+	}
+
+	@Override
+	public final boolean hasNextDataRow() {
+		if (batchIndex < batch.size()) {
+			return true;
+		}
+		if (finished) {
+			// a failure is thrown by the next getNextDataRow
+			return failure != null;
+		}
+		if (!started) {
+			start();
+		}
+		try {
+			List<DataRow> next = queue.take();
+			if (next.isEmpty()) {
+				// end marker, posted once every split is done or one failed
+				finished = true;
+				return failure != null;
+			}
+			batch = next;
+			batchIndex = 0;
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	@Override
+	public final DataRow getNextDataRow() throws DataRowException {
+		if (!hasNextDataRow()) {
+			return null;
+		}
+		if (batchIndex == batch.size()) {
+			DataRowException e = failure;
+			failure = null;
+			throw e;
+		}
+		return batch.get(batchIndex++);
+	}
+
+	private void start() {
+		started = true;
+		queue = new LinkedBlockingQueue<List<DataRow>>(pool.getParallelism() * 4);
+		cancelled = new AtomicBoolean(false);
+		if (splits.isEmpty()) {
+			queue.offer(Collections.<DataRow> emptyList());
+			return;
+		}
+
+		// handed to the tasks so producers of a previous run never touch a new one after reset()
+		final LinkedBlockingQueue<List<DataRow>> queue = this.queue;
+		final AtomicBoolean cancelled = this.cancelled;
+		final AtomicInteger remainingSplits = new AtomicInteger(splits.size());
+		for (final long[] split : splits) {
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					readSplit(split, queue, cancelled, remainingSplits);
+				}
+			});
+		}
+	}
+
+	private void readSplit(long[] split, LinkedBlockingQueue<List<DataRow>> queue, AtomicBoolean cancelled,
+			AtomicInteger remainingSplits) {
+		try {
+			FileSplitDataReader reader = createSplitReader(split);
+			try {
+				List<DataRow> rows = new ArrayList<DataRow>(BATCH_SIZE);
+				while (reader.hasNextDataRow() && !cancelled.get()) {
+					rows.add(reader.getNextDataRow());
+					if (rows.size() == BATCH_SIZE) {
+						put(queue, cancelled, rows);
+						rows = new ArrayList<DataRow>(BATCH_SIZE);
+					}
+				}
+				if (!rows.isEmpty()) {
+					put(queue, cancelled, rows);
+				}
+			}
+			finally {
+				reader.close();
+			}
+			if (remainingSplits.decrementAndGet() == 0) {
+				put(queue, cancelled, Collections.<DataRow> emptyList());
+			}
+		}
+		catch (DataRowException e) {
+			fail(queue, cancelled, e);
+		}
+		catch (RuntimeException e) {
+			fail(queue, cancelled, new DataRowException(e));
+		}
+	}
+
+	/**
+	 * Stops the other splits and posts the end marker, the consumer throws the
+	 * failure once it reaches it
+	 */
+	private void fail(LinkedBlockingQueue<List<DataRow>> queue, AtomicBoolean cancelled, DataRowException e) {
+		if (!cancelled.getAndSet(true)) {
+			failure = e;
+			queue.clear();
+			queue.offer(Collections.<DataRow> emptyList());
+		}
+	}
+
+	private void put(LinkedBlockingQueue<List<DataRow>> queue, AtomicBoolean cancelled, List<DataRow> rows) {
+		try {
+			while (!cancelled.get() && !queue.offer(rows, 100, TimeUnit.MILLISECONDS)) {
+				// wait for the consumer or for close()
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void stop() {
+		if (cancelled != null) {
+			cancelled.set(true);
+			queue.clear();
+		}
+	}
+
+	@Override
+	public final void close() {
+		stop();
+		if (ownsPool) {
+			pool.shutdownNow();
+		}
+	}
+
+	@Override
+	public final String getDescription() {
+		return fileName + "[parallel " + splits.size() + " splits]";
+	}
+}
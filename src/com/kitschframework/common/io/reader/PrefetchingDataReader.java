@@ -0,0 +1,245 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+
+/**
+ * PrefetchingDataReader
+ *
+ * Wraps a DataReader and reads it on a background thread, so the I/O,
+ * decompression and parsing of the next rows overlap with the caller's work on
+ * the current ones. Rows are handed over in batches through a bounded
+ * lock-free ring buffer, depth is the number of batches that may be read
+ * ahead.
+ *
+ * A DataRowException raised by the wrapped reader is thrown by
+ * getNextDataRow once the rows read before it have been consumed. close()
+ * stops the producer thread before closing the wrapped reader.
+ *
+ * Usage:
+ * <code>
+ * DataReader reader = new PrefetchingDataReader(new FileDataReader(fileName, parser));
+ * while (reader.hasNextDataRow()) {
+ *     process(reader.getNextDataRow());
+ * }
+ * reader.close();
+ * </code>
+ *
+ */
+public class PrefetchingDataReader implements DataReader {
+
+	public static final int DEFAULT_DEPTH = 16;
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	/** Posted by the producer after the last batch */
+	private static final DataRow[] END = new DataRow[0];
+
+	private final DataReader reader;
+	private final int depth;
+	private final int batchSize;
+
+	private Producer producer;
+
+	private DataRow[] batch = END;
+	private int batchIndex = 0;
+	private boolean finished = false;
+
+	public PrefetchingDataReader(DataReader reader) {
+		this(reader, DEFAULT_DEPTH, DEFAULT_BATCH_SIZE);
+	}
+
+	public PrefetchingDataReader(DataReader reader, int depth, int batchSize) {
+		this.reader = reader;
+		this.depth = depth;
+		this.batchSize = batchSize;
+		start();
+	}
+
+	@Override
+	public final void reset() throws DataRowException {
+		stop();
+		reader.reset();
+		start();
+	}
+
+	@Override
+	public final void close() {
+		stop();
+		reader.close();
+	}
+
+	@Override
+	public final boolean hasNextDataRow() {
+		if (batchIndex < batch.length) {
+			return true;
+		}
+		if (finished) {
+			return producer.failure != null;
+		}
+
+		DataRow[] next = producer.take();
+		if (next == END) {
+			finished = true;
+			return producer.failure != null;
+		}
+		batch = next;
+		batchIndex = 0;
+		return true;
+	}
+
+	@Override
+	public final DataRow getNextDataRow() throws DataRowException {
+		if (!hasNextDataRow()) {
+			return null;
+		}
+		if (batchIndex == batch.length) {
+			DataRowException e = producer.failure;
+			producer.failure = null;
+			throw e;
+		}
+		DataRow row = batch[batchIndex];
+		batch[batchIndex++] = null;
+		return row;
+	}
+
+	private void start() {
+		producer = new Producer(depth);
+		batch = END;
+		batchIndex = 0;
+		finished = false;
+
+		Thread thread = new Thread(producer, "prefetch-" + reader.getDescription());
+		thread.setDaemon(true);
+		producer.thread = thread;
+		thread.start();
+	}
+
+	/**
+	 * Stops the producer and waits for it, it finishes the row it is reading
+	 * first so the wrapped reader is never used by two threads at once
+	 */
+	private void stop() {
+		Producer current = producer;
+		current.stopped = true;
+		LockSupport.unpark(current.thread);
+		boolean interrupted = false;
+		while (current.thread.isAlive()) {
+			try {
+				current.thread.join();
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public final String getDescription() {
+		return "prefetch[" + reader.getDescription() + "]";
+	}
+
+	@Override
+	public String toString() {
+		return getDescription();
+	}
+
+	/**
+	 * State of one run of the producer thread, a new one is created on reset()
+	 * so a stopped producer never touches the buffer of the next run
+	 */
+	private final class Producer implements Runnable {
+		private final RingBuffer<DataRow[]> ring;
+
+		private Thread thread;
+		private volatile Thread waiter;
+		private volatile boolean stopped;
+		private volatile DataRowException failure;
+
+		Producer(int depth) {
+			this.ring = new RingBuffer<DataRow[]>(depth);
+		}
+
+		@Override
+		public void run() {
+			DataRow[] rows = new DataRow[batchSize];
+			int count = 0;
+			try {
+				while (!stopped && reader.hasNextDataRow()) {
+					DataRow row = reader.getNextDataRow();
+					if (row != null) {
+						rows[count++] = row;
+						if (count == rows.length) {
+							put(rows);
+							rows = new DataRow[batchSize];
+							count = 0;
+						}
+					}
+				}
+			}
+			catch (DataRowException e) {
+				failure = e;
+			}
+			catch (RuntimeException e) {
+				failure = new DataRowException(e);
+			}
+			finally {
+				// rows read before a failure are still delivered
+				if (count > 0) {
+					put(Arrays.copyOf(rows, count));
+				}
+				put(END);
+			}
+		}
+
+		/**
+		 * Producer side, waits while the buffer is full
+		 */
+		private void put(DataRow[] rows) {
+			while (!ring.offer(rows)) {
+				if (stopped) {
+					return;
+				}
+				LockSupport.parkNanos(this, PARK_NANOS);
+			}
+			Thread consumer = waiter;
+			if (consumer != null) {
+				LockSupport.unpark(consumer);
+			}
+		}
+
+		/**
+		 * Consumer side, waits while the buffer is empty. Parks are timed, an
+		 * unpark only shortens the wait so a missed one costs no more than
+		 * PARK_NANOS.
+		 */
+		DataRow[] take() {
+			DataRow[] rows = ring.poll();
+			if (rows == null) {
+				waiter = Thread.currentThread();
+				while ((rows = ring.poll()) == null) {
+					if (!thread.isAlive() && (rows = ring.poll()) == null) {
+						// stopped by close() before posting END
+						rows = END;
+						break;
+					}
+					LockSupport.parkNanos(this, PARK_NANOS);
+				}
+				waiter = null;
+			}
+			LockSupport.unpark(thread);
+			return rows;
+		}
+	}
+}
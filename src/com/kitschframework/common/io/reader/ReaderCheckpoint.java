@@ -0,0 +1,103 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.File;
+import java.io.Serializable;
+
+/**
+ * ReaderCheckpoint
+ *
+ * Position of a FileDataReader that can be stored with a job's state and used
+ * to resume reading in another process. Besides the line it holds the byte
+ * offset of that line and, for blocked gzip files, the block it is in, so
+ * resuming only reads the header and the rest of one block instead of
+ * rescanning the file.
+ *
+ * The length and modification time of the file are recorded as well, a
+ * checkpoint can't be used once the file has changed.
+ *
+ */
+public final class ReaderCheckpoint implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String      fileName;
+    private final long        line;
+    private final long        offset;
+    private final long        blockOffset;
+    private final long        blockUncompressedOffset;
+    private final long        fileLength;
+    private final long        lastModified;
+
+    /**
+     * @param offset uncompressed offset of line
+     * @param blockOffset compressed offset of the blocked gzip block holding
+     *            offset, or -1
+     * @param blockUncompressedOffset uncompressed offset the block starts at
+     */
+    ReaderCheckpoint(final String fileName, final long line, final long offset, final long blockOffset,
+            final long blockUncompressedOffset) {
+        final File file = new File(fileName);
+        this.fileName = fileName;
+        this.line = line;
+        this.offset = offset;
+        this.blockOffset = blockOffset;
+        this.blockUncompressedOffset = blockUncompressedOffset;
+        this.fileLength = file.length();
+        this.lastModified = file.lastModified();
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns the number of the line reading resumes at, counting from the
+     * first line after the header
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the uncompressed byte offset of the line
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    long getBlockOffset() {
+        return blockOffset;
+    }
+
+    long getBlockUncompressedOffset() {
+        return blockUncompressedOffset;
+    }
+
+    /**
+     * Returns true if the file has not changed since the checkpoint was taken
+     */
+    public boolean isCurrent() {
+        final File file = new File(fileName);
+        return file.length() == fileLength && file.lastModified() == lastModified;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof ReaderCheckpoint)) {
+            return false;
+        }
+        final ReaderCheckpoint checkpoint = (ReaderCheckpoint) other;
+        return fileName.equals(checkpoint.fileName) && line == checkpoint.line && offset == checkpoint.offset
+                && fileLength == checkpoint.fileLength && lastModified == checkpoint.lastModified;
+    }
+
+    @Override
+    public int hashCode() {
+        return fileName.hashCode() * 31 + (int) (line ^ (line >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return fileName + "@" + line + "[" + offset + "]";
+    }
+}
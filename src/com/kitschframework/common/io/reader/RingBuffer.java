@@ -0,0 +1,69 @@
+package com.kitschframework.common.io.reader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RingBuffer
+ *
+ * Bounded lock-free queue for exactly one producer thread and one consumer
+ * thread. Each side only writes its own counter, the slot is written before
+ * the producer's counter is published so the consumer always sees it filled.
+ *
+ */
+final class RingBuffer<E>
+{
+    private final Object[]   slots;
+    private final int        mask;
+
+    /** Next slot to read, written by the consumer only */
+    private final AtomicLong head = new AtomicLong();
+
+    /** Next slot to write, written by the producer only */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Creates a buffer holding at least capacity elements, rounded up to a
+     * power of two
+     */
+    RingBuffer(final int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Object[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Producer side, returns false if the buffer is full
+     */
+    boolean offer(final E element) {
+        final long t = tail.get();
+        if (t - head.get() == slots.length) {
+            return false;
+        }
+        slots[(int) t & mask] = element;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side, returns null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        final long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        final int slot = (int) h & mask;
+        final E element = (E) slots[slot];
+        slots[slot] = null;
+        head.lazySet(h + 1);
+        return element;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,271 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.kitschframework.common.io.compress.CompressionCodecs;
+
+/**
+ * RowOffsetIndex
+ *
+ * Sparse index of a line delimited file mapping every interval-th line after
+ * the header to the uncompressed byte offset it starts at. A reader seeks to a
+ * line by starting at the closest indexed line before it and skipping at most
+ * interval - 1 lines, without parsing anything. For compressed files the
+ * offsets are in the decompressed data, for blocked gzip files BlockGzipIndex
+ * turns them into a block to start decompressing at.
+ *
+ * Lines are counted by newline like the parsers do, blank and malformed lines
+ * have a number even though they never produce a row.
+ *
+ * The sidecar file records the length and modification time of the file it
+ * was built from, load() rebuilds a sidecar that no longer matches and saves
+ * it, so the file is scanned once rather than once per process.
+ *
+ * Usage:
+ * <code>
+ * RowOffsetIndex.build("/data/events.gz", RowOffsetIndex.DEFAULT_INTERVAL).write("/data/events.gz");
+ * </code>
+ *
+ */
+public class RowOffsetIndex
+{
+    public static final String INDEX_SUFFIX     = ".rowidx";
+    public static final int    DEFAULT_INTERVAL = 64 * 1024;
+
+    private static final int   MAGIC            = 0x4b524958;
+    private static final int   CHUNK_SIZE       = 64 * 1024;
+
+    private final int          interval;
+    private long[]             offsets          = new long[64];
+    private int                size;
+    private long               lineCount;
+    private long               fileLength;
+    private long               lastModified;
+
+    private RowOffsetIndex(final int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.interval = interval;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Returns the number of lines after the header
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the uncompressed offset of line entry * interval
+     */
+    public long getOffset(final int entry) {
+        return offsets[entry];
+    }
+
+    /**
+     * Returns the entry of the closest indexed line at or before line
+     */
+    public int findEntry(final long line) {
+        return (int) Math.min(line / interval, size - 1);
+    }
+
+    private void add(final long offset) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        offsets[size++] = offset;
+    }
+
+    /**
+     * Returns true if the index was built from the file as it is now
+     */
+    public boolean isCurrent(final String fileName) {
+        final File file = new File(fileName);
+        return file.length() == fileLength && file.lastModified() == lastModified;
+    }
+
+    /**
+     * Writes the index to the sidecar of fileName. The index is written to a
+     * temporary file that is then renamed, so a reader never sees half of it.
+     */
+    public void write(final String fileName) throws IOException {
+        final File indexFile = new File(fileName + INDEX_SUFFIX);
+        final File tempFile = new File(indexFile.getPath() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(interval);
+            out.writeLong(fileLength);
+            out.writeLong(lastModified);
+            out.writeLong(lineCount);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(offsets[i]);
+            }
+        }
+        finally {
+            out.close();
+        }
+        if (indexFile.exists() && !indexFile.delete() || !tempFile.renameTo(indexFile)) {
+            tempFile.delete();
+            throw new IOException("Can't replace " + indexFile);
+        }
+    }
+
+    /**
+     * Loads the index of a file from its sidecar, or builds it with the
+     * default interval by reading the whole file if there is no sidecar or it
+     * is out of date. A built index is written to the sidecar for the next
+     * reader, when the directory is writable.
+     */
+    public static RowOffsetIndex load(final String fileName) throws IOException {
+        final File indexFile = new File(fileName + INDEX_SUFFIX);
+        if (indexFile.exists()) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(indexFile + " is not a row offset index");
+                }
+                final RowOffsetIndex index = new RowOffsetIndex(in.readInt());
+                index.fileLength = in.readLong();
+                index.lastModified = in.readLong();
+                index.lineCount = in.readLong();
+                final int size = in.readInt();
+                index.offsets = new long[Math.max(size, 1)];
+                for (int i = 0; i < size; i++) {
+                    index.add(in.readLong());
+                }
+                if (index.isCurrent(fileName)) {
+                    return index;
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        final RowOffsetIndex index = build(fileName, DEFAULT_INTERVAL);
+        try {
+            index.write(fileName);
+        }
+        catch (final IOException e) {
+            // the sidecar is only a cache, the index is built again next time
+        }
+        return index;
+    }
+
+    /**
+     * Builds the index of a file by scanning it for newlines, compressed files
+     * are decompressed
+     */
+    public static RowOffsetIndex build(final String fileName, final int interval) throws IOException {
+        final File file = new File(fileName);
+        final RowOffsetIndex index = new RowOffsetIndex(interval);
+        index.fileLength = file.length();
+        index.lastModified = file.lastModified();
+
+        final InputStream input = CompressionCodecs.decompress(fileName, new FileInputStream(file));
+        try {
+            final byte[] chunk = new byte[CHUNK_SIZE];
+            long offset = 0;
+            long line = -1;
+            boolean lineStarted = false;
+            int read;
+            while ((read = input.read(chunk)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (!lineStarted) {
+                        // line starts at offset + i
+                        lineStarted = true;
+                        if (line >= 0 && line % interval == 0) {
+                            index.add(offset + i);
+                        }
+                    }
+                    if (chunk[i] == '\n') {
+                        line++;
+                        lineStarted = false;
+                    }
+                }
+                offset += read;
+            }
+            if (lineStarted) {
+                // unterminated last line
+                line++;
+            }
+            index.lineCount = Math.max(line, 0);
+            if (index.lineCount % interval == 0) {
+                // seeking to the end lands past the last line
+                index.add(offset);
+            }
+            return index;
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Consumes count lines of the stream, stopping right after the last
+     * newline, and returns the number of bytes skipped. Ends early at the end
+     * of the stream.
+     */
+    static long skipLines(final BufferedInputStream in, long count) throws IOException {
+        final byte[] chunk = new byte[8192];
+        long skipped = 0;
+        while (count > 0) {
+            in.mark(chunk.length);
+            final int read = in.read(chunk);
+            if (read == -1) {
+                break;
+            }
+            int length = 0;
+            while (length < read && count > 0) {
+                if (chunk[length++] == '\n') {
+                    count--;
+                }
+            }
+            if (length < read) {
+                in.reset();
+                skipFully(in, length);
+            }
+            skipped += length;
+        }
+        return skipped;
+    }
+
+    static void skipFully(final InputStream in, long count) throws IOException {
+        while (count > 0) {
+            final long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new IOException("Unexpected end of input skipping " + count + " bytes");
+                }
+                count--;
+            }
+            else {
+                count -= skipped;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RowOffsetIndex[" + lineCount + " lines, every " + interval + "]";
+    }
+}
@@ -0,0 +1,416 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.kitschframework.common.io.ColumnHandle;
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.LazyDataRow;
+
+/**
+ * RowPredicate
+ *
+ * Filter on the columns of a row made of simple comparisons, which parsers
+ * that keep the raw line (LazyTabDelimitedDataRowParser,
+ * MappedTabDelimitedDataRowParser) evaluate against the raw fields before a
+ * row is built. Against a LazyDataRow the string comparisons work on the raw
+ * characters and the numeric ones parse them in place, so a rejected line
+ * allocates nothing. Any other DataRow is tested through its getters.
+ *
+ * A missing or null column fails every comparison.
+ *
+ * Readers that keep statistics of groups of rows (ColumnarDataReader) call
+ * mightMatch to skip the groups in which no row can match.
+ *
+ * Usage:
+ * <code>
+ * RowPredicate predicate = RowPredicate.and(
+ *         RowPredicate.equalTo("country", "US"),
+ *         RowPredicate.between("price", 10, 100));
+ * DataReader reader = new FileDataReader(fileName, new MappedTabDelimitedDataRowParser(), null, predicate);
+ * </code>
+ *
+ */
+public abstract class RowPredicate
+{
+    public abstract boolean test(DataRow row);
+
+    /**
+     * Returns false if no row of a group of rows with the given statistics,
+     * keyed by column, can match. Columns without statistics may hold
+     * anything, so predicates that can't tell return true.
+     */
+    public boolean mightMatch(final Map<String, ColumnStatistics> statistics) {
+        return true;
+    }
+
+    /**
+     * Returns the columns the predicate reads, or null if it is not known
+     */
+    public Set<String> getColumns() {
+        return null;
+    }
+
+    public static RowPredicate equalTo(final String column, final String value) {
+        return new EqualTo(column, value);
+    }
+
+    public static RowPredicate in(final String column, final Collection<String> values) {
+        return new In(column, values);
+    }
+
+    /**
+     * Numeric comparison, both bounds are inclusive, use infinity for an open
+     * range. Values that are not numbers fail.
+     */
+    public static RowPredicate between(final String column, final double min, final double max) {
+        return new Between(column, min, max);
+    }
+
+    public static RowPredicate startsWith(final String column, final String prefix) {
+        return new StartsWith(column, prefix);
+    }
+
+    public static RowPredicate and(final RowPredicate... predicates) {
+        return new And(predicates);
+    }
+
+    public static RowPredicate or(final RowPredicate... predicates) {
+        return new Or(predicates);
+    }
+
+    public static RowPredicate not(final RowPredicate predicate) {
+        return new Not(predicate);
+    }
+
+    private static Set<String> collectColumns(final RowPredicate[] predicates) {
+        final Set<String> columns = new LinkedHashSet<String>();
+        for (final RowPredicate predicate : predicates) {
+            final Set<String> predicateColumns = predicate.getColumns();
+            if (predicateColumns == null) {
+                return null;
+            }
+            columns.addAll(predicateColumns);
+        }
+        return columns;
+    }
+
+    /**
+     * Comparison on a single column, resolved through a ColumnHandle created
+     * from the first row tested
+     */
+    private abstract static class ColumnPredicate extends RowPredicate
+    {
+        protected final String column;
+        private ColumnHandle   handle;
+
+        ColumnPredicate(final String column) {
+            this.column = column;
+        }
+
+        @Override
+        public final boolean test(final DataRow row) {
+            ColumnHandle current = handle;
+            if (current == null || current.getMetadata() != row.getMetadata()) {
+                current = row.getMetadata().handle(column);
+                handle = current;
+            }
+            final int index = current.getIndex();
+            if (index == -1 || row.isNull(index)) {
+                return false;
+            }
+            if (row instanceof LazyDataRow) {
+                return test((LazyDataRow) row, index);
+            }
+            return test(row, index);
+        }
+
+        @Override
+        public final boolean mightMatch(final Map<String, ColumnStatistics> statistics) {
+            final ColumnStatistics columnStatistics = statistics.get(column);
+            if (columnStatistics == null) {
+                return true;
+            }
+            return !columnStatistics.isAllNull() && mightMatch(columnStatistics);
+        }
+
+        @Override
+        public final Set<String> getColumns() {
+            return Collections.singleton(column);
+        }
+
+        protected abstract boolean test(LazyDataRow row, int index);
+
+        protected abstract boolean test(DataRow row, int index);
+
+        protected abstract boolean mightMatch(ColumnStatistics statistics);
+    }
+
+    private static final class EqualTo extends ColumnPredicate
+    {
+        private final String value;
+
+        EqualTo(final String column, final String value) {
+            super(column);
+            this.value = value;
+        }
+
+        @Override
+        protected boolean test(final LazyDataRow row, final int index) {
+            return row.valueEquals(index, value);
+        }
+
+        @Override
+        protected boolean test(final DataRow row, final int index) {
+            return value.equals(row.getValueAsString(index));
+        }
+
+        @Override
+        protected boolean mightMatch(final ColumnStatistics statistics) {
+            return statistics.mightContain(value);
+        }
+
+        @Override
+        public String toString() {
+            return column + " = " + value;
+        }
+    }
+
+    private static final class In extends ColumnPredicate
+    {
+        private final Set<String> values;
+
+        /** Sorted hash codes of values, with the matching value at each slot */
+        private final int[]       hashes;
+        private final String[]    hashedValues;
+
+        In(final String column, final Collection<String> values) {
+            super(column);
+            this.values = new HashSet<String>(values);
+
+            final String[] sorted = this.values.toArray(new String[this.values.size()]);
+            Arrays.sort(sorted, (a, b) -> Integer.compare(a.hashCode(), b.hashCode()));
+            this.hashedValues = sorted;
+            this.hashes = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                hashes[i] = sorted[i].hashCode();
+            }
+        }
+
+        @Override
+        protected boolean test(final LazyDataRow row, final int index) {
+            final int hash = row.valueHashCode(index);
+            int slot = Arrays.binarySearch(hashes, hash);
+            if (slot < 0) {
+                return false;
+            }
+            while (slot > 0 && hashes[slot - 1] == hash) {
+                slot--;
+            }
+            for (; slot < hashes.length && hashes[slot] == hash; slot++) {
+                if (row.valueEquals(index, hashedValues[slot])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected boolean test(final DataRow row, final int index) {
+            return values.contains(row.getValueAsString(index));
+        }
+
+        @Override
+        protected boolean mightMatch(final ColumnStatistics statistics) {
+            for (final String value : values) {
+                if (statistics.mightContain(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return column + " in " + new LinkedHashSet<String>(values);
+        }
+    }
+
+    private static final class Between extends ColumnPredicate
+    {
+        private final double min;
+        private final double max;
+
+        Between(final String column, final double min, final double max) {
+            super(column);
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        protected boolean test(final LazyDataRow row, final int index) {
+            return test((DataRow) row, index);
+        }
+
+        @Override
+        protected boolean test(final DataRow row, final int index) {
+            try {
+                final double value = row.getValueAsDouble(index);
+                return value >= min && value <= max;
+            }
+            catch (final NumberFormatException e) {
+                return false;
+            }
+        }
+
+        @Override
+        protected boolean mightMatch(final ColumnStatistics statistics) {
+            return statistics.mightOverlap(min, max);
+        }
+
+        @Override
+        public String toString() {
+            return min + " <= " + column + " <= " + max;
+        }
+    }
+
+    private static final class StartsWith extends ColumnPredicate
+    {
+        private final String prefix;
+
+        StartsWith(final String column, final String prefix) {
+            super(column);
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected boolean test(final LazyDataRow row, final int index) {
+            return row.valueStartsWith(index, prefix);
+        }
+
+        @Override
+        protected boolean test(final DataRow row, final int index) {
+            return row.getValueAsString(index).startsWith(prefix);
+        }
+
+        @Override
+        protected boolean mightMatch(final ColumnStatistics statistics) {
+            return statistics.mightStartWith(prefix);
+        }
+
+        @Override
+        public String toString() {
+            return column + " starts with " + prefix;
+        }
+    }
+
+    private static final class And extends RowPredicate
+    {
+        private final RowPredicate[] predicates;
+
+        And(final RowPredicate[] predicates) {
+            this.predicates = predicates.clone();
+        }
+
+        @Override
+        public boolean test(final DataRow row) {
+            for (final RowPredicate predicate : predicates) {
+                if (!predicate.test(row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean mightMatch(final Map<String, ColumnStatistics> statistics) {
+            for (final RowPredicate predicate : predicates) {
+                if (!predicate.mightMatch(statistics)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Set<String> getColumns() {
+            return collectColumns(predicates);
+        }
+
+        @Override
+        public String toString() {
+            return "and" + Arrays.toString(predicates);
+        }
+    }
+
+    private static final class Or extends RowPredicate
+    {
+        private final RowPredicate[] predicates;
+
+        Or(final RowPredicate[] predicates) {
+            this.predicates = predicates.clone();
+        }
+
+        @Override
+        public boolean test(final DataRow row) {
+            for (final RowPredicate predicate : predicates) {
+                if (predicate.test(row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean mightMatch(final Map<String, ColumnStatistics> statistics) {
+            for (final RowPredicate predicate : predicates) {
+                if (predicate.mightMatch(statistics)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Set<String> getColumns() {
+            return collectColumns(predicates);
+        }
+
+        @Override
+        public String toString() {
+            return "or" + Arrays.toString(predicates);
+        }
+    }
+
+    private static final class Not extends RowPredicate
+    {
+        private final RowPredicate predicate;
+
+        Not(final RowPredicate predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean test(final DataRow row) {
+            return !predicate.test(row);
+        }
+
+        @Override
+        public Set<String> getColumns() {
+            return predicate.getColumns();
+        }
+
+        @Override
+        public String toString() {
+            return "not(" + predicate + ")";
+        }
+    }
+}
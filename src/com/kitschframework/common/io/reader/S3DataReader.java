@@ -6,18 +6,24 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.zip.GZIPInputStream;
 
 import com.kitschframework.common.io.DataRow;
 import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.compress.CompressionCodecs;
+import com.kitschframework.common.s3.ParallelRangeInputStream;
 import com.kitschframework.common.s3.S3Bucket;
 import com.kitschframework.common.s3.S3Client;
+import com.kitschframework.common.s3.S3ClientRegistry;
 import com.kitschframework.common.s3.S3Object;
 
 /**
- * FileDataReader
+ * S3DataReader
  * 
- * Abstract class that reads from a local file system file
+ * Reads the rows of an S3 object through an S3Client, parsed by the given
+ * DataRowParser. The object is read as a single GET, or with a partSize as
+ * concurrent ranged GETs, see ParallelRangeInputStream. A compressed object is
+ * decompressed with the codec of its extension or, failing that, of its first
+ * bytes, see CompressionCodecs.
  * 
  * 
  * 
@@ -33,16 +39,49 @@ public class S3DataReader implements DataReader
     private DataRow        nextDataRow = null;
     private final S3Bucket bucket;
 
+    /** Size of the ranged GETs, 0 to read the object as a single stream */
+    private final int      partSize;
+    private final int      parallelism;
+
+    /**
+     * Creates a reader using the shared client of S3ClientRegistry
+     */
     public S3DataReader(final S3Bucket bucket, final String s3FileName, final DataRowParser parser)
             throws Exception {
-        this(new S3Client(), bucket, s3FileName, parser);
+        this(S3ClientRegistry.getClient(), bucket, s3FileName, parser);
     }
 
     public S3DataReader(final S3Client client, final S3Bucket bucket, final String s3FileName,
             final DataRowParser parser) throws DataRowException {
+        this(client, bucket, s3FileName, parser, null, 0, 0);
+    }
+
+    /**
+     * Creates a reader that only returns the rows accepted by predicate, see
+     * DataRowParser.setPredicate
+     */
+    public S3DataReader(final S3Client client, final S3Bucket bucket, final String s3FileName,
+            final DataRowParser parser, final RowPredicate predicate) throws DataRowException {
+        this(client, bucket, s3FileName, parser, predicate, 0, 0);
+    }
+
+    /**
+     * Creates a reader that downloads the object through parallelism concurrent
+     * ranged GETs of partSize bytes, see ParallelRangeInputStream. predicate
+     * may be null and partSize 0 to read the object as a single stream.
+     */
+    public S3DataReader(final S3Client client, final S3Bucket bucket, final String s3FileName,
+            final DataRowParser parser, final RowPredicate predicate, final int partSize, final int parallelism)
+            throws DataRowException {
         this.bucket = bucket;
         this.s3FileName = s3FileName;
         this.client = client;
+        this.parser = parser;
+        this.partSize = partSize;
+        this.parallelism = parallelism;
+        if (predicate != null) {
+            parser.setPredicate(predicate);
+        }
         reset();
     }
 
@@ -58,12 +97,48 @@ public class S3DataReader implements DataReader
         return thisRow;
     }
 
+    /**
+     * Reads the next row into target instead of allocating a new one, reusing
+     * target's storage. Returns false once there are no more rows.
+     * 
+     * Rows read this way are not visible through hasNextDataRow/getNextDataRow,
+     * don't mix the two on one reader.
+     */
+    public final boolean readInto(final DataRow target) throws DataRowException {
+        if (nextDataRow != null) {
+            // the row read ahead by reset()
+            target.copyFrom(nextDataRow);
+            nextDataRow = null;
+            return true;
+        }
+        return parser.readDataRow(reader, target);
+    }
+
     @Override
     public final void reset() throws DataRowException {
         try {
-            final S3Object object = client.getObject(bucket, s3FileName);
+            if (reader != null) {
+                // stops the downloads of a ranged stream
+                reader.close();
+            }
+
+            final InputStream stream;
+            if (partSize > 0) {
+                stream = new ParallelRangeInputStream(client, bucket, s3FileName, partSize, parallelism);
+            }
+            else {
+                final S3Object object = client.getObject(bucket, s3FileName);
+                stream = object.getDataStream();
+            }
 
-            final InputStream input = new GZIPInputStream(object.getDataStream());
+            final InputStream input;
+            try {
+                input = CompressionCodecs.decompress(s3FileName, stream);
+            }
+            catch (final IOException e) {
+                stream.close();
+                throw e;
+            }
 
             reader = new BufferedReader(new InputStreamReader(new DataInputStream(input)));
             parser.readMetadata(reader);
@@ -88,6 +163,22 @@ public class S3DataReader implements DataReader
         }
     }
 
+    /**
+     * Returns the number of rows the parser has looked at, including the ones
+     * a predicate rejected, or -1 if the parser does not count them
+     */
+    public final long getRowsScanned() {
+        return parser.getRowsScanned();
+    }
+
+    /**
+     * Returns the number of rows the parser has returned, or -1 if the parser
+     * does not count them
+     */
+    public final long getRowsEmitted() {
+        return parser.getRowsEmitted();
+    }
+
     @Override
     public final String getDescription() {
         return bucket + "/" + s3FileName + "[" + parser.getDescription() + "]";
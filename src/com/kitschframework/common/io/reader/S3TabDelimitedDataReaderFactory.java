@@ -0,0 +1,50 @@
+/**
+ * 
+ */
+package com.kitschframework.common.io.reader;
+
+import java.util.Collection;
+
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.s3.S3ClientRegistry;
+import com.kitschframework.common.s3.S3Path;
+
+/**
+ * S3TabDelimitedDataReaderFactory
+ * 
+ * Creates S3DataReaders for file names of the form s3://bucket/key, through
+ * the shared client of S3ClientRegistry
+ * 
+ */
+public class S3TabDelimitedDataReaderFactory extends DataReaderFactory
+{
+
+    @Override
+    public DataReader create(String fileName) throws DataRowException {
+        return create(fileName, null, null);
+    }
+
+    @Override
+    public DataReader create(String fileName, Collection<String> columns) throws DataRowException {
+        return create(fileName, columns, null);
+    }
+
+    @Override
+    public DataReader create(String fileName, Collection<String> columns, RowPredicate predicate)
+            throws DataRowException {
+        final S3Path path;
+        try {
+            path = S3Path.parse(fileName);
+        }
+        catch (IllegalArgumentException e) {
+            throw new DataRowException(e);
+        }
+
+        final LazyTabDelimitedDataRowParser parser = new LazyTabDelimitedDataRowParser();
+        if (columns != null) {
+            parser.setProjection(columns);
+        }
+        parser.setPredicate(predicate);
+        return new S3DataReader(S3ClientRegistry.getClient(), path.getBucket(), path.getKey(), parser);
+    }
+}
@@ -0,0 +1,398 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+import com.kitschframework.common.s3.S3Client;
+import com.kitschframework.common.s3.S3ClientRegistry;
+import com.kitschframework.common.s3.S3Path;
+
+/**
+ * ShardedDataReader
+ *
+ * Reads a dataset split into many files, such as a directory of part-NNNNN.gz
+ * files, as a single reader. Each shard is opened with the given
+ * DataReaderFactory and read on a pool of maxOpenShards threads, so that many
+ * shards are open and parsed at once.
+ *
+ * Ordered readers return the shards one after the other in the order given,
+ * the next maxOpenShards shards are read ahead while the current one is
+ * consumed. Unordered readers return batches of rows from whichever shard
+ * produced them first.
+ *
+ * Every shard must have the same columns in the same order, a shard that
+ * doesn't makes getNextDataRow throw a DataRowException, as does a failure to
+ * open or read a shard.
+ *
+ * Usage:
+ * <code>
+ * DataReader reader = new ShardedDataReader(ShardedDataReader.listShards("/data/events/part-*.gz"),
+ *         new LazyTabDelimitedDataReaderFactory(), 8, false);
+ * </code>
+ *
+ */
+public class ShardedDataReader implements DataReader {
+
+	public static final int DEFAULT_MAX_OPEN_SHARDS = 4;
+
+	private static final int BATCH_SIZE = 256;
+	private static final int QUEUE_DEPTH = 4;
+	private static final long POLL_MILLIS = 100;
+
+	/** Posted by a shard after its last batch */
+	private static final List<DataRow> END = new ArrayList<DataRow>(0);
+
+	private final List<String> shards;
+	private final DataReaderFactory factory;
+	private final int maxOpenShards;
+	private final boolean ordered;
+	private final ExecutorService executor;
+
+	private Run run;
+
+	private List<DataRow> batch = Collections.emptyList();
+	private int batchIndex = 0;
+
+	/**
+	 * Reads every shard found by listShards(path) in order
+	 */
+	public ShardedDataReader(String path, DataReaderFactory factory) throws DataRowException {
+		this(listShards(path), factory, DEFAULT_MAX_OPEN_SHARDS, true);
+	}
+
+	public ShardedDataReader(List<String> shards, DataReaderFactory factory, int maxOpenShards, boolean ordered)
+			throws DataRowException {
+		if (maxOpenShards <= 0) {
+			throw new IllegalArgumentException("maxOpenShards must be positive");
+		}
+		this.shards = new ArrayList<String>(shards);
+		this.factory = factory;
+		this.maxOpenShards = maxOpenShards;
+		this.ordered = ordered;
+		this.executor = Executors.newFixedThreadPool(maxOpenShards, runnable -> {
+			Thread thread = new Thread(runnable, "shard-reader");
+			thread.setDaemon(true);
+			return thread;
+		});
+		reset();
+	}
+
+	/**
+	 * Returns the shards of a dataset, in name order. path may be a file, a
+	 * directory whose files are the shards, a glob such as /data/2013-*&#47;part-*
+	 * or an s3://bucket/prefix listed through the client of S3ClientRegistry.
+	 * Names starting with . or _ (such as _SUCCESS) are skipped in directories,
+	 * globs and prefixes.
+	 */
+	public static List<String> listShards(String path) throws DataRowException {
+		return listShards(path, S3Path.isS3Path(path) ? S3ClientRegistry.getClient() : null);
+	}
+
+	public static List<String> listShards(String path, S3Client client) throws DataRowException {
+		List<String> shards = new ArrayList<String>();
+		try {
+			if (S3Path.isS3Path(path)) {
+				S3Path prefix = S3Path.parse(path);
+				for (String key : client.listObjects(prefix.getBucket(), prefix.getKey())) {
+					if (isShard(key)) {
+						shards.add(new S3Path(prefix.getBucket(), key).toString());
+					}
+				}
+			}
+			else if (new File(path).isDirectory()) {
+				File[] files = new File(path).listFiles();
+				if (files != null) {
+					for (File file : files) {
+						if (file.isFile() && isShard(file.getName())) {
+							shards.add(file.getPath());
+						}
+					}
+				}
+			}
+			else if (isGlob(path)) {
+				shards.addAll(glob(path));
+			}
+			else if (new File(path).isFile()) {
+				shards.add(path);
+			}
+			else {
+				throw new DataRowException("No such file " + path);
+			}
+		}
+		catch (IOException e) {
+			throw new DataRowException(e);
+		}
+		Collections.sort(shards);
+		return shards;
+	}
+
+	private static boolean isShard(String key) {
+		String name = key.substring(key.lastIndexOf('/') + 1);
+		return !name.isEmpty() && !name.startsWith(".") && !name.startsWith("_");
+	}
+
+	private static boolean isGlob(String path) {
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (c == '*' || c == '?' || c == '[' || c == '{') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Walks the deepest directory of the pattern that has no wildcard
+	 */
+	private static List<String> glob(String pattern) throws IOException {
+		int wildcard = 0;
+		while (!isGlob(pattern.substring(0, wildcard + 1))) {
+			wildcard++;
+		}
+		int slash = pattern.lastIndexOf(File.separatorChar, wildcard);
+		Path base = Paths.get(slash == -1 ? "" : slash == 0 ? File.separator : pattern.substring(0, slash));
+		if (!Files.isDirectory(base)) {
+			return Collections.emptyList();
+		}
+
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		try (Stream<Path> files = Files.walk(base)) {
+			return files
+					.filter(file -> Files.isRegularFile(file) && matcher.matches(file)
+							&& isShard(file.getFileName().toString()))
+					.map(Path::toString)
+					.collect(Collectors.toList());
+		}
+	}
+
+	public final List<String> getShards() {
+		return Collections.unmodifiableList(shards);
+	}
+
+	@Override
+	public final void reset() throws DataRowException {
+		stop();
+		batch = Collections.emptyList();
+		batchIndex = 0;
+		run = new Run();
+		if (ordered) {
+			for (int i = 0; i < maxOpenShards && i < shards.size(); i++) {
+				submitNextShard();
+			}
+		}
+		else {
+			LinkedBlockingQueue<List<DataRow>> queue = new LinkedBlockingQueue<List<DataRow>>(QUEUE_DEPTH
+					* maxOpenShards);
+			for (int i = 0; i < shards.size(); i++) {
+				submit(run, i, queue);
+			}
+			run.queues.add(queue);
+		}
+	}
+
+	@Override
+	public final void close() {
+		stop();
+		executor.shutdownNow();
+	}
+
+	@Override
+	public final boolean hasNextDataRow() {
+		if (batchIndex < batch.size()) {
+			return true;
+		}
+		while (true) {
+			if (run.failure != null) {
+				// thrown by the next getNextDataRow
+				return true;
+			}
+			if (run.finishedShards == shards.size()) {
+				return false;
+			}
+
+			LinkedBlockingQueue<List<DataRow>> queue = run.queues.get(ordered ? run.finishedShards : 0);
+			List<DataRow> next;
+			try {
+				next = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			if (next == null) {
+				continue;
+			}
+			if (next == END) {
+				if (ordered) {
+					run.queues.set(run.finishedShards, null);
+				}
+				run.finishedShards++;
+				if (ordered && run.submittedShards < shards.size()) {
+					submitNextShard();
+				}
+				continue;
+			}
+			batch = next;
+			batchIndex = 0;
+			return true;
+		}
+	}
+
+	@Override
+	public final DataRow getNextDataRow() throws DataRowException {
+		if (!hasNextDataRow()) {
+			return null;
+		}
+		if (batchIndex == batch.size()) {
+			DataRowException e = run.failure;
+			stop();
+			run.failure = null;
+			run.finishedShards = shards.size();
+			throw e;
+		}
+		DataRow row = batch.get(batchIndex);
+		batch.set(batchIndex++, null);
+		return row;
+	}
+
+	/**
+	 * Starts reading the next shard in order into its own queue
+	 */
+	private void submitNextShard() {
+		LinkedBlockingQueue<List<DataRow>> queue = new LinkedBlockingQueue<List<DataRow>>(QUEUE_DEPTH);
+		run.queues.add(queue);
+		submit(run, run.submittedShards, queue);
+	}
+
+	private void submit(final Run run, final int index, final LinkedBlockingQueue<List<DataRow>> queue) {
+		run.submittedShards++;
+		executor.execute(() -> readShard(run, index, queue));
+	}
+
+	private void readShard(Run run, int index, LinkedBlockingQueue<List<DataRow>> queue) {
+		DataReader reader = null;
+		try {
+			if (run.cancelled.get()) {
+				return;
+			}
+			reader = factory.create(shards.get(index));
+			DataRowMetadata checked = null;
+			List<DataRow> rows = new ArrayList<DataRow>(BATCH_SIZE);
+			while (!run.cancelled.get() && reader.hasNextDataRow()) {
+				DataRow row = reader.getNextDataRow();
+				if (row == null) {
+					continue;
+				}
+				if (row.getMetadata() != checked) {
+					checkMetadata(run, index, row.getMetadata());
+					checked = row.getMetadata();
+				}
+				rows.add(row);
+				if (rows.size() == BATCH_SIZE) {
+					put(run, queue, rows);
+					rows = new ArrayList<DataRow>(BATCH_SIZE);
+				}
+			}
+			if (!rows.isEmpty()) {
+				put(run, queue, rows);
+			}
+		}
+		catch (DataRowException e) {
+			fail(run, e);
+		}
+		catch (RuntimeException e) {
+			fail(run, new DataRowException(e));
+		}
+		finally {
+			if (reader != null) {
+				reader.close();
+			}
+			put(run, queue, END);
+		}
+	}
+
+	/**
+	 * Checks that a shard has the columns of the first shard read
+	 */
+	private void checkMetadata(Run run, int index, DataRowMetadata metadata) throws DataRowException {
+		if (run.metadata.compareAndSet(null, metadata)) {
+			return;
+		}
+		DataRowMetadata expected = run.metadata.get();
+		boolean compatible = expected.getKeyCount() == metadata.getKeyCount();
+		for (int i = 0; compatible && i < expected.getKeyCount(); i++) {
+			compatible = expected.getKey(i).equals(metadata.getKey(i));
+		}
+		if (!compatible) {
+			throw new DataRowException("Shard " + shards.get(index) + " has columns " + metadata.getKeySet()
+					+ ", expected " + expected.getKeySet());
+		}
+	}
+
+	private void fail(Run run, DataRowException e) {
+		if (!run.cancelled.getAndSet(true)) {
+			run.failure = e;
+		}
+	}
+
+	private void put(Run run, LinkedBlockingQueue<List<DataRow>> queue, List<DataRow> rows) {
+		try {
+			while (!run.cancelled.get() && !queue.offer(rows, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+				// wait for the consumer or for close()
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void stop() {
+		if (run != null) {
+			run.cancelled.set(true);
+		}
+	}
+
+	@Override
+	public final String getDescription() {
+		return "sharded[" + shards.size() + " shards, " + factory.getClass().getSimpleName() + "]";
+	}
+
+	@Override
+	public String toString() {
+		return getDescription();
+	}
+
+	/**
+	 * State of one pass over the shards, a new one is created on reset() so
+	 * the tasks of a previous pass never touch the next one
+	 */
+	private static final class Run {
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final AtomicReference<DataRowMetadata> metadata = new AtomicReference<DataRowMetadata>();
+		final List<LinkedBlockingQueue<List<DataRow>>> queues = new ArrayList<LinkedBlockingQueue<List<DataRow>>>();
+		volatile DataRowException failure;
+
+		/** Consumer side */
+		int finishedShards;
+		int submittedShards;
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+import java.io.DataInputStream;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+
+/**
+ * StreamDataRowParser
+ *
+ * Parser of binary formats that reads the bytes of the file instead of
+ * characters, FileDataReader hands it the (decompressed) file as a buffered
+ * DataInputStream. Such parsers have no lines, so unlike DataRowParser there
+ * is nothing to project, filter or seek by line.
+ *
+ */
+public interface StreamDataRowParser
+{
+    public abstract void readMetadata(DataInputStream input) throws DataRowException;
+
+    /**
+     * Reads the next row, or returns null at the end of the input
+     */
+    public abstract DataRow readDataRow(DataInputStream input) throws DataRowException;
+
+    /**
+     * Returns the number of rows parsed since the metadata was read, or -1 if
+     * the parser does not count them
+     */
+    public default long getRowsScanned() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of rows returned since the metadata was read, or -1
+     * if the parser does not count them
+     */
+    public default long getRowsEmitted() {
+        return -1;
+    }
+
+    public abstract String getDescription();
+}
@@ -3,6 +3,8 @@
  */
 package com.kitschframework.common.io.reader;
 
+import java.util.Collection;
+
 import com.kitschframework.common.io.DataRowException;
 
 public class TabDelimitedDataReaderFactory extends DataReaderFactory
@@ -12,4 +14,15 @@ public class TabDelimitedDataReaderFactory extends DataReaderFactory
     public DataReader create(String fileName) throws DataRowException {
         return new FileDataReader(fileName, new TabDelimitedDataRowParser());
     }
+
+    @Override
+    public DataReader create(String fileName, Collection<String> columns) throws DataRowException {
+        return new FileDataReader(fileName, new TabDelimitedDataRowParser(), columns);
+    }
+
+    @Override
+    public DataReader create(String fileName, Collection<String> columns, RowPredicate predicate)
+            throws DataRowException {
+        return new FileDataReader(fileName, new TabDelimitedDataRowParser(), columns, predicate);
+    }
 }
@@ -5,6 +5,13 @@ package com.kitschframework.common.io.reader;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import com.kitschframework.common.io.DataRow;
 import com.kitschframework.common.io.DataRowException;
@@ -15,9 +22,94 @@ public class TabDelimitedDataRowParser implements DataRowParser
 
     private DataRowMetadata metadata;
 
+    private DataRowMetadata headerMetadata;
+    private Set<String> projection;
+    private int[] projectedFields;
+
+    private RowPredicate predicate;
+    /** Every field of the line, for testing the predicate of a projection */
+    private DataRow predicateRow;
+
+    private final Map<String, ValueInterner> interners = new LinkedHashMap<String, ValueInterner>();
+    /** Interner of each field of the header, null when nothing is interned */
+    private ValueInterner[] fieldInterners;
+
+    private long rowsScanned;
+    private long rowsEmitted;
+    private long linesRead;
+
     public TabDelimitedDataRowParser() throws DataRowException {
     }
 
+    /**
+     * Creates a parser for input whose header has already been read, e.g. a
+     * split of a larger file
+     */
+    public TabDelimitedDataRowParser(final DataRowMetadata metadata) throws DataRowException {
+        setMetadata(metadata);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Rows only hold the projected columns, in header order, the other fields
+     * are skipped while splitting the line and never become Strings. A name
+     * repeated in the header keeps all of its columns.
+     */
+    @Override
+    public void setProjection(final Collection<String> columns) throws DataRowException {
+        this.projection = columns == null ? null : new HashSet<String>(columns);
+        if (headerMetadata != null) {
+            setMetadata(headerMetadata);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The predicate sees every column of the header, even with a projection.
+     */
+    @Override
+    public void setPredicate(final RowPredicate predicate) {
+        this.predicate = predicate;
+    }
+
+    protected final RowPredicate getPredicate() {
+        return predicate;
+    }
+
+    /**
+     * Interns the values of the given columns, so rows that are kept in memory
+     * share one String per distinct value instead of a copy per row. Each
+     * column gets a ValueInterner of at most maxSize values, a column with more
+     * distinct values stops being interned. Rows that keep the raw line
+     * (CharDataRow, ByteDataRow) decode their fields later and aren't
+     * interned. null turns interning off.
+     */
+    public void setInterning(final Collection<String> columns, final int maxSize) {
+        interners.clear();
+        if (columns != null) {
+            for (final String column : columns) {
+                interners.put(column, new ValueInterner(column, maxSize));
+            }
+        }
+        if (headerMetadata != null) {
+            resolveInterners();
+        }
+    }
+
+    public void setInterning(final Collection<String> columns) {
+        setInterning(columns, ValueInterner.DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Returns the interner of each interned column, whose hit rates are kept
+     * across files read by this parser
+     */
+    public Map<String, ValueInterner> getInterners() {
+        return Collections.unmodifiableMap(interners);
+    }
+
     /** {@inheritDoc} */
     @Override
     public void readMetadata(BufferedReader reader) throws DataRowException {
@@ -25,7 +117,7 @@ public class TabDelimitedDataRowParser implements DataRowParser
             String headerLine = reader.readLine();
             if (headerLine != null) {
                 String[] header = headerLine.split("\t");
-                this.metadata = new DataRowMetadata(header);
+                setMetadata(new DataRowMetadata(header));
             }
         }
         catch (IOException e) {
@@ -33,31 +125,233 @@ public class TabDelimitedDataRowParser implements DataRowParser
         }
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     * 
+     * Blank lines and lines with more fields than the header are skipped,
+     * trailing empty fields are dropped.
+     */
+    @Override
+    public DataRow readDataRow(BufferedReader reader) throws DataRowException {
+        DataRow dataRow = new DataRow(metadata, new String[0]);
+        return readDataRow(reader, dataRow) ? dataRow : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Splits the line without a regex and refills target's value list, lines
+     * are skipped as in readDataRow(BufferedReader).
+     */
     @Override
-    public DataRow readDataRow(BufferedReader reader) {
-        String rawRow = "";
-
-        // TODO this is broken
-        while (rawRow != null && rawRow.trim().length() == 0) {
-            try {
-                rawRow = reader.readLine();
-
-                if (rawRow != null && rawRow.trim().length() > 0) {
-                    String[] tokens = rawRow.split("\t");
-                    if (tokens.length > 0 && tokens.length <= metadata.getKeyCount()) {
-                        return new DataRow(metadata, tokens);
+    public boolean readDataRow(BufferedReader reader, DataRow target) throws DataRowException {
+        try {
+            String rawRow;
+            while ((rawRow = reader.readLine()) != null) {
+                countLine();
+                if (!isBlank(rawRow) && split(rawRow, target)) {
+                    boolean accepted = predicate == null || predicate.test(
+                            projectedFields == null ? target : predicateRow);
+                    countRow(accepted);
+                    if (accepted) {
+                        return true;
                     }
                 }
             }
-            catch (IOException ioe) {
-                ioe.printStackTrace();
+        }
+        catch (IOException ioe) {
+            throw new DataRowException(ioe);
+        }
+        return false;
+    }
+
+    /**
+     * Splits the line into target, returns false if it has more fields than
+     * the header. With a predicate and a projection every field goes to
+     * predicateRow and the projected ones are copied to target.
+     */
+    private boolean split(String rawRow, DataRow target) {
+        if (predicate == null || projectedFields == null) {
+            return split(rawRow, target, metadata, projectedFields);
+        }
+        if (predicateRow == null) {
+            predicateRow = new DataRow();
+        }
+        if (!split(rawRow, predicateRow, headerMetadata, null)) {
+            return false;
+        }
+        target.clear(metadata);
+        int valueCount = predicateRow.getValueCount();
+        for (int field : projectedFields) {
+            if (field < valueCount) {
+                target.addValue(predicateRow.getValueAsString(field));
+            }
+        }
+        return true;
+    }
+
+    private boolean split(String rawRow, DataRow target, DataRowMetadata rowMetadata, int[] fields) {
+        // trailing empty fields are dropped, same as String.split
+        int end = rawRow.length();
+        while (end > 0 && rawRow.charAt(end - 1) == '\t') {
+            end--;
+        }
+
+        target.clear(rowMetadata);
+        final int keyCount = getHeaderKeyCount();
+        int start = 0;
+        int field = 0;
+        int projected = 0;
+        int tab;
+        while ((tab = rawRow.indexOf('\t', start)) != -1 && tab < end) {
+            if (field + 2 > keyCount) {
+                return false;
+            }
+            if (fields == null) {
+                target.addValue(substring(rawRow, field, start, tab));
+            }
+            else if (projected < fields.length && fields[projected] == field) {
+                target.addValue(substring(rawRow, field, start, tab));
+                projected++;
+            }
+            field++;
+            start = tab + 1;
+        }
+        if (fields == null || (projected < fields.length && fields[projected] == field)) {
+            target.addValue(substring(rawRow, field, start, end));
+        }
+        return true;
+    }
+
+    private String substring(String rawRow, int field, int start, int end) {
+        final ValueInterner interner = getInterner(field);
+        return interner == null ? rawRow.substring(start, end) : interner.intern(rawRow, start, end);
+    }
+
+    private static boolean isBlank(String rawRow) {
+        for (int i = 0; i < rawRow.length(); i++) {
+            if (rawRow.charAt(i) > ' ') {
+                return false;
             }
-            catch (DataRowException e) {
-                e.printStackTrace();
+        }
+        return true;
+    }
+
+    protected final DataRowMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Sets the metadata read from the header and resolves the projection
+     * against it
+     */
+    protected final void setMetadata(final DataRowMetadata metadata) throws DataRowException {
+        this.headerMetadata = metadata;
+        this.rowsScanned = 0;
+        this.rowsEmitted = 0;
+        this.linesRead = 0;
+        resolveInterners();
+        if (projection == null) {
+            this.metadata = metadata;
+            this.projectedFields = null;
+            return;
+        }
+
+        for (final String column : projection) {
+            if (!metadata.containsKey(column)) {
+                throw new DataRowException("Projected column " + column + " is not in the header");
+            }
+        }
+        int[] fields = new int[metadata.getKeyCount()];
+        int count = 0;
+        for (int i = 0; i < metadata.getKeyCount(); i++) {
+            if (projection.contains(metadata.getKey(i))) {
+                fields[count++] = i;
             }
         }
-        return null;
+        fields = Arrays.copyOf(fields, count);
+        this.metadata = metadata.project(fields);
+        this.projectedFields = fields;
+    }
+
+    private void resolveInterners() {
+        fieldInterners = null;
+        for (int i = 0; i < headerMetadata.getKeyCount(); i++) {
+            final ValueInterner interner = interners.get(headerMetadata.getKey(i));
+            if (interner != null) {
+                if (fieldInterners == null) {
+                    fieldInterners = new ValueInterner[headerMetadata.getKeyCount()];
+                }
+                fieldInterners[i] = interner;
+            }
+        }
+    }
+
+    /**
+     * Returns the interner of a field of the header, or null if the field's
+     * column isn't interned
+     */
+    protected final ValueInterner getInterner(final int field) {
+        return fieldInterners == null || field >= fieldInterners.length ? null : fieldInterners[field];
+    }
+
+    /**
+     * Returns the metadata of the header, before projection
+     */
+    protected final DataRowMetadata getHeaderMetadata() {
+        return headerMetadata;
+    }
+
+    /**
+     * Returns the number of columns of the header, which bounds the number of
+     * fields of a line whether or not it is projected
+     */
+    protected final int getHeaderKeyCount() {
+        return headerMetadata.getKeyCount();
+    }
+
+    /**
+     * Returns the field of the line for each projected column, ascending, or
+     * null when rows hold every column
+     */
+    protected final int[] getProjectedFields() {
+        return projectedFields;
+    }
+
+    /**
+     * Counts a well-formed line and whether it was returned as a row or
+     * rejected by a predicate
+     */
+    protected final void countRow(final boolean emitted) {
+        rowsScanned++;
+        if (emitted) {
+            rowsEmitted++;
+        }
+    }
+
+    /**
+     * Counts a line consumed from the input, whether or not it produced a row
+     */
+    protected final void countLine() {
+        linesRead++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getRowsEmitted() {
+        return rowsEmitted;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getLinesRead() {
+        return linesRead;
     }
 
     /** {@inheritDoc} */
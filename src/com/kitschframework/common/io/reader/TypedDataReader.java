@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+import com.kitschframework.common.io.TypedDataRow;
+
+/**
+ * TypedDataReader
+ *
+ * Wraps a DataReader and binds every row it returns to a typed schema, so
+ * typed columns are parsed once as the row is read and getters return the
+ * stored primitives. Columns are matched by name, schema columns missing from
+ * the input are null.
+ *
+ * Usage:
+ * <code>
+ * DataRowMetadata schema = new DataRowMetadata();
+ * schema.setColumnType("id", ColumnType.LONG, false);
+ * schema.setColumnType("price", ColumnType.DOUBLE);
+ * schema.setColumnType("day", ColumnType.DATE);
+ * DataReader reader = new TypedDataReader(new FileDataReader(fileName, parser), schema);
+ * </code>
+ *
+ * A value that doesn't match its column's type fails getNextDataRow with a
+ * DataRowException naming the column.
+ *
+ */
+public class TypedDataReader implements DataReader
+{
+    private final DataReader      reader;
+    private final DataRowMetadata schema;
+
+    private DataRowMetadata       sourceMetadata;
+    private int[]                 columnMap;
+
+    public TypedDataReader(final DataReader reader, final DataRowMetadata schema) {
+        this.reader = reader;
+        this.schema = schema;
+    }
+
+    public DataRowMetadata getSchema() {
+        return schema;
+    }
+
+    @Override
+    public void reset() throws DataRowException {
+        reader.reset();
+        sourceMetadata = null;
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+
+    @Override
+    public boolean hasNextDataRow() {
+        return reader.hasNextDataRow();
+    }
+
+    @Override
+    public DataRow getNextDataRow() throws DataRowException {
+        final DataRow source = reader.getNextDataRow();
+        if (source == null) {
+            return null;
+        }
+        final TypedDataRow row = new TypedDataRow(schema);
+        row.bind(source, getColumnMap(source.getMetadata()));
+        return row;
+    }
+
+    /**
+     * Refills target from the next row, returns false once there are no more
+     * rows. target must have been created for this reader's schema.
+     */
+    public boolean readInto(final TypedDataRow target) throws DataRowException {
+        if (!reader.hasNextDataRow()) {
+            return false;
+        }
+        final DataRow source = reader.getNextDataRow();
+        if (source == null) {
+            return false;
+        }
+        target.bind(source, getColumnMap(source.getMetadata()));
+        return true;
+    }
+
+    /**
+     * The column map only changes with the source metadata, which readers
+     * share across rows
+     */
+    private int[] getColumnMap(final DataRowMetadata metadata) {
+        if (metadata != sourceMetadata) {
+            columnMap = TypedDataRow.mapColumns(schema, metadata);
+            sourceMetadata = metadata;
+        }
+        return columnMap;
+    }
+
+    @Override
+    public String getDescription() {
+        return "typed[" + reader.getDescription() + "]";
+    }
+
+    @Override
+    public String toString() {
+        return getDescription();
+    }
+}
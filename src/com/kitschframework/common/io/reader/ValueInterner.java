@@ -0,0 +1,264 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.reader;
+
+import java.nio.ByteBuffer;
+
+import com.kitschframework.common.io.ByteDataRow;
+
+/**
+ * ValueInterner
+ *
+ * Bounded dictionary of the values of one column, so that rows sharing a
+ * value share one String instead of each holding a copy. Meant for low
+ * cardinality columns (country, status, ...) of rows that are kept in memory,
+ * see TabDelimitedDataRowParser.setInterning.
+ *
+ * A value is looked up from the raw characters or bytes of the line, so a hit
+ * allocates nothing. Once the dictionary holds maxSize values the column is
+ * considered high cardinality and interning stops: later values are returned
+ * as new Strings without a lookup, the values already interned are kept.
+ *
+ * Not thread safe, each parser has its own interners.
+ *
+ */
+public final class ValueInterner
+{
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private final String    column;
+    private final int       maxSize;
+
+    /** Open addressing table of the values and their String hash codes */
+    private String[]        values;
+    private int[]           hashes;
+    private int             size;
+    private boolean         overflowed;
+
+    private long            hits;
+    private long            misses;
+    private long            bypassed;
+
+    public ValueInterner(final String column, final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Interner size must be positive: " + maxSize);
+        }
+        this.column = column;
+        this.maxSize = maxSize;
+        this.values = new String[16];
+        this.hashes = new int[16];
+    }
+
+    public String intern(final String value) {
+        if (overflowed) {
+            bypassed++;
+            return value;
+        }
+        final int hash = value.hashCode();
+        final int mask = values.length - 1;
+        for (int slot = spread(hash) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && values[slot].equals(value)) {
+                hits++;
+                return values[slot];
+            }
+        }
+        return add(value, hash);
+    }
+
+    /**
+     * Interns line.substring(start, end)
+     */
+    public String intern(final String line, final int start, final int end) {
+        if (overflowed) {
+            bypassed++;
+            return line.substring(start, end);
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + line.charAt(i);
+        }
+        final int length = end - start;
+        final int mask = values.length - 1;
+        for (int slot = spread(hash) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            final String value = values[slot];
+            if (hashes[slot] == hash && value.length() == length && line.regionMatches(start, value, 0, length)) {
+                hits++;
+                return value;
+            }
+        }
+        return add(line.substring(start, end), hash);
+    }
+
+    /**
+     * Interns new String(chars, start, end - start)
+     */
+    public String intern(final char[] chars, final int start, final int end) {
+        if (overflowed) {
+            bypassed++;
+            return new String(chars, start, end - start);
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        final int mask = values.length - 1;
+        for (int slot = spread(hash) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && matches(values[slot], chars, start, end)) {
+                hits++;
+                return values[slot];
+            }
+        }
+        return add(new String(chars, start, end - start), hash);
+    }
+
+    /**
+     * Interns the bytes of buffer between start and end, decoded as
+     * ByteDataRow.decode does. Values that aren't ASCII are decoded before the
+     * lookup.
+     */
+    public String intern(final ByteBuffer buffer, final int start, final int end) {
+        if (overflowed) {
+            bypassed++;
+            return ByteDataRow.decode(buffer, start, end);
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            final byte b = buffer.get(i);
+            if (b < 0) {
+                return intern(ByteDataRow.decode(buffer, start, end));
+            }
+            hash = 31 * hash + b;
+        }
+        final int length = end - start;
+        final int mask = values.length - 1;
+        for (int slot = spread(hash) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            final String value = values[slot];
+            if (hashes[slot] == hash && value.length() == length && matches(value, buffer, start)) {
+                hits++;
+                return value;
+            }
+        }
+        return add(ByteDataRow.decode(buffer, start, end), hash);
+    }
+
+    private static boolean matches(final String value, final char[] chars, final int start, final int end) {
+        if (value.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i - start) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(final String value, final ByteBuffer buffer, final int start) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String add(final String value, final int hash) {
+        misses++;
+        if (size == maxSize) {
+            overflowed = true;
+            return value;
+        }
+        if (2 * (size + 1) > values.length) {
+            grow();
+        }
+        insert(value, hash);
+        size++;
+        return value;
+    }
+
+    private void grow() {
+        final String[] oldValues = values;
+        final int[] oldHashes = hashes;
+        values = new String[oldValues.length * 2];
+        hashes = new int[oldValues.length * 2];
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                insert(oldValues[i], oldHashes[i]);
+            }
+        }
+    }
+
+    private void insert(final String value, final int hash) {
+        final int mask = values.length - 1;
+        int slot = spread(hash) & mask;
+        while (values[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        values[slot] = value;
+        hashes[slot] = hash;
+    }
+
+    /**
+     * Mixes the high bits of String hash codes into the low ones used for the
+     * slot, they are poor for short values
+     */
+    private static int spread(final int hash) {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns the number of distinct values interned
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true once the column had more than maxSize distinct values and
+     * interning stopped
+     */
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * Returns the number of values that were already in the dictionary
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of values that were not in the dictionary
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of values not looked up because interning stopped
+     */
+    public long getBypassed() {
+        return bypassed;
+    }
+
+    /**
+     * Returns the fraction of all values that shared an interned String
+     */
+    public double getHitRate() {
+        final long total = hits + misses + bypassed;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %.1f%% hits of %d values, %d distinct%s", column, 100 * getHitRate(),
+                hits + misses + bypassed, size, overflowed ? ", overflowed" : "");
+    }
+}
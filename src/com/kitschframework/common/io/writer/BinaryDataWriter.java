@@ -0,0 +1,192 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+import com.kitschframework.common.io.BinaryRowFormat;
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+import com.kitschframework.common.io.TypedDataRow;
+
+/**
+ * BinaryDataWriter
+ *
+ * Writes rows in the binary format of BinaryRowFormat, read back with
+ * BinaryDataRowParser. Meant for intermediate files between jobs, numbers
+ * are written as varints and raw doubles instead of being formatted and parsed
+ * again.
+ *
+ * The metadata of the first row is written as the header, column types
+ * included, and decides how every row is encoded. Only typed columns (see
+ * DataRowMetadata.setColumnType) are stored as numbers, STRING columns are
+ * stored as text. TypedDataRows are encoded from their parsed values without
+ * going through text.
+ *
+ */
+public class BinaryDataWriter extends FileDataWriter {
+
+    private DataRowMetadata    metadata;
+    private OutputStream       headerOutput;
+
+    private byte[]             body = new byte[256];
+    private int                length;
+    private SimpleDateFormat[] dateFormats;
+
+    public BinaryDataWriter(final String fileName) throws DataRowException {
+        super(fileName);
+    }
+
+    @Override
+    protected void serializeDataRow(final DataRow dataRow) throws IOException {
+        final OutputStream output = getOutputStream();
+        if (headerOutput != output) {
+            // first row since the file was (re)opened
+            metadata = dataRow.getMetadata();
+            dateFormats = new SimpleDateFormat[metadata.getKeyCount()];
+            BinaryRowFormat.writeMetadata(output, metadata);
+            headerOutput = output;
+        }
+
+        final int count = dataRow.getValueCount();
+        if (count > metadata.getKeyCount()) {
+            throw new IOException("Row has " + count + " values, the header has " + metadata.getKeyCount()
+                    + " columns");
+        }
+        length = 0;
+        putVarLong(count);
+        for (int i = 0; i < count; i++) {
+            putField(dataRow, i);
+        }
+        BinaryRowFormat.writeVarLong(output, length);
+        output.write(body, 0, length);
+    }
+
+    private void putField(final DataRow dataRow, final int index) {
+        final ColumnType type = metadata.getColumnType(index);
+        if (type != ColumnType.STRING && dataRow.isNull(index)) {
+            put(BinaryRowFormat.TAG_NULL);
+            return;
+        }
+
+        try {
+            if (type == ColumnType.LONG || type == ColumnType.INT) {
+                final long value = dataRow.getValueAsLong(index);
+                // an INT column value outside the int range is kept as text
+                if (type == ColumnType.LONG || (int) value == value) {
+                    put(BinaryRowFormat.TAG_VARINT);
+                    putVarLong(BinaryRowFormat.zigZag(value));
+                    return;
+                }
+            }
+            if (type == ColumnType.DOUBLE) {
+                final double value = dataRow.getValueAsDouble(index);
+                put(BinaryRowFormat.TAG_DOUBLE);
+                putLong(Double.doubleToRawLongBits(value));
+                return;
+            }
+        }
+        catch (final NumberFormatException e) {
+            // kept as text
+        }
+
+        if (type == ColumnType.DATE) {
+            final Date date = parseDate(dataRow, index, metadata.getDateFormat(index), dateFormats);
+            if (date != null) {
+                put(BinaryRowFormat.TAG_VARINT);
+                putVarLong(BinaryRowFormat.zigZag(date.getTime()));
+                return;
+            }
+        }
+
+        final String value = dataRow.getValueAsString(index);
+        if (type == ColumnType.BOOLEAN) {
+            if ("true".equalsIgnoreCase(value)) {
+                put(BinaryRowFormat.TAG_TRUE);
+                return;
+            }
+            if ("false".equalsIgnoreCase(value)) {
+                put(BinaryRowFormat.TAG_FALSE);
+                return;
+            }
+        }
+        if (value == null) {
+            put(BinaryRowFormat.TAG_NULL);
+            return;
+        }
+        final byte[] bytes = value.getBytes(BinaryRowFormat.UTF8);
+        put(BinaryRowFormat.TAG_STRING);
+        putVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, body, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Parses a date strictly, returns null if the value is not a date in
+     * format. dateFormats caches the parser of each column.
+     */
+    static Date parseDate(final DataRow dataRow, final int index, final String format,
+            final SimpleDateFormat[] dateFormats) {
+        if (dataRow instanceof TypedDataRow) {
+            try {
+                return dataRow.getValueAsDate(index, format);
+            }
+            catch (final DataRowException e) {
+                return null;
+            }
+        }
+        if (dateFormats[index] == null) {
+            dateFormats[index] = new SimpleDateFormat(format);
+            dateFormats[index].setLenient(false);
+        }
+        final String value = dataRow.getValueAsString(index);
+        final ParsePosition position = new ParsePosition(0);
+        final Date date = dateFormats[index].parse(value, position);
+        if (date == null || position.getIndex() != value.length()) {
+            return null;
+        }
+        // the reader formats the date again, keep values that wouldn't survive as text
+        return dateFormats[index].format(date).equals(value) ? date : null;
+    }
+
+    private void put(final int b) {
+        ensureCapacity(1);
+        body[length++] = (byte) b;
+    }
+
+    private void putVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7fL) != 0) {
+            body[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        body[length++] = (byte) value;
+    }
+
+    private void putLong(final long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            body[length++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void ensureCapacity(final int count) {
+        if (length + count > body.length) {
+            body = Arrays.copyOf(body, Math.max(length + count, body.length * 2));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryDataWriter(" + getFileName() + ")";
+    }
+}
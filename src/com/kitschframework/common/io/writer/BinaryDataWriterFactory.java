@@ -0,0 +1,26 @@
+/**
+ * 
+ */
+package com.kitschframework.common.io.writer;
+
+import com.kitschframework.common.io.DataRowException;
+
+/**
+ * BinaryDataWriterFactory
+ * 
+ * Constructs a BinaryDataWriter, read the files back with
+ * BinaryDataReaderFactory
+ * 
+ * 
+ *
+ */
+public class BinaryDataWriterFactory extends DataWriterFactory {
+
+	/**
+	 * Returns a BinaryDataWriter
+	 */
+	@Override
+	public DataWriter create(String fileName) throws DataRowException {
+		return new BinaryDataWriter(fileName);
+	}
+}
@@ -0,0 +1,306 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.ColumnarFormat;
+import com.kitschframework.common.io.ColumnarFormat.ChunkInfo;
+import com.kitschframework.common.io.ColumnarFormat.ColumnValues;
+import com.kitschframework.common.io.ColumnarFormat.RowGroupInfo;
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+import com.kitschframework.common.io.UncheckedDataRowException;
+
+/**
+ * ColumnarDataWriter
+ *
+ * Writes rows in the columnar format of ColumnarFormat, read back with
+ * ColumnarDataReader. Rows are buffered column by column until a row group is
+ * full, then each column is encoded, compressed and written as one chunk, and
+ * its null count and min/max go to the footer written by close. A file that
+ * isn't closed has no footer and can't be read.
+ *
+ * A row with more values than the first row has columns is rejected with an
+ * UncheckedDataRowException. If writing to the file fails the remaining rows
+ * are ignored and close() throws an UncheckedDataRowException with the cause,
+ * which getFailure() also returns, the file is left without a footer.
+ *
+ * As with BinaryDataWriter the metadata of the first row, column types
+ * included, decides how the columns are stored. Typed columns are stored as
+ * numbers, STRING columns as text.
+ *
+ * Usage:
+ * <code>
+ * DataRowMetadata metadata = new DataRowMetadata(new String[] { "id", "country", "price" });
+ * metadata.setColumnType("id", ColumnType.LONG);
+ * metadata.setColumnType("price", ColumnType.DOUBLE);
+ * DataWriter writer = new ColumnarDataWriter("items.kcol");
+ * ...
+ * writer.close();
+ * </code>
+ *
+ */
+public class ColumnarDataWriter implements DataWriter
+{
+    public static final int         DEFAULT_ROW_GROUP_SIZE = 64 * 1024;
+
+    private final String            fileName;
+    private final int               rowGroupSize;
+
+    private DataOutputStream        output;
+    private long                    position;
+    private final List<RowGroupInfo> rowGroups            = new ArrayList<RowGroupInfo>();
+
+    private DataRowMetadata         metadata;
+    private ColumnValues[]          columns;
+    private SimpleDateFormat[]      dateFormats;
+    private int                     rowCount;
+    private IOException             failure;
+
+    public ColumnarDataWriter(final String fileName) throws DataRowException {
+        this(fileName, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    /**
+     * rowGroupSize is the number of rows of a row group, the unit in which a
+     * reader skips rows
+     */
+    public ColumnarDataWriter(final String fileName, final int rowGroupSize) throws DataRowException {
+        if (rowGroupSize <= 0) {
+            throw new IllegalArgumentException("Row group size must be positive: " + rowGroupSize);
+        }
+        this.fileName = fileName;
+        this.rowGroupSize = rowGroupSize;
+        reset();
+    }
+
+    /**
+     * Starts the file again, discarding what was written
+     */
+    @Override
+    public void reset() throws DataRowException {
+        if (output != null) {
+            try {
+                output.close();
+            }
+            catch (final IOException e) {
+                // the file is truncated below
+            }
+        }
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 64 * 1024));
+            output.write(ColumnarFormat.MAGIC);
+        }
+        catch (final IOException e) {
+            throw new DataRowException(e);
+        }
+        position = ColumnarFormat.MAGIC.length;
+        rowGroups.clear();
+        metadata = null;
+        columns = null;
+        rowCount = 0;
+        failure = null;
+    }
+
+    /**
+     * Buffers the row, writing the row group when it is full. Throws an
+     * UncheckedDataRowException if the row has more values than the first row
+     * has columns.
+     */
+    @Override
+    public void writeDataRow(final DataRow dataRow) {
+        if (failure != null) {
+            return;
+        }
+        if (metadata == null) {
+            start(dataRow.getMetadata());
+        }
+        final int count = dataRow.getValueCount();
+        if (count > columns.length) {
+            throw new UncheckedDataRowException(new DataRowException("Row has " + count
+                    + " values, the first row of " + fileName + " has " + columns.length + " columns"));
+        }
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                if (i < count) {
+                    add(dataRow, i);
+                }
+                else {
+                    columns[i].addNull();
+                }
+            }
+            if (++rowCount == rowGroupSize) {
+                writeRowGroup();
+            }
+        }
+        catch (final IOException e) {
+            failure = e;
+        }
+    }
+
+    private void start(final DataRowMetadata metadata) {
+        this.metadata = metadata;
+        final int count = metadata.getKeyCount();
+        columns = new ColumnValues[count];
+        dateFormats = new SimpleDateFormat[count];
+        for (int i = 0; i < count; i++) {
+            columns[i] = new ColumnValues(ColumnarFormat.getKind(metadata.getColumnType(i)), rowGroupSize);
+        }
+    }
+
+    private void add(final DataRow dataRow, final int index) {
+        final ColumnValues values = columns[index];
+        final ColumnType type = metadata.getColumnType(index);
+        if (type == ColumnType.STRING) {
+            values.addString(dataRow.getValueAsString(index));
+            return;
+        }
+        if (dataRow.isNull(index)) {
+            values.addNull();
+            return;
+        }
+
+        if (values.getKind() != ColumnarFormat.KIND_STRING) {
+            try {
+                switch (type) {
+                    case LONG:
+                    case INT:
+                        values.addLong(dataRow.getValueAsLong(index));
+                        return;
+                    case DOUBLE:
+                        values.addDouble(dataRow.getValueAsDouble(index));
+                        return;
+                    case BOOLEAN:
+                        final String value = dataRow.getValueAsString(index);
+                        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+                            values.addLong("true".equalsIgnoreCase(value) ? 1 : 0);
+                            return;
+                        }
+                        break;
+                    default:
+                        final Date date = BinaryDataWriter.parseDate(dataRow, index, metadata.getDateFormat(index),
+                                dateFormats);
+                        if (date != null) {
+                            values.addLong(date.getTime());
+                            return;
+                        }
+                }
+            }
+            catch (final NumberFormatException e) {
+                // the chunk is kept as text
+            }
+            values.convertToStrings(type == ColumnType.DATE ? getDateFormat(index) : null);
+        }
+        values.addString(dataRow.getValueAsString(index));
+    }
+
+    private SimpleDateFormat getDateFormat(final int index) {
+        if (dateFormats[index] == null) {
+            dateFormats[index] = new SimpleDateFormat(metadata.getDateFormat(index));
+            dateFormats[index].setLenient(false);
+        }
+        return dateFormats[index];
+    }
+
+    private void writeRowGroup() throws IOException {
+        if (rowCount == 0) {
+            return;
+        }
+        final ChunkInfo[] chunks = new ChunkInfo[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            final ChunkInfo chunk = new ChunkInfo();
+            final byte[] bytes = ColumnarFormat.encode(columns[i], chunk);
+            chunk.setOffset(position);
+            output.write(bytes);
+            position += bytes.length;
+            chunks[i] = chunk;
+            columns[i].clear(ColumnarFormat.getKind(metadata.getColumnType(i)));
+        }
+        rowGroups.add(new RowGroupInfo(rowCount, chunks));
+        rowCount = 0;
+    }
+
+    /**
+     * Writes the last row group and the footer. Throws an
+     * UncheckedDataRowException if writing failed, now or while writing the
+     * rows, as the file can't be read.
+     */
+    @Override
+    public void close() {
+        if (output == null) {
+            return;
+        }
+        try {
+            if (failure != null) {
+                output.close();
+            }
+            else {
+                writeAndClose();
+            }
+        }
+        catch (final IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+            else {
+                failure.addSuppressed(e);
+            }
+        }
+        output = null;
+        if (failure != null) {
+            throw new UncheckedDataRowException(new DataRowException("Failed to write " + fileName, failure));
+        }
+    }
+
+    private void writeAndClose() throws IOException {
+        try {
+            if (metadata != null) {
+                writeRowGroup();
+            }
+            final ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            ColumnarFormat.writeFooter(new DataOutputStream(footer),
+                    metadata == null ? new DataRowMetadata() : metadata, rowGroups);
+            footer.writeTo(output);
+            output.writeInt(footer.size());
+            output.write(ColumnarFormat.MAGIC);
+        }
+        catch (final IOException e) {
+            try {
+                output.close();
+            }
+            catch (final IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        output.close();
+    }
+
+    /**
+     * Returns the error that made the writer ignore the remaining rows, or null
+     */
+    public final IOException getFailure() {
+        return failure;
+    }
+
+    public final String getFileName() {
+        return fileName;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarDataWriter(" + fileName + ")";
+    }
+}
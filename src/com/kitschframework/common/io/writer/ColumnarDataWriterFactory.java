@@ -0,0 +1,26 @@
+/**
+ * 
+ */
+package com.kitschframework.common.io.writer;
+
+import com.kitschframework.common.io.DataRowException;
+
+/**
+ * ColumnarDataWriterFactory
+ * 
+ * Constructs a ColumnarDataWriter, read the files back with
+ * ColumnarDataReaderFactory
+ * 
+ * 
+ *
+ */
+public class ColumnarDataWriterFactory extends DataWriterFactory {
+
+	/**
+	 * Returns a ColumnarDataWriter
+	 */
+	@Override
+	public DataWriter create(String fileName) throws DataRowException {
+		return new ColumnarDataWriter(fileName);
+	}
+}
@@ -0,0 +1,30 @@
+/**
+ * 
+ */
+package com.kitschframework.common.io.writer;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.kitschframework.common.io.DataRow;
+
+/**
+ * DataRowSerializer
+ * 
+ * Turns DataRows into text, independently of where the text goes, so the
+ * same format can be written to a local file or to S3.
+ * 
+ */
+public interface DataRowSerializer {
+
+    /**
+     * Writes dataRow, preceded by the header if it is the first row since the
+     * serializer was created or reset
+     */
+    public abstract void serializeDataRow(DataRow dataRow, Writer writer) throws IOException;
+
+    /**
+     * Starts a new output, the next row writes the header again
+     */
+    public abstract void reset();
+}
@@ -3,23 +3,30 @@
  */
 package com.kitschframework.common.io.writer;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.util.zip.GZIPOutputStream;
 
 import com.kitschframework.common.io.DataRow;
 import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.compress.BlockGzipIndex;
+import com.kitschframework.common.io.compress.BlockGzipOutputStream;
+import com.kitschframework.common.io.compress.CompressionCodecs;
 
 /**
  * FileDataWriter 
  * 
  * Abstract class that writes to a local file system file
  * 
+ * Text formats write through getWriter, binary formats through
+ * getOutputStream, a subclass must only use one of them.
+ * 
  * 
  *
  */
@@ -27,6 +34,8 @@ public abstract class FileDataWriter implements DataWriter {
 
 	private int writeCount = 0;
 	private String fileName;
+	private DataOutputStream output;
+	private OutputStream compressedOutput;
 	private BufferedWriter writer;
 	
 	public FileDataWriter(String fileName) throws DataRowException {
@@ -54,18 +63,15 @@ public abstract class FileDataWriter implements DataWriter {
 	@Override
 	public final void reset() throws DataRowException {
 		try {
-			// If the provided input file is a GZIP file pass the FileInputStream to a GZIPInputStream.
+			// If the provided output file has the extension of a codec compress it, .gz files are
+			// blocked gzip, compressed in parallel and still readable by gunzip.
+			// The block index of a previous file is removed, close writes the new one.
+			new File(fileName + BlockGzipIndex.INDEX_SUFFIX).delete();
 			FileOutputStream fileOutput = new FileOutputStream(fileName);
-			OutputStream output = null;
-			
-			if (fileName.endsWith(".gz")) {
-			    output = new GZIPOutputStream(fileOutput);
-			}
-			else {
-			    output = fileOutput;
-			}
+			compressedOutput = CompressionCodecs.compress(fileName, fileOutput);
 			
-			writer = new BufferedWriter(new OutputStreamWriter(new DataOutputStream(output)));
+			this.output = new DataOutputStream(new BufferedOutputStream(compressedOutput));
+			writer = new BufferedWriter(new OutputStreamWriter(this.output));
 		}
 	    catch (FileNotFoundException e) {
 			throw new DataRowException(e);
@@ -85,12 +91,37 @@ public abstract class FileDataWriter implements DataWriter {
 		catch (IOException e) {
 			//TODO what do you do when you get this exception?
 			e.printStackTrace();
+			return;
+		}
+		writeBlockIndex();
+	}
+
+	/**
+	 * Writes the block index of a blocked gzip file next to it, so readers
+	 * seek without scanning the file. Readers rebuild a missing index, a
+	 * failure is ignored.
+	 */
+	private void writeBlockIndex() {
+		if (compressedOutput instanceof BlockGzipOutputStream) {
+			try {
+				((BlockGzipOutputStream) compressedOutput).getIndex().write(fileName);
+			}
+			catch (IOException e) {
+				// readers build the index from the file
+			}
 		}
 	}
 
 	protected final BufferedWriter getWriter() {
 		return writer;
 	}
+
+	/**
+	 * Returns the stream under getWriter, for binary formats
+	 */
+	protected final DataOutputStream getOutputStream() {
+		return output;
+	}
 	
 	public final String getFileName() {
 		return fileName;
@@ -0,0 +1,154 @@
+/**
+ *
+ */
+package com.kitschframework.common.io.writer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.UncheckedDataRowException;
+import com.kitschframework.common.io.compress.CompressionCodecs;
+import com.kitschframework.common.s3.S3Bucket;
+import com.kitschframework.common.s3.S3Client;
+import com.kitschframework.common.s3.S3MultipartOutputStream;
+
+/**
+ * S3DataWriter
+ *
+ * Writes rows straight to an S3 object instead of a local file that is
+ * uploaded afterwards. The serialized rows are streamed into a multipart
+ * upload whose parts are sent concurrently while later rows are written, see
+ * S3MultipartOutputStream. Keys ending in the extension of a codec (.gz,
+ * .lz4, .zst, ...) are compressed like FileDataWriter does.
+ *
+ * The object only appears once close() completes the upload. If writing a row
+ * or uploading a part fails the upload is dropped, the remaining rows are
+ * ignored and close() throws an UncheckedDataRowException with the cause,
+ * which getFailure() also returns.
+ *
+ * Usage:
+ * <code>
+ * DataWriter writer = new S3DataWriter(client, bucket, "out/part-00000.gz", new TabDelimitedDataRowSerializer());
+ * for (DataRow row : rows) {
+ *     writer.writeDataRow(row);
+ * }
+ * writer.close();
+ * </code>
+ *
+ */
+public class S3DataWriter implements DataWriter {
+
+    private final S3Client          client;
+    private final S3Bucket          bucket;
+    private final String            s3FileName;
+    private final DataRowSerializer serializer;
+    private final int               partSize;
+    private final int               maxPartsInFlight;
+
+    private S3MultipartOutputStream upload;
+    private BufferedWriter          writer;
+    private IOException             failure;
+
+    public S3DataWriter(final S3Client client, final S3Bucket bucket, final String s3FileName,
+            final DataRowSerializer serializer) throws DataRowException {
+        this(client, bucket, s3FileName, serializer, S3MultipartOutputStream.DEFAULT_PART_SIZE,
+                S3MultipartOutputStream.DEFAULT_PARTS_IN_FLIGHT);
+    }
+
+    public S3DataWriter(final S3Client client, final S3Bucket bucket, final String s3FileName,
+            final DataRowSerializer serializer, final int partSize, final int maxPartsInFlight)
+            throws DataRowException {
+        this.client = client;
+        this.bucket = bucket;
+        this.s3FileName = s3FileName;
+        this.serializer = serializer;
+        this.partSize = partSize;
+        this.maxPartsInFlight = maxPartsInFlight;
+        reset();
+    }
+
+    /**
+     * Starts the object over, an upload in progress is dropped
+     */
+    @Override
+    public final void reset() throws DataRowException {
+        if (upload != null) {
+            try {
+                upload.abort();
+            }
+            catch (final IOException e) {
+                throw new DataRowException("Failed to drop the upload of " + bucket + "/" + s3FileName, e);
+            }
+        }
+        failure = null;
+        serializer.reset();
+        try {
+            upload = new S3MultipartOutputStream(client, bucket, s3FileName, partSize, maxPartsInFlight);
+
+            final OutputStream output = CompressionCodecs.compress(s3FileName, upload);
+            writer = new BufferedWriter(new OutputStreamWriter(output));
+        }
+        catch (final IOException e) {
+            throw new DataRowException(e);
+        }
+    }
+
+    @Override
+    public final void writeDataRow(final DataRow dataRow) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            serializer.serializeDataRow(dataRow, writer);
+        }
+        catch (final IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Flushes the last rows and completes the upload. Throws an
+     * UncheckedDataRowException if the upload failed, now or while writing
+     * the rows, as nothing was written to S3.
+     */
+    @Override
+    public final void close() {
+        if (failure == null) {
+            try {
+                writer.close();
+            }
+            catch (final IOException e) {
+                fail(e);
+            }
+        }
+        if (failure != null) {
+            throw new UncheckedDataRowException(new DataRowException("Failed to upload " + bucket + "/"
+                    + s3FileName, failure));
+        }
+    }
+
+    /**
+     * Returns the error that made the writer drop the upload, or null
+     */
+    public final IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Drops the upload, DataWriter.writeDataRow can't throw a checked
+     * exception so e is thrown by close
+     */
+    private void fail(final IOException e) {
+        failure = e;
+        upload.abort(e);
+    }
+
+    @Override
+    public String toString() {
+        return "S3DataWriter(" + bucket + "/" + s3FileName + ")";
+    }
+}
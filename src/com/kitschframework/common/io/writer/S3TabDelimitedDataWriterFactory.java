@@ -0,0 +1,34 @@
+/**
+ * 
+ */
+package com.kitschframework.common.io.writer;
+
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.s3.S3ClientRegistry;
+import com.kitschframework.common.s3.S3Path;
+
+/**
+ * S3TabDelimitedDataWriterFactory
+ * 
+ * Constructs an S3DataWriter writing tab delimited rows to a file name of the
+ * form s3://bucket/key, through the shared client of S3ClientRegistry
+ * 
+ */
+public class S3TabDelimitedDataWriterFactory extends DataWriterFactory {
+
+	/**
+	 * Returns an S3DataWriter
+	 */
+	@Override
+	public DataWriter create(String fileName) throws DataRowException {
+		final S3Path path;
+		try {
+			path = S3Path.parse(fileName);
+		}
+		catch (IllegalArgumentException e) {
+			throw new DataRowException(e);
+		}
+		return new S3DataWriter(S3ClientRegistry.getClient(), path.getBucket(), path.getKey(),
+				new TabDelimitedDataRowSerializer());
+	}
+}
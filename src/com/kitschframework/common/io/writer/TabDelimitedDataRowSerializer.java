@@ -0,0 +1,67 @@
+/**
+ * 
+ */
+package com.kitschframework.common.io.writer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.kitschframework.common.io.ColumnHandle;
+import com.kitschframework.common.io.DataRow;
+
+/**
+ * TabDelimitedDataRowSerializer
+ * 
+ * Writes a header line with the columns of the first row, then one tab
+ * delimited line per row with those columns in the same order
+ * 
+ */
+public class TabDelimitedDataRowSerializer implements DataRowSerializer {
+
+    private boolean                  hasOutputHeaderRow;
+
+    private final List<ColumnHandle> header = new ArrayList<ColumnHandle>();
+
+    @Override
+    public void serializeDataRow(final DataRow dataRow, final Writer writer) throws IOException {
+        if (!hasOutputHeaderRow) {
+            writeHeaderRow(dataRow, writer);
+            hasOutputHeaderRow = true;
+        }
+
+        boolean isFirst = true;
+        for (final ColumnHandle column : header) {
+            if (!isFirst) {
+                writer.write('\t');
+            }
+            final String value = dataRow.getValueAsString(column);
+            if (value != null) {
+                writer.write(value);
+            }
+            isFirst = false;
+        }
+        writer.write('\n');
+    }
+
+    @Override
+    public void reset() {
+        hasOutputHeaderRow = false;
+        header.clear();
+    }
+
+    private void writeHeaderRow(final DataRow dataRow, final Writer writer) throws IOException {
+        boolean isFirst = true;
+        for (final String headerString : dataRow) {
+            header.add(dataRow.getMetadata().handle(headerString));
+
+            if (!isFirst) {
+                writer.write('\t');
+            }
+            writer.write(headerString);
+            isFirst = false;
+        }
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,165 @@
+package com.kitschframework.common.s3;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * AwsS3Client
+ *
+ * S3Client backed by the AWS SDK. The no-arg constructor reads the
+ * credentials from the aws.accessKeyId and aws.secretKey system properties,
+ * or failing that the AWS_ACCESS_KEY_ID and AWS_SECRET_ACCESS_KEY environment
+ * variables. The legacy AWS_SECRET_KEY variable is read when
+ * AWS_SECRET_ACCESS_KEY isn't set.
+ *
+ * Each AwsS3Client has its own HTTP connection pool, share one through
+ * S3ClientRegistry rather than creating one per reader.
+ *
+ */
+public class AwsS3Client implements S3Client
+{
+    public static final String ACCESS_KEY_PROPERTY   = "aws.accessKeyId";
+    public static final String SECRET_KEY_PROPERTY   = "aws.secretKey";
+
+    public static final String ACCESS_KEY_ENV        = "AWS_ACCESS_KEY_ID";
+    public static final String SECRET_KEY_ENV        = "AWS_SECRET_ACCESS_KEY";
+    public static final String LEGACY_SECRET_KEY_ENV = "AWS_SECRET_KEY";
+
+    private final AmazonS3     s3;
+
+    public AwsS3Client() {
+        this(new S3ClientConfig());
+    }
+
+    public AwsS3Client(S3ClientConfig config) {
+        this(new BasicAWSCredentials(lookup(ACCESS_KEY_PROPERTY, ACCESS_KEY_ENV),
+                lookup(SECRET_KEY_PROPERTY, SECRET_KEY_ENV, LEGACY_SECRET_KEY_ENV)), config);
+    }
+
+    public AwsS3Client(AWSCredentials credentials) {
+        this(credentials, new S3ClientConfig());
+    }
+
+    public AwsS3Client(AWSCredentials credentials, S3ClientConfig config) {
+        this(new AmazonS3Client(credentials, config.toClientConfiguration()));
+    }
+
+    public AwsS3Client(AmazonS3 s3) {
+        this.s3 = s3;
+    }
+
+    @Override
+    public S3Object getObject(S3Bucket bucket, String simpleFileName) {
+        return new S3Object(s3.getObject(bucket.getName(), simpleFileName).getObjectContent());
+    }
+
+    @Override
+    public S3Object getObject(S3Bucket bucket, String simpleFileName, long start, long end) {
+        GetObjectRequest request = new GetObjectRequest(bucket.getName(), simpleFileName);
+        request.setRange(start, end);
+        return new S3Object(s3.getObject(request).getObjectContent());
+    }
+
+    @Override
+    public S3ObjectMetadata getObjectMetadata(S3Bucket bucket, String simpleFileName) {
+        ObjectMetadata metadata = s3.getObjectMetadata(bucket.getName(), simpleFileName);
+        Date lastModified = metadata.getLastModified();
+        return new S3ObjectMetadata(metadata.getContentLength(), metadata.getETag(),
+                lastModified == null ? 0 : lastModified.getTime());
+    }
+
+    @Override
+    public List<String> listObjects(S3Bucket bucket, String prefix) {
+        List<String> keys = new ArrayList<String>();
+        ObjectListing listing = s3.listObjects(bucket.getName(), prefix);
+        while (true) {
+            for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                keys.add(summary.getKey());
+            }
+            if (!listing.isTruncated()) {
+                break;
+            }
+            listing = s3.listNextBatchOfObjects(listing);
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    @Override
+    public String initiateMultipartUpload(S3Bucket bucket, String simpleFileName) {
+        return s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket.getName(), simpleFileName))
+                .getUploadId();
+    }
+
+    @Override
+    public String uploadPart(S3Bucket bucket, String simpleFileName, String uploadId, int partNumber, byte[] data,
+            int length) {
+        UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(bucket.getName())
+                .withKey(simpleFileName)
+                .withUploadId(uploadId)
+                .withPartNumber(partNumber)
+                .withInputStream(new ByteArrayInputStream(data, 0, length))
+                .withPartSize(length);
+        return s3.uploadPart(request).getPartETag().getETag();
+    }
+
+    @Override
+    public void completeMultipartUpload(S3Bucket bucket, String simpleFileName, String uploadId,
+            List<String> partETags) {
+        List<PartETag> parts = new ArrayList<PartETag>(partETags.size());
+        for (int i = 0; i < partETags.size(); i++) {
+            parts.add(new PartETag(i + 1, partETags.get(i)));
+        }
+        s3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket.getName(), simpleFileName, uploadId,
+                parts));
+    }
+
+    @Override
+    public void abortMultipartUpload(S3Bucket bucket, String simpleFileName, String uploadId) {
+        s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucket.getName(), simpleFileName, uploadId));
+    }
+
+    protected final AmazonS3 getAmazonS3() {
+        return s3;
+    }
+
+    private static String lookup(String property, String env) {
+        return lookup(property, env, null);
+    }
+
+    /**
+     * Returns the system property, or else the environment variable env, or
+     * else legacyEnv when not null
+     */
+    private static String lookup(String property, String env, String legacyEnv) {
+        String value = System.getProperty(property);
+        if (value == null) {
+            value = System.getenv(env);
+        }
+        if (value == null && legacyEnv != null) {
+            value = System.getenv(legacyEnv);
+        }
+        if (value == null) {
+            throw new IllegalStateException("No AWS credentials, set " + property + " or " + env);
+        }
+        return value;
+    }
+}
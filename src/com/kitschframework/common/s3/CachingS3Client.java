@@ -0,0 +1,415 @@
+package com.kitschframework.common.s3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CachingS3Client
+ *
+ * S3Client that keeps a copy of the objects it downloads in a local directory.
+ * Every getObject still sends a HEAD to the wrapped client, the copy is only
+ * used while its ETag, modification time and size match, otherwise the object
+ * is downloaded again. Hits are read through a memory-mapped view of the copy.
+ *
+ * The directory is bounded to maxBytes, the least recently used copies are
+ * deleted first. Copies and their recency survive a restart, so jobs reading
+ * the same files several times a day share the cache. Objects larger than
+ * maxBytes, ranged reads and uploads go straight to the wrapped client.
+ *
+ * Usage:
+ * <code>
+ * S3Client client = new CachingS3Client(new AwsS3Client(), new File("/mnt/s3cache"), 20L << 30);
+ * DataReader reader = new S3DataReader(client, bucket, "dim/country.gz", parser);
+ * </code>
+ *
+ */
+public class CachingS3Client implements S3Client
+{
+    private static final Charset     UTF8            = Charset.forName("UTF-8");
+
+    private static final String      DATA_SUFFIX     = ".data";
+    private static final String      METADATA_SUFFIX = ".properties";
+    private static final String      TEMP_SUFFIX     = ".tmp";
+
+    private final S3Client           client;
+    private final File               directory;
+    private final long               maxBytes;
+
+    /** Cached copies by file name, least recently used first */
+    private final Map<String, Entry> entries         = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long                     totalBytes;
+
+    private final AtomicLong         hits            = new AtomicLong();
+    private final AtomicLong         misses          = new AtomicLong();
+    private final AtomicLong         bytesSaved      = new AtomicLong();
+
+    public CachingS3Client(final S3Client client, final File directory, final long maxBytes) throws IOException {
+        this.client = client;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create cache directory " + directory);
+        }
+        load();
+    }
+
+    @Override
+    public S3Object getObject(final S3Bucket bucket, final String simpleFileName) throws IOException {
+        final S3ObjectMetadata metadata = client.getObjectMetadata(bucket, simpleFileName);
+        final String name = getName(bucket, simpleFileName);
+
+        final InputStream cached = openCached(name, metadata);
+        if (cached != null) {
+            hits.incrementAndGet();
+            bytesSaved.addAndGet(metadata.getLength());
+            return new S3Object(cached);
+        }
+
+        misses.incrementAndGet();
+        if (metadata.getLength() > maxBytes) {
+            return client.getObject(bucket, simpleFileName);
+        }
+        return new S3Object(download(bucket, simpleFileName, name, metadata));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Ranges are not cached, they are always read from the wrapped client.
+     */
+    @Override
+    public S3Object getObject(final S3Bucket bucket, final String simpleFileName, final long start, final long end)
+            throws IOException {
+        return client.getObject(bucket, simpleFileName, start, end);
+    }
+
+    @Override
+    public S3ObjectMetadata getObjectMetadata(final S3Bucket bucket, final String simpleFileName)
+            throws IOException {
+        return client.getObjectMetadata(bucket, simpleFileName);
+    }
+
+    @Override
+    public List<String> listObjects(final S3Bucket bucket, final String prefix) throws IOException {
+        return client.listObjects(bucket, prefix);
+    }
+
+    @Override
+    public String initiateMultipartUpload(final S3Bucket bucket, final String simpleFileName) throws IOException {
+        return client.initiateMultipartUpload(bucket, simpleFileName);
+    }
+
+    @Override
+    public String uploadPart(final S3Bucket bucket, final String simpleFileName, final String uploadId,
+            final int partNumber, final byte[] data, final int length) throws IOException {
+        return client.uploadPart(bucket, simpleFileName, uploadId, partNumber, data, length);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * A cached copy of the previous version is dropped by the next getObject,
+     * its ETag no longer matches.
+     */
+    @Override
+    public void completeMultipartUpload(final S3Bucket bucket, final String simpleFileName, final String uploadId,
+            final List<String> partETags) throws IOException {
+        client.completeMultipartUpload(bucket, simpleFileName, uploadId, partETags);
+    }
+
+    @Override
+    public void abortMultipartUpload(final S3Bucket bucket, final String simpleFileName, final String uploadId)
+            throws IOException {
+        client.abortMultipartUpload(bucket, simpleFileName, uploadId);
+    }
+
+    /**
+     * Returns the number of getObject calls served from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of getObject calls that downloaded the object
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of bytes served from the cache instead of downloaded
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * Returns the size of the cached copies in bytes
+     */
+    public synchronized long getCachedBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Opens the copy named name if it is still current, a stale copy is
+     * deleted. The copy is opened under the lock, an eviction by another
+     * thread can't delete it in between and an open copy stays readable once
+     * deleted.
+     */
+    private synchronized InputStream openCached(final String name, final S3ObjectMetadata metadata) {
+        final Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.metadata.isSameVersion(metadata) || !entry.data.isFile()) {
+            remove(name);
+            return null;
+        }
+        final InputStream input;
+        try {
+            input = open(entry);
+        }
+        catch (final IOException e) {
+            // downloaded again
+            remove(name);
+            return null;
+        }
+        // the modification time of the copy keeps the recency across restarts
+        entry.data.setLastModified(System.currentTimeMillis());
+        return input;
+    }
+
+    /**
+     * Copies an object into the cache and opens the copy, which replaces any
+     * previous one once it is complete
+     */
+    private InputStream download(final S3Bucket bucket, final String simpleFileName, final String name,
+            final S3ObjectMetadata metadata) throws IOException {
+        final File temp = File.createTempFile(name, TEMP_SUFFIX, directory);
+        try {
+            long length = 0;
+            try (InputStream input = client.getObject(bucket, simpleFileName).getDataStream();
+                    OutputStream output = new FileOutputStream(temp)) {
+                final byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                    length += read;
+                }
+            }
+            if (length != metadata.getLength()) {
+                throw new IOException("Downloaded " + length + " bytes of " + bucket + "/" + simpleFileName
+                        + ", expected " + metadata.getLength());
+            }
+
+            final Properties properties = new Properties();
+            properties.setProperty("key", bucket + "/" + simpleFileName);
+            properties.setProperty("length", Long.toString(metadata.getLength()));
+            properties.setProperty("lastModified", Long.toString(metadata.getLastModified()));
+            if (metadata.getETag() != null) {
+                properties.setProperty("eTag", metadata.getETag());
+            }
+
+            synchronized (this) {
+                remove(name);
+                final Entry entry = new Entry(new File(directory, name + DATA_SUFFIX), metadata);
+                try (OutputStream output = new FileOutputStream(new File(directory, name + METADATA_SUFFIX))) {
+                    properties.store(output, null);
+                }
+                if (!temp.renameTo(entry.data)) {
+                    new File(directory, name + METADATA_SUFFIX).delete();
+                    throw new IOException("Can't rename " + temp + " to " + entry.data);
+                }
+                entries.put(name, entry);
+                totalBytes += metadata.getLength();
+                evict();
+                return open(entry);
+            }
+        }
+        finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Deletes the least recently used copies until the cache fits in maxBytes
+     */
+    private void evict() {
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            final Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            delete(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private void remove(final String name) {
+        final Entry entry = entries.remove(name);
+        if (entry != null) {
+            delete(name, entry);
+        }
+    }
+
+    private void delete(final String name, final Entry entry) {
+        totalBytes -= entry.metadata.getLength();
+        entry.data.delete();
+        new File(directory, name + METADATA_SUFFIX).delete();
+    }
+
+    /**
+     * Reads back the copies left by a previous run, least recently used first,
+     * and deletes incomplete ones
+     */
+    private void load() throws IOException {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Can't list cache directory " + directory);
+        }
+
+        final List<Entry> loaded = new ArrayList<Entry>();
+        for (final File file : files) {
+            final String fileName = file.getName();
+            if (fileName.endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            }
+            else if (fileName.endsWith(METADATA_SUFFIX)) {
+                final String name = fileName.substring(0, fileName.length() - METADATA_SUFFIX.length());
+                final Entry entry = readEntry(name, file);
+                if (entry == null) {
+                    file.delete();
+                    new File(directory, name + DATA_SUFFIX).delete();
+                }
+                else {
+                    loaded.add(entry);
+                }
+            }
+        }
+
+        Collections.sort(loaded, (a, b) -> Long.compare(a.data.lastModified(), b.data.lastModified()));
+        for (final Entry entry : loaded) {
+            final String fileName = entry.data.getName();
+            entries.put(fileName.substring(0, fileName.length() - DATA_SUFFIX.length()), entry);
+            totalBytes += entry.metadata.getLength();
+        }
+        evict();
+    }
+
+    private Entry readEntry(final String name, final File metadataFile) {
+        final Properties properties = new Properties();
+        try (InputStream input = new FileInputStream(metadataFile)) {
+            properties.load(input);
+            final long length = Long.parseLong(properties.getProperty("length"));
+            final long lastModified = Long.parseLong(properties.getProperty("lastModified"));
+            final File data = new File(directory, name + DATA_SUFFIX);
+            if (data.length() != length) {
+                return null;
+            }
+            return new Entry(data, new S3ObjectMetadata(length, properties.getProperty("eTag"), lastModified));
+        }
+        catch (final IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Opens a copy, through a memory-mapped view if it fits in one
+     */
+    private static InputStream open(final Entry entry) throws IOException {
+        final long length = entry.metadata.getLength();
+        if (length > Integer.MAX_VALUE) {
+            return new FileInputStream(entry.data);
+        }
+        try (FileInputStream input = new FileInputStream(entry.data)) {
+            return new MappedInputStream(input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length));
+        }
+    }
+
+    /**
+     * Names the files of an object after a hash of its bucket and key
+     */
+    private static String getName(final S3Bucket bucket, final String simpleFileName) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(
+                    (bucket.getName() + "/" + simpleFileName).getBytes(UTF8));
+            final StringBuilder name = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry
+    {
+        final File             data;
+        final S3ObjectMetadata metadata;
+
+        Entry(final File data, final S3ObjectMetadata metadata) {
+            this.data = data;
+            this.metadata = metadata;
+        }
+    }
+
+    /**
+     * InputStream over a mapped copy
+     */
+    private static final class MappedInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        MappedInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int count) {
+            if (count == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int read = Math.min(count, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public long skip(final long count) {
+            final int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.kitschframework.common.s3;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InstrumentedS3Client
+ *
+ * S3Client that counts the requests made through another one and measures
+ * their latency. The latency of a GET is the time until the response stream
+ * is available, reading the body is not included.
+ *
+ */
+public class InstrumentedS3Client implements S3Client
+{
+    private final S3Client      client;
+
+    private final AtomicInteger inFlight          = new AtomicInteger();
+    private final AtomicLong    requests          = new AtomicLong();
+    private final AtomicLong    errors            = new AtomicLong();
+    private final AtomicLong    totalLatencyNanos = new AtomicLong();
+    private final AtomicLong    maxLatencyNanos   = new AtomicLong();
+
+    public InstrumentedS3Client(final S3Client client) {
+        this.client = client;
+    }
+
+    /**
+     * Returns the wrapped client
+     */
+    public S3Client getClient() {
+        return client;
+    }
+
+    @Override
+    public S3Object getObject(final S3Bucket bucket, final String simpleFileName) throws IOException {
+        return measure(() -> client.getObject(bucket, simpleFileName));
+    }
+
+    @Override
+    public S3Object getObject(final S3Bucket bucket, final String simpleFileName, final long start, final long end)
+            throws IOException {
+        return measure(() -> client.getObject(bucket, simpleFileName, start, end));
+    }
+
+    @Override
+    public S3ObjectMetadata getObjectMetadata(final S3Bucket bucket, final String simpleFileName)
+            throws IOException {
+        return measure(() -> client.getObjectMetadata(bucket, simpleFileName));
+    }
+
+    @Override
+    public List<String> listObjects(final S3Bucket bucket, final String prefix) throws IOException {
+        return measure(() -> client.listObjects(bucket, prefix));
+    }
+
+    @Override
+    public String initiateMultipartUpload(final S3Bucket bucket, final String simpleFileName) throws IOException {
+        return measure(() -> client.initiateMultipartUpload(bucket, simpleFileName));
+    }
+
+    @Override
+    public String uploadPart(final S3Bucket bucket, final String simpleFileName, final String uploadId,
+            final int partNumber, final byte[] data, final int length) throws IOException {
+        return measure(() -> client.uploadPart(bucket, simpleFileName, uploadId, partNumber, data, length));
+    }
+
+    @Override
+    public void completeMultipartUpload(final S3Bucket bucket, final String simpleFileName, final String uploadId,
+            final List<String> partETags) throws IOException {
+        measure(() -> {
+            client.completeMultipartUpload(bucket, simpleFileName, uploadId, partETags);
+            return null;
+        });
+    }
+
+    @Override
+    public void abortMultipartUpload(final S3Bucket bucket, final String simpleFileName, final String uploadId)
+            throws IOException {
+        measure(() -> {
+            client.abortMultipartUpload(bucket, simpleFileName, uploadId);
+            return null;
+        });
+    }
+
+    /**
+     * Returns the number of requests currently waiting for a response
+     */
+    public int getInFlightRequests() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the number of requests that have completed, including failed ones
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    public double getAverageLatencyMillis() {
+        final long count = requests.get();
+        return count == 0 ? 0 : totalLatencyNanos.get() / (count * 1e6);
+    }
+
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    private <T> T measure(final Request<T> request) throws IOException {
+        inFlight.incrementAndGet();
+        final long start = System.nanoTime();
+        try {
+            return request.call();
+        }
+        catch (final IOException | RuntimeException e) {
+            errors.incrementAndGet();
+            throw e;
+        }
+        finally {
+            final long latency = System.nanoTime() - start;
+            inFlight.decrementAndGet();
+            requests.incrementAndGet();
+            totalLatencyNanos.addAndGet(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+    }
+
+    private interface Request<T>
+    {
+        T call() throws IOException;
+    }
+
+    @Override
+    public String toString() {
+        return "InstrumentedS3Client[requests=" + getRequestCount() + ", inFlight=" + getInFlightRequests()
+                + ", errors=" + getErrorCount() + ", avgLatency=" + String.format("%.1f", getAverageLatencyMillis())
+                + "ms, maxLatency=" + getMaxLatencyMillis() + "ms]";
+    }
+}
@@ -0,0 +1,361 @@
+package com.kitschframework.common.s3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * LocalS3Client
+ *
+ * S3Client serving the files under a root directory, bucket b and key k map
+ * to the file root/b/k. Meant for tests and benchmarks of the S3 read path
+ * without network access.
+ *
+ * To reproduce S3-bound reads every request can wait for a fixed latency
+ * before its first byte, and each response stream can be throttled to a
+ * bandwidth. Like S3, the throttle applies per request, so concurrent ranged
+ * GETs get more throughput than a single stream. Multipart uploads are staged
+ * under root/.uploads and moved into place when they complete.
+ *
+ * Usage:
+ * <code>
+ * S3Client client = new LocalS3Client(new File("/data/s3"), 20, 50 * 1024 * 1024);
+ * DataReader reader = new S3DataReader(client, new S3Bucket("logs"), "2013/01/part-00000.gz", parser);
+ * </code>
+ *
+ */
+public class LocalS3Client implements S3Client
+{
+    private static final String UPLOADS = ".uploads";
+
+    private final File root;
+    private final long latencyMillis;
+    private final long bytesPerSecond;
+
+    public LocalS3Client(final File root) {
+        this(root, 0, 0);
+    }
+
+    /**
+     * @param latencyMillis wait before each request, 0 for none
+     * @param bytesPerSecond bandwidth of each response stream, 0 for unlimited
+     */
+    public LocalS3Client(final File root, final long latencyMillis, final long bytesPerSecond) {
+        this.root = root;
+        this.latencyMillis = latencyMillis;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    @Override
+    public S3Object getObject(final S3Bucket bucket, final String simpleFileName) throws IOException {
+        final File file = getFile(bucket, simpleFileName);
+        waitForLatency();
+        return new S3Object(throttle(new FileInputStream(file)));
+    }
+
+    @Override
+    public S3Object getObject(final S3Bucket bucket, final String simpleFileName, final long start, final long end)
+            throws IOException {
+        final File file = getFile(bucket, simpleFileName);
+        waitForLatency();
+        final FileInputStream input = new FileInputStream(file);
+        try {
+            input.getChannel().position(start);
+        }
+        catch (final IOException e) {
+            input.close();
+            throw e;
+        }
+        return new S3Object(throttle(new RangeInputStream(input, end - start + 1)));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The ETag is made of the modification time and size of the file rather
+     * than its MD5, so it changes whenever the file is rewritten.
+     */
+    @Override
+    public S3ObjectMetadata getObjectMetadata(final S3Bucket bucket, final String simpleFileName)
+            throws IOException {
+        final File file = getFile(bucket, simpleFileName);
+        waitForLatency();
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        final String eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+        return new S3ObjectMetadata(length, eTag, lastModified);
+    }
+
+    @Override
+    public List<String> listObjects(final S3Bucket bucket, final String prefix) throws IOException {
+        final File bucketDirectory = new File(root, bucket.getName());
+        if (!bucketDirectory.isDirectory()) {
+            throw new FileNotFoundException("No such bucket " + bucket + " in " + root);
+        }
+        waitForLatency();
+        final Path base = bucketDirectory.toPath();
+        final List<String> keys = new ArrayList<String>();
+        try (Stream<Path> files = Files.walk(base)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                final String key = base.relativize(file).toString().replace(File.separatorChar, '/');
+                if (key.startsWith(prefix)) {
+                    keys.add(key);
+                }
+            });
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    @Override
+    public String initiateMultipartUpload(final S3Bucket bucket, final String simpleFileName) throws IOException {
+        waitForLatency();
+        final String uploadId = UUID.randomUUID().toString();
+        final File upload = getUploadDirectory(uploadId);
+        if (!upload.mkdirs()) {
+            throw new IOException("Can't create " + upload);
+        }
+        return uploadId;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The part is throttled to bytesPerSecond as a whole, its ETag is the MD5 of
+     * its bytes like on S3.
+     */
+    @Override
+    public String uploadPart(final S3Bucket bucket, final String simpleFileName, final String uploadId,
+            final int partNumber, final byte[] data, final int length) throws IOException {
+        final File upload = getUploadDirectory(uploadId);
+        if (!upload.isDirectory()) {
+            throw new FileNotFoundException("No such upload " + uploadId);
+        }
+        waitForLatency();
+        final long startNanos = System.nanoTime();
+        try (OutputStream output = new FileOutputStream(new File(upload, Integer.toString(partNumber)))) {
+            output.write(data, 0, length);
+        }
+        if (bytesPerSecond > 0) {
+            sleepNanos(startNanos + (long) (length * 1e9 / bytesPerSecond) - System.nanoTime());
+        }
+        return getETag(data, length);
+    }
+
+    @Override
+    public void completeMultipartUpload(final S3Bucket bucket, final String simpleFileName, final String uploadId,
+            final List<String> partETags) throws IOException {
+        final File upload = getUploadDirectory(uploadId);
+        if (!upload.isDirectory()) {
+            throw new FileNotFoundException("No such upload " + uploadId);
+        }
+        waitForLatency();
+
+        final File file = new File(new File(root, bucket.getName()), simpleFileName);
+        final File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create " + parent);
+        }
+        final File temp = new File(upload, "object");
+        try (OutputStream output = new FileOutputStream(temp)) {
+            for (int partNumber = 1; partNumber <= partETags.size(); partNumber++) {
+                final File part = new File(upload, Integer.toString(partNumber));
+                if (!part.isFile()) {
+                    throw new FileNotFoundException("Part " + partNumber + " of upload " + uploadId + " is missing");
+                }
+                Files.copy(part.toPath(), output);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        abortMultipartUpload(bucket, simpleFileName, uploadId);
+    }
+
+    @Override
+    public void abortMultipartUpload(final S3Bucket bucket, final String simpleFileName, final String uploadId) {
+        final File upload = getUploadDirectory(uploadId);
+        final File[] parts = upload.listFiles();
+        if (parts != null) {
+            for (final File part : parts) {
+                part.delete();
+            }
+        }
+        upload.delete();
+    }
+
+    /**
+     * Returns the file holding an object
+     */
+    public File getFile(final S3Bucket bucket, final String simpleFileName) throws FileNotFoundException {
+        final File file = new File(new File(root, bucket.getName()), simpleFileName);
+        if (!file.isFile()) {
+            throw new FileNotFoundException("No such object " + bucket + "/" + simpleFileName + " in " + root);
+        }
+        return file;
+    }
+
+    /**
+     * Uploads are kept under root, out of the way of bucket names
+     */
+    private File getUploadDirectory(final String uploadId) {
+        return new File(new File(root, UPLOADS), uploadId);
+    }
+
+    private void waitForLatency() throws InterruptedIOException {
+        sleepNanos(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+    }
+
+    private static void sleepNanos(final long nanos) throws InterruptedIOException {
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    private static String getETag(final byte[] data, final int length) {
+        try {
+            final MessageDigest md5 = MessageDigest.getInstance("MD5");
+            md5.update(data, 0, length);
+            final StringBuilder eTag = new StringBuilder("\"");
+            for (final byte b : md5.digest()) {
+                eTag.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return eTag.append('"').toString();
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private InputStream throttle(final InputStream input) {
+        return bytesPerSecond > 0 ? new ThrottledInputStream(input, bytesPerSecond) : input;
+    }
+
+    /**
+     * Ends after length bytes of the wrapped stream
+     */
+    private static final class RangeInputStream extends FilterInputStream
+    {
+        private long remaining;
+
+        RangeInputStream(final InputStream input, final long length) {
+            super(input);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int count) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int read = super.read(bytes, offset, (int) Math.min(count, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long count) throws IOException {
+            final long skipped = super.skip(Math.min(count, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Sleeps as needed to keep the average rate since the stream was opened at
+     * or below bytesPerSecond
+     */
+    private static final class ThrottledInputStream extends FilterInputStream
+    {
+        private final long bytesPerSecond;
+        private final long startNanos = System.nanoTime();
+        private long       bytesRead;
+
+        ThrottledInputStream(final InputStream input, final long bytesPerSecond) {
+            super(input);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                account(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int count) throws IOException {
+            // small reads keep the rate smooth
+            final int read = super.read(bytes, offset, (int) Math.min(count, Math.max(1, bytesPerSecond / 100)));
+            if (read > 0) {
+                account(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long count) throws IOException {
+            final long skipped = super.skip(count);
+            account(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void account(final long count) throws InterruptedIOException {
+            bytesRead += count;
+            final long dueNanos = startNanos + (long) (bytesRead * 1e9 / bytesPerSecond);
+            sleepNanos(dueNanos - System.nanoTime());
+        }
+    }
+}
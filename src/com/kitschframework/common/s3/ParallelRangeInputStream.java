@@ -0,0 +1,194 @@
+package com.kitschframework.common.s3;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelRangeInputStream
+ *
+ * Reads an S3 object through concurrent ranged GETs instead of one stream.
+ * The object is split into parts of partSize bytes which are downloaded ahead
+ * of the reader, up to parallelism at a time, and handed out in order, so the
+ * layers above see the same bytes getObject(bucket, key).getDataStream()
+ * would return.
+ *
+ * A part is only requested once a slot in the reorder buffer frees up, so at
+ * most (parallelism + 1) * partSize bytes are held in memory. A failed part is
+ * retried before its IOException is thrown by read. close() cancels the
+ * downloads still running.
+ *
+ */
+public class ParallelRangeInputStream extends InputStream
+{
+    public static final int              DEFAULT_PART_SIZE   = 8 * 1024 * 1024;
+    public static final int              DEFAULT_PARALLELISM = 8;
+
+    private static final int             MAX_ATTEMPTS        = 3;
+
+    private static final byte[]          EMPTY               = new byte[0];
+
+    private final S3Client               client;
+    private final S3Bucket               bucket;
+    private final String                 key;
+    private final long                   length;
+    private final int                    partSize;
+
+    private final ExecutorService        executor;
+
+    /** Parts downloading or waiting to be read, in object order */
+    private final ArrayDeque<Future<byte[]>> pending         = new ArrayDeque<Future<byte[]>>();
+    private long                         nextPartStart;
+
+    private byte[]                       part                = EMPTY;
+    private int                          partPosition;
+    private boolean                      closed;
+
+    public ParallelRangeInputStream(final S3Client client, final S3Bucket bucket, final String key)
+            throws IOException {
+        this(client, bucket, key, DEFAULT_PART_SIZE, DEFAULT_PARALLELISM);
+    }
+
+    public ParallelRangeInputStream(final S3Client client, final S3Bucket bucket, final String key,
+            final int partSize, final int parallelism) throws IOException {
+        if (partSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("partSize and parallelism must be positive");
+        }
+        this.client = client;
+        this.bucket = bucket;
+        this.key = key;
+        this.partSize = partSize;
+        this.length = client.getObjectLength(bucket, key);
+
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            final Thread thread = new Thread(runnable, "s3-range-" + bucket + "/" + key);
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < parallelism && nextPartStart < length; i++) {
+            submitNextPart();
+        }
+        if (length == 0) {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensurePart()) {
+            return -1;
+        }
+        return part[partPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int count) throws IOException {
+        if (count == 0) {
+            return 0;
+        }
+        if (!ensurePart()) {
+            return -1;
+        }
+        final int read = Math.min(count, part.length - partPosition);
+        System.arraycopy(part, partPosition, bytes, offset, read);
+        partPosition += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return part.length - partPosition;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (final Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        executor.shutdownNow();
+        part = EMPTY;
+    }
+
+    /**
+     * Moves to the next part once the current one has been read, returns false
+     * at the end of the object
+     */
+    private boolean ensurePart() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (partPosition == part.length) {
+            final Future<byte[]> next = pending.poll();
+            if (next == null) {
+                return false;
+            }
+            try {
+                part = next.get();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted reading " + bucket + "/" + key);
+            }
+            catch (final ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+            partPosition = 0;
+            if (nextPartStart < length) {
+                submitNextPart();
+            }
+        }
+        return true;
+    }
+
+    private void submitNextPart() {
+        final long start = nextPartStart;
+        final int size = (int) Math.min(partSize, length - start);
+        nextPartStart += size;
+        pending.add(executor.submit(() -> download(start, size)));
+        if (nextPartStart == length) {
+            // lets the threads exit once the last parts are in, even if the
+            // stream is never closed
+            executor.shutdown();
+        }
+    }
+
+    private byte[] download(final long start, final int size) throws IOException {
+        Exception failure = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !Thread.currentThread().isInterrupted(); attempt++) {
+            try (InputStream input = client.getObject(bucket, key, start, start + size - 1).getDataStream()) {
+                final byte[] bytes = new byte[size];
+                int read = 0;
+                while (read < size) {
+                    final int count = input.read(bytes, read, size - read);
+                    if (count == -1) {
+                        throw new EOFException("Part at " + start + " of " + bucket + "/" + key + " ended after "
+                                + read + " of " + size + " bytes");
+                    }
+                    read += count;
+                }
+                return bytes;
+            }
+            catch (final IOException | RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        throw new IOException("Failed to read part at " + start + " of " + bucket + "/" + key, failure);
+    }
+}
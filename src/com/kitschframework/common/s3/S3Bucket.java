@@ -2,5 +2,18 @@ package com.kitschframework.common.s3;
 
 public class S3Bucket
 {
+    private final String name;
 
+    public S3Bucket(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
 }
@@ -1,24 +1,67 @@
 package com.kitschframework.common.s3;
 
-import com.amazonaws.auth.AWSCredentials;
-import com.amazonaws.auth.BasicAWSCredentials;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3Client;
+import java.io.IOException;
+import java.util.List;
 
-public class S3Client
+/**
+ * S3Client
+ *
+ * The S3 operations the readers and writers need. Objects are written
+ * through multipart uploads, see S3MultipartOutputStream. AwsS3Client talks to S3,
+ * LocalS3Client serves a directory tree so the S3 paths can be run and
+ * benchmarked offline.
+ *
+ */
+public interface S3Client
 {
-    private static final String ACCESS_KEY = "";
-    private static final String SECRET_KEY = "";
+    public abstract S3Object getObject(S3Bucket bucket, String simpleFileName) throws IOException;
 
-    private final AmazonS3      s3;
+    /**
+     * Returns the bytes from start to end of an object, both inclusive as in an
+     * HTTP Range header
+     */
+    public abstract S3Object getObject(S3Bucket bucket, String simpleFileName, long start, long end)
+            throws IOException;
 
-    public S3Client() {
-        AWSCredentials myCredentials = new BasicAWSCredentials(ACCESS_KEY, SECRET_KEY);
-        this.s3 = new AmazonS3Client(myCredentials);
-    }
+    /**
+     * Returns the size, ETag and modification time of an object
+     */
+    public abstract S3ObjectMetadata getObjectMetadata(S3Bucket bucket, String simpleFileName) throws IOException;
+
+    /**
+     * Returns the keys of the objects starting with prefix, sorted
+     */
+    public abstract List<String> listObjects(S3Bucket bucket, String prefix) throws IOException;
 
-    public S3Object getObject(S3Bucket bucket, String simpleFileName) {
-        // TODO Auto-generated method stub
-        return null;
+    /**
+     * Returns the size of an object in bytes
+     */
+    public default long getObjectLength(S3Bucket bucket, String simpleFileName) throws IOException {
+        return getObjectMetadata(bucket, simpleFileName).getLength();
     }
+
+    /**
+     * Starts a multipart upload and returns its id
+     */
+    public abstract String initiateMultipartUpload(S3Bucket bucket, String simpleFileName) throws IOException;
+
+    /**
+     * Uploads the first length bytes of data as part partNumber, starting at
+     * 1, and returns the part's ETag
+     */
+    public abstract String uploadPart(S3Bucket bucket, String simpleFileName, String uploadId, int partNumber,
+            byte[] data, int length) throws IOException;
+
+    /**
+     * Makes the object out of the uploaded parts, partETags holds the ETag of
+     * every part in part number order
+     */
+    public abstract void completeMultipartUpload(S3Bucket bucket, String simpleFileName, String uploadId,
+            List<String> partETags) throws IOException;
+
+    /**
+     * Drops an upload and the parts uploaded so far
+     */
+    public abstract void abortMultipartUpload(S3Bucket bucket, String simpleFileName, String uploadId)
+            throws IOException;
 }
@@ -0,0 +1,85 @@
+package com.kitschframework.common.s3;
+
+import com.amazonaws.ClientConfiguration;
+
+/**
+ * S3ClientConfig
+ *
+ * Connection settings of a pooled AwsS3Client, see S3ClientRegistry. The HTTP
+ * connections of a client are kept alive and reused between requests, up to
+ * maxConnections at a time.
+ *
+ */
+public class S3ClientConfig
+{
+    public static final int DEFAULT_MAX_CONNECTIONS    = 64;
+    public static final int DEFAULT_CONNECTION_TIMEOUT = 10000;
+    public static final int DEFAULT_SOCKET_TIMEOUT     = 50000;
+
+    private final int       maxConnections;
+    private final int       connectionTimeoutMillis;
+    private final int       socketTimeoutMillis;
+
+    public S3ClientConfig() {
+        this(DEFAULT_MAX_CONNECTIONS);
+    }
+
+    public S3ClientConfig(final int maxConnections) {
+        this(maxConnections, DEFAULT_CONNECTION_TIMEOUT, DEFAULT_SOCKET_TIMEOUT);
+    }
+
+    public S3ClientConfig(final int maxConnections, final int connectionTimeoutMillis, final int socketTimeoutMillis) {
+        this.maxConnections = maxConnections;
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getConnectionTimeoutMillis() {
+        return connectionTimeoutMillis;
+    }
+
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    public ClientConfiguration toClientConfiguration() {
+        final ClientConfiguration configuration = new ClientConfiguration();
+        configuration.setMaxConnections(maxConnections);
+        configuration.setConnectionTimeout(connectionTimeoutMillis);
+        configuration.setSocketTimeout(socketTimeoutMillis);
+        return configuration;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + maxConnections;
+        result = prime * result + connectionTimeoutMillis;
+        result = prime * result + socketTimeoutMillis;
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        final S3ClientConfig other = (S3ClientConfig) obj;
+        return maxConnections == other.maxConnections && connectionTimeoutMillis == other.connectionTimeoutMillis
+                && socketTimeoutMillis == other.socketTimeoutMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "S3ClientConfig[maxConnections=" + maxConnections + ", connectionTimeout=" + connectionTimeoutMillis
+                + ", socketTimeout=" + socketTimeoutMillis + "]";
+    }
+}
@@ -0,0 +1,91 @@
+package com.kitschframework.common.s3;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * S3ClientRegistry
+ *
+ * Hands out one shared AwsS3Client per S3ClientConfig, so readers and writers
+ * reuse the same connection pool instead of each paying for client setup and
+ * TLS handshakes. Clients are wrapped in an InstrumentedS3Client, their
+ * request counts and latencies are available through getClients().
+ *
+ * setDefaultClient replaces the client returned by getClient(), for instance
+ * with a LocalS3Client in tests.
+ *
+ * Usage:
+ * <code>
+ * S3ClientRegistry.setDefaultConfig(new S3ClientConfig(256));
+ * DataReader reader = new S3DataReader(bucket, "logs/part-00000.gz", parser);
+ * </code>
+ *
+ */
+public final class S3ClientRegistry
+{
+    private static final Map<S3ClientConfig, InstrumentedS3Client> clients =
+            new HashMap<S3ClientConfig, InstrumentedS3Client>();
+
+    private static S3ClientConfig defaultConfig = new S3ClientConfig();
+    private static InstrumentedS3Client defaultClient;
+
+    private S3ClientRegistry() {
+    }
+
+    /**
+     * Returns the default client, created with the default config on first
+     * use unless one was set with setDefaultClient
+     */
+    public static synchronized InstrumentedS3Client getClient() {
+        if (defaultClient != null) {
+            return defaultClient;
+        }
+        return getClient(defaultConfig);
+    }
+
+    /**
+     * Returns the shared client for config, creating it on first use
+     */
+    public static synchronized InstrumentedS3Client getClient(final S3ClientConfig config) {
+        InstrumentedS3Client client = clients.get(config);
+        if (client == null) {
+            client = new InstrumentedS3Client(new AwsS3Client(config));
+            clients.put(config, client);
+        }
+        return client;
+    }
+
+    /**
+     * Sets the config of the client returned by getClient(), clients already
+     * handed out keep theirs
+     */
+    public static synchronized void setDefaultConfig(final S3ClientConfig config) {
+        defaultConfig = config;
+    }
+
+    /**
+     * Makes getClient() return client, or the pooled AWS client again when
+     * client is null
+     */
+    public static synchronized void setDefaultClient(final S3Client client) {
+        if (client == null || client instanceof InstrumentedS3Client) {
+            defaultClient = (InstrumentedS3Client) client;
+        }
+        else {
+            defaultClient = new InstrumentedS3Client(client);
+        }
+    }
+
+    /**
+     * Returns every client handed out so far
+     */
+    public static synchronized List<InstrumentedS3Client> getClients() {
+        final List<InstrumentedS3Client> all = new ArrayList<InstrumentedS3Client>(clients.values());
+        if (defaultClient != null && !all.contains(defaultClient)) {
+            all.add(defaultClient);
+        }
+        return all;
+    }
+}
@@ -0,0 +1,228 @@
+package com.kitschframework.common.s3;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * S3MultipartOutputStream
+ *
+ * Writes an S3 object as a multipart upload. Bytes are cut into parts of
+ * partSize which are uploaded concurrently while the caller keeps writing, at
+ * most maxPartsInFlight at a time, so no more than
+ * (maxPartsInFlight + 1) * partSize bytes are held in memory. close() uploads
+ * the last part and completes the upload.
+ *
+ * If a part still fails after being retried the upload is aborted and the
+ * IOException is thrown by the next write or close, the object is never
+ * created with missing data. abort() drops an upload on purpose.
+ *
+ * S3 requires every part but the last to be at least MIN_PART_SIZE bytes,
+ * smaller parts only work against a LocalS3Client.
+ *
+ */
+public class S3MultipartOutputStream extends OutputStream
+{
+    public static final int            MIN_PART_SIZE           = 5 * 1024 * 1024;
+    public static final int            DEFAULT_PART_SIZE       = 8 * 1024 * 1024;
+    public static final int            DEFAULT_PARTS_IN_FLIGHT = 4;
+
+    private static final int           MAX_ATTEMPTS            = 3;
+
+    private final S3Client             client;
+    private final S3Bucket             bucket;
+    private final String               key;
+    private final int                  partSize;
+    private final int                  maxPartsInFlight;
+
+    private final ExecutorService      executor;
+    private final String               uploadId;
+
+    /** Uploads of the parts not yet acknowledged, in part order */
+    private final LinkedList<Future<String>> pending          = new LinkedList<Future<String>>();
+    private final List<String>         partETags              = new ArrayList<String>();
+
+    private byte[]                     part;
+    private int                        partLength;
+    private int                        partCount;
+    private boolean                    closed;
+
+    public S3MultipartOutputStream(final S3Client client, final S3Bucket bucket, final String key)
+            throws IOException {
+        this(client, bucket, key, DEFAULT_PART_SIZE, DEFAULT_PARTS_IN_FLIGHT);
+    }
+
+    public S3MultipartOutputStream(final S3Client client, final S3Bucket bucket, final String key,
+            final int partSize, final int maxPartsInFlight) throws IOException {
+        if (partSize <= 0 || maxPartsInFlight <= 0) {
+            throw new IllegalArgumentException("partSize and maxPartsInFlight must be positive");
+        }
+        this.client = client;
+        this.bucket = bucket;
+        this.key = key;
+        this.partSize = partSize;
+        this.maxPartsInFlight = maxPartsInFlight;
+        this.part = new byte[partSize];
+        this.uploadId = client.initiateMultipartUpload(bucket, key);
+        this.executor = Executors.newFixedThreadPool(maxPartsInFlight, runnable -> {
+            final Thread thread = new Thread(runnable, "s3-upload-" + bucket + "/" + key);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ensureOpen();
+        if (partLength == part.length) {
+            submitPart();
+        }
+        part[partLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            if (partLength == part.length) {
+                submitPart();
+            }
+            final int count = Math.min(length, part.length - partLength);
+            System.arraycopy(bytes, offset, part, partLength, count);
+            partLength += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Uploads the last part and completes the upload. An empty stream creates
+     * an empty object.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (partLength > 0 || partCount == 0) {
+                submitPart();
+            }
+            while (!pending.isEmpty()) {
+                awaitOldest();
+            }
+            client.completeMultipartUpload(bucket, key, uploadId, partETags);
+        }
+        catch (final IOException e) {
+            abort(e);
+            throw e;
+        }
+        finally {
+            closed = true;
+            executor.shutdownNow();
+            part = null;
+        }
+    }
+
+    /**
+     * Cancels the parts in flight and drops the upload, nothing is written.
+     * If S3 fails to drop the upload the error is thrown, the parts uploaded
+     * so far then expire with S3's lifecycle rules.
+     */
+    public void abort() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (final Future<String> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        executor.shutdownNow();
+        part = null;
+        client.abortMultipartUpload(bucket, key, uploadId);
+    }
+
+    /**
+     * Aborts the upload because of cause, an error dropping the upload is
+     * added to cause as a suppressed exception
+     */
+    public void abort(final Throwable cause) {
+        try {
+            abort();
+        }
+        catch (final IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Upload of " + bucket + "/" + key + " is closed");
+        }
+    }
+
+    /**
+     * Hands the current part to the executor, waiting for the oldest upload
+     * first if too many are in flight
+     */
+    private void submitPart() throws IOException {
+        try {
+            while (pending.size() >= maxPartsInFlight) {
+                awaitOldest();
+            }
+        }
+        catch (final IOException e) {
+            abort(e);
+            throw e;
+        }
+
+        final byte[] data = part;
+        final int length = partLength;
+        final int partNumber = ++partCount;
+        pending.add(executor.submit(() -> upload(partNumber, data, length)));
+
+        part = new byte[partSize];
+        partLength = 0;
+    }
+
+    private void awaitOldest() throws IOException {
+        try {
+            partETags.add(pending.getFirst().get());
+            pending.removeFirst();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted uploading " + bucket + "/" + key);
+        }
+        catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private String upload(final int partNumber, final byte[] data, final int length) throws IOException {
+        Exception failure = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !Thread.currentThread().isInterrupted(); attempt++) {
+            try {
+                return client.uploadPart(bucket, key, uploadId, partNumber, data, length);
+            }
+            catch (final IOException | RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        throw new IOException("Failed to upload part " + partNumber + " of " + bucket + "/" + key, failure);
+    }
+}
@@ -4,10 +4,14 @@ import java.io.InputStream;
 
 public class S3Object
 {
+    private final InputStream dataStream;
+
+    public S3Object(final InputStream dataStream) {
+        this.dataStream = dataStream;
+    }
 
     public InputStream getDataStream() {
-        // TODO Auto-generated method stub
-        return null;
+        return dataStream;
     }
 
 }
@@ -0,0 +1,49 @@
+package com.kitschframework.common.s3;
+
+/**
+ * S3ObjectMetadata
+ *
+ * What a HEAD request returns about an object, enough to tell whether a copy
+ * of it is still current
+ *
+ */
+public class S3ObjectMetadata
+{
+    private final long   length;
+    private final String eTag;
+    private final long   lastModified;
+
+    public S3ObjectMetadata(final long length, final String eTag, final long lastModified) {
+        this.length = length;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Returns the modification time in epoch millis
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns true if other describes the same version of the object
+     */
+    public boolean isSameVersion(final S3ObjectMetadata other) {
+        return length == other.length && lastModified == other.lastModified
+                && (eTag == null ? other.eTag == null : eTag.equals(other.eTag));
+    }
+
+    @Override
+    public String toString() {
+        return "S3ObjectMetadata[length=" + length + ", eTag=" + eTag + ", lastModified=" + lastModified + "]";
+    }
+}
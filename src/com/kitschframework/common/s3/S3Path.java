@@ -0,0 +1,52 @@
+package com.kitschframework.common.s3;
+
+/**
+ * S3Path
+ *
+ * Bucket and key of an object written as s3://bucket/key, the form the
+ * DataReaderFactory and DataWriterFactory implementations take as file name
+ *
+ */
+public class S3Path
+{
+    public static final String SCHEME = "s3://";
+
+    private final S3Bucket     bucket;
+    private final String       key;
+
+    public S3Path(final S3Bucket bucket, final String key) {
+        this.bucket = bucket;
+        this.key = key;
+    }
+
+    public static boolean isS3Path(final String path) {
+        return path.startsWith(SCHEME);
+    }
+
+    /**
+     * Parses s3://bucket/key, the key may be empty for a whole bucket
+     */
+    public static S3Path parse(final String path) {
+        if (!isS3Path(path)) {
+            throw new IllegalArgumentException("Not an S3 path " + path);
+        }
+        final int slash = path.indexOf('/', SCHEME.length());
+        if (slash == -1) {
+            return new S3Path(new S3Bucket(path.substring(SCHEME.length())), "");
+        }
+        return new S3Path(new S3Bucket(path.substring(SCHEME.length(), slash)), path.substring(slash + 1));
+    }
+
+    public S3Bucket getBucket() {
+        return bucket;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return SCHEME + bucket + "/" + key;
+    }
+}
@@ -0,0 +1,172 @@
+package com.kitschframework.common.io.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.reader.DataReader;
+import com.kitschframework.common.io.reader.FileDataReader;
+import com.kitschframework.common.io.reader.TabDelimitedDataReaderFactory;
+import com.kitschframework.common.io.reader.TabDelimitedDataRowParser;
+import com.kitschframework.common.io.writer.DataWriter;
+import com.kitschframework.common.io.writer.TabDelimitedDataWriterFactory;
+
+public class BlockGzipTest extends TestCase
+{
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("blockgzip", ".gz");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        new File(file.getPath() + BlockGzipIndex.INDEX_SUFFIX).delete();
+        new File(file.getPath() + ".rowidx").delete();
+    }
+
+    public void testRoundTrip() throws Exception {
+        final byte[] data = randomText(1000000);
+        final BlockGzipIndex index = writeFile(data);
+
+        assertTrue(index.size() > 10);
+        assertEquals(data, readFully(new BlockGzipInputStream(new FileInputStream(file))));
+        // every block is a gzip member, gunzip reads the file as one stream
+        assertEquals(data, readFully(new GZIPInputStream(new FileInputStream(file))));
+        assertEquals(data, readFully(BlockGzip.newInputStream(new FileInputStream(file))));
+    }
+
+    public void testEmptyStream() throws Exception {
+        writeFile(new byte[0]);
+        assertEquals(0, readFully(new BlockGzipInputStream(new FileInputStream(file))).length);
+        assertEquals(0, readFully(new GZIPInputStream(new FileInputStream(file))).length);
+    }
+
+    public void testWriterIndexMatchesScan() throws Exception {
+        final BlockGzipIndex written = writeFile(randomText(300000));
+        final BlockGzipIndex scanned = BlockGzipIndex.build(new FileInputStream(file));
+
+        assertEquals(scanned.size(), written.size());
+        for (int i = 0; i < scanned.size(); i++) {
+            assertEquals(scanned.getCompressedOffset(i), written.getCompressedOffset(i));
+            assertEquals(scanned.getUncompressedOffset(i), written.getUncompressedOffset(i));
+        }
+
+        written.write(file.getPath());
+        final BlockGzipIndex loaded = BlockGzipIndex.load(file.getPath());
+        assertEquals(written.size(), loaded.size());
+        assertEquals(written.getCompressedOffset(written.size() - 1), loaded.getCompressedOffset(loaded.size() - 1));
+    }
+
+    public void testSeekIntoBlock() throws Exception {
+        final byte[] data = randomText(500000);
+        final BlockGzipIndex index = writeFile(data);
+
+        for (final long offset : new long[] { 0, 1, BlockGzip.MAX_BLOCK_DATA_SIZE - 1, BlockGzip.MAX_BLOCK_DATA_SIZE,
+                123457, data.length - 10 }) {
+            final int block = index.findBlock(offset);
+            assertTrue(index.getUncompressedOffset(block) <= offset);
+
+            final InputStream in = BlockGzipInputStream.open(file.getPath(), index.getCompressedOffset(block));
+            try {
+                long skip = offset - index.getUncompressedOffset(block);
+                while (skip > 0) {
+                    skip -= in.skip(skip);
+                }
+                final byte[] bytes = new byte[10];
+                int length = 0;
+                int read;
+                while (length < bytes.length && (read = in.read(bytes, length, bytes.length - length)) != -1) {
+                    length += read;
+                }
+                assertEquals(10, length);
+                for (int i = 0; i < bytes.length; i++) {
+                    assertEquals("offset " + (offset + i), data[(int) offset + i], bytes[i]);
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+    }
+
+    public void testWriterSidecarAndSeekToRow() throws Exception {
+        final DataWriter writer = new TabDelimitedDataWriterFactory().create(file.getPath());
+        for (int i = 0; i < 100000; i++) {
+            final DataRow row = new DataRow();
+            row.addOrReplaceLongValue("id", i);
+            row.addOrReplaceStringValue("name", "name" + i);
+            writer.writeDataRow(row);
+        }
+        writer.close();
+        assertTrue(new File(file.getPath() + BlockGzipIndex.INDEX_SUFFIX).exists());
+
+        final DataReader reader = new TabDelimitedDataReaderFactory().create(file.getPath());
+        int count = 0;
+        while (reader.hasNextDataRow()) {
+            assertEquals(count, reader.getNextDataRow().getValueAsLong("id"));
+            count++;
+        }
+        reader.close();
+        assertEquals(100000, count);
+
+        final FileDataReader seeking = new FileDataReader(file.getPath(), new TabDelimitedDataRowParser());
+        seeking.seekToRow(76543);
+        assertEquals(76543, seeking.getNextDataRow().getValueAsLong("id"));
+        seeking.close();
+    }
+
+    private BlockGzipIndex writeFile(final byte[] data) throws IOException {
+        final BlockGzipOutputStream out = new BlockGzipOutputStream(new FileOutputStream(file));
+        try {
+            // uneven writes, so blocks are cut inside a write
+            for (int offset = 0; offset < data.length; offset += 7777) {
+                out.write(data, offset, Math.min(7777, data.length - offset));
+            }
+        }
+        finally {
+            out.close();
+        }
+        return out.getIndex();
+    }
+
+    private static byte[] randomText(final int length) {
+        final Random random = new Random(length);
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (random.nextInt(10) == 0 ? '\n' : 'a' + random.nextInt(26));
+        }
+        return data;
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private static void assertEquals(final byte[] expected, final byte[] actual) {
+        assertEquals(expected.length, actual.length);
+        assertTrue(Arrays.equals(expected, actual));
+    }
+}
@@ -0,0 +1,185 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+import com.kitschframework.common.io.DataRowMetadata;
+import com.kitschframework.common.io.TypedDataRow;
+import com.kitschframework.common.io.writer.BinaryDataWriter;
+import com.kitschframework.common.io.writer.DataWriter;
+
+public class BinaryDataRowParserTest extends TestCase
+{
+    private File            file;
+    private DataRowMetadata metadata;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("binary", ".bin");
+        metadata = new DataRowMetadata(new String[] { "id", "price", "ok", "day", "name", "n" });
+        metadata.setColumnType("id", ColumnType.LONG, false);
+        metadata.setColumnType("price", ColumnType.DOUBLE);
+        metadata.setColumnType("ok", ColumnType.BOOLEAN);
+        metadata.setColumnType("day", ColumnType.DATE);
+        metadata.setColumnType("n", ColumnType.INT);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        new File(file.getPath() + ".gz").delete();
+    }
+
+    public void testRoundTrip() throws Exception {
+        final List<String[]> rows = new ArrayList<String[]>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(new String[] { Long.toString(i * 1000003L - 500000), Double.toString(i / 4.0),
+                    i % 3 == 0 ? "true" : "false", "2013-0" + (1 + i % 9) + "-1" + (i % 10), "nämé" + i,
+                    Integer.toString(-i) });
+        }
+        write(file.getPath(), rows);
+
+        final List<DataRow> read = readAll(file.getPath());
+        assertEquals(rows.size(), read.size());
+        for (int i = 0; i < rows.size(); i++) {
+            final DataRow row = read.get(i);
+            assertTrue(row instanceof TypedDataRow);
+            for (int column = 0; column < 6; column++) {
+                assertEquals(rows.get(i)[column], row.getValueAsString(column));
+            }
+        }
+        assertEquals(-500000L, read.get(0).getValueAsLong("id"));
+        assertEquals(0.25, read.get(1).getValueAsDouble("price"), 0);
+    }
+
+    public void testCompressedRoundTrip() throws Exception {
+        final List<String[]> rows = new ArrayList<String[]>();
+        for (int i = 0; i < 5000; i++) {
+            rows.add(new String[] { Integer.toString(i), "1.5", "true", "2013-01-01", "x" + i, "7" });
+        }
+        final String fileName = file.getPath() + ".gz";
+        write(fileName, rows);
+        final List<DataRow> read = readAll(fileName);
+        assertEquals(5000, read.size());
+        assertEquals("x4999", read.get(4999).getValueAsString("name"));
+    }
+
+    public void testNullsAndTypedFallbackToText() throws Exception {
+        final List<String[]> rows = new ArrayList<String[]>();
+        rows.add(new String[] { "1", "", "true", "2013-01-01", "", "3" });
+        rows.add(new String[] { "2", "oops", "maybe", "2013-02-30", "b", "3000000000" });
+        rows.add(new String[] { "3", "2.5" });
+        write(file.getPath(), rows);
+
+        final List<DataRow> read = readAll(file.getPath());
+        assertEquals(3, read.size());
+
+        final DataRow nulls = read.get(0);
+        assertTrue(nulls instanceof TypedDataRow);
+        assertTrue(nulls.isNull(1));
+        assertEquals(0.0, nulls.getValueAsDouble(1), 0);
+        assertEquals("", nulls.getValueAsString(4));
+
+        // values that don't parse as their column's type are kept as text
+        final DataRow text = read.get(1);
+        assertFalse(text instanceof TypedDataRow);
+        assertEquals("oops", text.getValueAsString("price"));
+        assertEquals("maybe", text.getValueAsString("ok"));
+        assertEquals("2013-02-30", text.getValueAsString("day"));
+        assertEquals("3000000000", text.getValueAsString("n"));
+
+        // missing trailing fields are null
+        final DataRow shortRow = read.get(2);
+        assertEquals(2.5, shortRow.getValueAsDouble("price"), 0);
+        assertTrue(shortRow.isNull(5));
+    }
+
+    public void testTypedSourceRow() throws Exception {
+        final TypedDataRow source = new TypedDataRow(metadata);
+        source.bind(new DataRow(metadata, new String[] { "42", "2.25", "TRUE", "2013-04-05", "x", "3" }));
+        final DataWriter writer = new BinaryDataWriter(file.getPath());
+        writer.writeDataRow(source);
+        writer.close();
+
+        final DataRow row = readAll(file.getPath()).get(0);
+        assertEquals(42L, row.getValueAsLong("id"));
+        assertEquals(2.25, row.getValueAsDouble("price"), 0);
+        assertTrue(row.getValueAsBoolean("ok"));
+        assertEquals("2013-04-05", row.getValueAsString("day"));
+        assertEquals(3, row.getValueAsInt("n"));
+    }
+
+    public void testCorruptStringLength() throws Exception {
+        final List<String[]> rows = new ArrayList<String[]>();
+        rows.add(new String[] { "1", "1.5", "true", "2013-01-01", "abcdef", "3" });
+        write(file.getPath(), rows);
+
+        // the length of "abcdef" is the byte before it
+        final RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            final byte[] bytes = new byte[(int) raw.length()];
+            raw.readFully(bytes);
+            int position = bytes.length - 2;
+            while (!(bytes[position] == 6 && bytes[position + 1] == 'a')) {
+                position--;
+            }
+            raw.seek(position);
+            raw.write(100);
+        }
+        finally {
+            raw.close();
+        }
+
+        try {
+            readAll(file.getPath());
+            fail("corrupt row was read");
+        }
+        catch (final DataRowException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed binary row"));
+        }
+    }
+
+    public void testNoLinesToSeekTo() throws Exception {
+        write(file.getPath(), new ArrayList<String[]>());
+        final FileDataReader reader = new FileDataReader(file.getPath(), new BinaryDataRowParser());
+        try {
+            reader.seekToRow(1);
+            fail("seeked in a binary file");
+        }
+        catch (final DataRowException e) {
+            // expected
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    private void write(final String fileName, final List<String[]> rows) throws DataRowException {
+        final DataWriter writer = new BinaryDataWriter(fileName);
+        for (final String[] values : rows) {
+            writer.writeDataRow(new DataRow(metadata, values));
+        }
+        writer.close();
+    }
+
+    private static List<DataRow> readAll(final String fileName) throws DataRowException {
+        final DataReader reader = new BinaryDataReaderFactory().create(fileName);
+        final List<DataRow> rows = new ArrayList<DataRow>();
+        try {
+            while (reader.hasNextDataRow()) {
+                rows.add(reader.getNextDataRow());
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,189 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.kitschframework.common.io.ColumnType;
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowMetadata;
+import com.kitschframework.common.io.TypedDataRow;
+import com.kitschframework.common.io.UncheckedDataRowException;
+import com.kitschframework.common.io.writer.ColumnarDataWriter;
+
+public class ColumnarDataReaderTest extends TestCase
+{
+    private static final String[] COUNTRIES  = { "US", "CA", "FR", "DE", "JP" };
+    private static final int      ROWS       = 10000;
+    private static final int      GROUP_SIZE = 1000;
+
+    private File                  file;
+    private DataRowMetadata       metadata;
+    private List<String[]>        rows;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("columnar", ".kcol");
+        metadata = new DataRowMetadata(new String[] { "id", "country", "price", "flag", "day", "note" });
+        metadata.setColumnType("id", ColumnType.LONG);
+        metadata.setColumnType("price", ColumnType.DOUBLE);
+        metadata.setColumnType("flag", ColumnType.BOOLEAN);
+        metadata.setColumnType("day", ColumnType.DATE);
+
+        rows = new ArrayList<String[]>();
+        final ColumnarDataWriter writer = new ColumnarDataWriter(file.getPath(), GROUP_SIZE);
+        for (int i = 0; i < ROWS; i++) {
+            String price = i % 100 == 7 ? "" : Double.toString(i / 100.0 + 0.25);
+            if (i == 4321) {
+                price = "oops";
+            }
+            final String[] values = { Long.toString(i), COUNTRIES[i * COUNTRIES.length / ROWS], price,
+                    i % 2 == 0 ? "true" : "false", String.format("2013-%02d-%02d", 1 + i % 12, 1 + i % 28),
+                    i % 3 == 0 ? null : "n" + i % 37 };
+            rows.add(values);
+            writer.writeDataRow(new DataRow(metadata, values));
+        }
+        writer.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testRoundTrip() throws Exception {
+        final ColumnarDataReader reader = new ColumnarDataReader(file.getPath());
+        assertEquals(ROWS / GROUP_SIZE, reader.getRowGroupCount());
+        int count = 0;
+        int typed = 0;
+        while (reader.hasNextDataRow()) {
+            final DataRow row = reader.getNextDataRow();
+            final String[] values = rows.get(count++);
+            for (int column = 0; column < values.length; column++) {
+                assertEquals("row " + count + " column " + column, normalize(values[column]),
+                        normalize(row.getValueAsString(column)));
+            }
+            if (row instanceof TypedDataRow) {
+                typed++;
+            }
+        }
+        reader.close();
+        assertEquals(ROWS, count);
+        // only the row group holding "oops" stores its prices as text
+        assertEquals(ROWS - GROUP_SIZE, typed);
+    }
+
+    public void testNulls() throws Exception {
+        final ColumnarDataReader reader = new ColumnarDataReader(file.getPath());
+        for (int i = 0; i <= 107; i++) {
+            final DataRow row = reader.getNextDataRow();
+            if (i == 7 || i == 107) {
+                assertTrue(row.isNull(2));
+                assertEquals(0.0, row.getValueAsDouble(2), 0);
+            }
+            else {
+                assertEquals(i / 100.0 + 0.25, row.getValueAsDouble(2), 0);
+            }
+            assertEquals(i % 3 == 0, normalize(row.getValueAsString("note")) == null);
+        }
+        reader.close();
+    }
+
+    public void testProjection() throws Exception {
+        final ColumnarDataReader reader = new ColumnarDataReader(file.getPath(), Arrays.asList("note", "id"));
+        assertEquals(2, reader.getMetadata().getKeyCount());
+        // file order, not projection order
+        assertEquals("id", reader.getMetadata().getKey(0));
+        int count = 0;
+        while (reader.hasNextDataRow()) {
+            final DataRow row = reader.getNextDataRow();
+            assertEquals(2, row.getMetadata().getKeyCount());
+            assertEquals(count, row.getValueAsLong("id"));
+            count++;
+        }
+        reader.close();
+        assertEquals(ROWS, count);
+    }
+
+    public void testPredicateSkipsRowGroups() throws Exception {
+        final ColumnarDataReader reader = new ColumnarDataReader(file.getPath(), Arrays.asList("id"),
+                RowPredicate.equalTo("country", "FR"));
+        int count = 0;
+        while (reader.hasNextDataRow()) {
+            final long id = reader.getNextDataRow().getValueAsLong("id");
+            assertTrue(id >= 4000 && id < 6000);
+            count++;
+        }
+        reader.close();
+        assertEquals(2000, count);
+        assertEquals(2, reader.getRowGroupsRead());
+        assertEquals(8, reader.getRowGroupsSkipped());
+        assertEquals(2000, reader.getRowsEmitted());
+    }
+
+    public void testPredicateWithinRowGroups() throws Exception {
+        final ColumnarDataReader reader = new ColumnarDataReader(file.getPath(), null, RowPredicate.and(
+                RowPredicate.between("id", 1500, 2499), RowPredicate.in("note", Arrays.asList("n1", "n2"))));
+        int count = 0;
+        while (reader.hasNextDataRow()) {
+            final DataRow row = reader.getNextDataRow();
+            final long id = row.getValueAsLong("id");
+            assertTrue(id >= 1500 && id <= 2499);
+            assertTrue(id % 3 != 0 && (id % 37 == 1 || id % 37 == 2));
+            count++;
+        }
+        reader.close();
+        int expected = 0;
+        for (int i = 1500; i <= 2499; i++) {
+            if (i % 3 != 0 && (i % 37 == 1 || i % 37 == 2)) {
+                expected++;
+            }
+        }
+        assertEquals(expected, count);
+        assertEquals(2, reader.getRowGroupsRead());
+    }
+
+    public void testPredicateOnMissingColumn() throws Exception {
+        final ColumnarDataReader reader = new ColumnarDataReader(file.getPath(), null,
+                RowPredicate.equalTo("missing", "x"));
+        assertFalse(reader.hasNextDataRow());
+        reader.close();
+    }
+
+    public void testTooManyValuesRejected() throws Exception {
+        final File other = File.createTempFile("columnar", ".kcol");
+        try {
+            final ColumnarDataWriter writer = new ColumnarDataWriter(other.getPath());
+            writer.writeDataRow(new DataRow(new DataRowMetadata(new String[] { "a" }), new String[] { "1" }));
+            try {
+                writer.writeDataRow(new DataRow(new DataRowMetadata(new String[] { "a", "b" }), new String[] { "1",
+                        "2" }));
+                fail("row with too many values was written");
+            }
+            catch (final UncheckedDataRowException e) {
+                // expected
+            }
+            writer.close();
+            assertNull(writer.getFailure());
+
+            final ColumnarDataReader reader = new ColumnarDataReader(other.getPath());
+            assertEquals("1", reader.getNextDataRow().getValueAsString("a"));
+            assertFalse(reader.hasNextDataRow());
+            reader.close();
+        }
+        finally {
+            other.delete();
+        }
+    }
+
+    /**
+     * An empty value is read back as null from a typed column, compare the two
+     * as the same
+     */
+    private static String normalize(final String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
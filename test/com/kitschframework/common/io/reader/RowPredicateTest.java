@@ -0,0 +1,137 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+
+/**
+ * Predicates evaluated by the tab delimited parsers must return the rows a
+ * filter after getNextDataRow would keep
+ */
+public class RowPredicateTest extends TestCase
+{
+    private static final String[] COUNTRIES = { "US", "CA", "FR", "DE" };
+    private static final int      ROWS      = 2000;
+
+    private File                  file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("predicate", ".tsv");
+        final StringBuilder content = new StringBuilder("id\tcountry\tprice\turl\n");
+        for (int i = 0; i < ROWS; i++) {
+            if (i % 101 == 0) {
+                content.append('\n');
+            }
+            content.append(i).append('\t').append(COUNTRIES[i % COUNTRIES.length]).append('\t');
+            content.append(i % 10 == 3 ? "n/a" : Double.toString(i / 10.0)).append('\t');
+            content.append(i % 3 == 0 ? "https://" : "http://").append("host").append(i % 7);
+            content.append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.toString().getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testEqualTo() throws Exception {
+        check(RowPredicate.equalTo("country", "FR"), ROWS / COUNTRIES.length);
+    }
+
+    public void testIn() throws Exception {
+        check(RowPredicate.in("country", Arrays.asList("US", "DE", "XX")), ROWS / 2);
+    }
+
+    public void testBetween() throws Exception {
+        // prices that aren't numbers fail
+        check(RowPredicate.between("price", 10, 20), 91);
+    }
+
+    public void testStartsWith() throws Exception {
+        check(RowPredicate.startsWith("url", "https://"), (ROWS + 2) / 3);
+    }
+
+    public void testCombined() throws Exception {
+        check(RowPredicate.and(RowPredicate.or(RowPredicate.equalTo("country", "CA"),
+                RowPredicate.startsWith("url", "https")), RowPredicate.not(RowPredicate.between("price", 0, 50))), -1);
+    }
+
+    public void testMissingColumn() throws Exception {
+        check(RowPredicate.equalTo("missing", "x"), 0);
+    }
+
+    /**
+     * Checks every parser, with and without a projection that leaves out the
+     * columns the predicate reads
+     */
+    private void check(final RowPredicate predicate, final int expectedCount) throws Exception {
+        final List<String> expected = new ArrayList<String>();
+        final List<String> expectedIds = new ArrayList<String>();
+        for (final DataRow row : readAll(new TabDelimitedDataRowParser(), null, null)) {
+            if (predicate.test(row)) {
+                expected.add(TabDelimitedDataRowParsersTest.render(row));
+                expectedIds.add("1:" + row.getValueAsString("id"));
+            }
+        }
+        if (expectedCount >= 0) {
+            assertEquals(expectedCount, expected.size());
+        }
+
+        for (final DataRowParser parser : parsers()) {
+            final FileDataReader reader = new FileDataReader(file.getPath(), parser, null, predicate);
+            final List<String> rows = new ArrayList<String>();
+            while (reader.hasNextDataRow()) {
+                rows.add(TabDelimitedDataRowParsersTest.render(reader.getNextDataRow()));
+            }
+            reader.close();
+            assertEquals(parser.getDescription(), expected, rows);
+            assertEquals(ROWS, reader.getRowsScanned());
+            assertEquals(expected.size(), reader.getRowsEmitted());
+        }
+
+        for (final DataRowParser parser : parsers()) {
+            final List<String> ids = new ArrayList<String>();
+            for (final DataRow row : readAll(parser, Arrays.asList("id"), predicate)) {
+                ids.add(TabDelimitedDataRowParsersTest.render(row));
+            }
+            assertEquals(parser.getDescription(), expectedIds, ids);
+        }
+    }
+
+    private static DataRowParser[] parsers() throws DataRowException {
+        return new DataRowParser[] { new TabDelimitedDataRowParser(), new LazyTabDelimitedDataRowParser(),
+                new MappedTabDelimitedDataRowParser() };
+    }
+
+    private List<DataRow> readAll(final DataRowParser parser, final Collection<String> columns,
+            final RowPredicate predicate) throws DataRowException {
+        final FileDataReader reader = new FileDataReader(file.getPath(), parser, columns, predicate);
+        final List<DataRow> rows = new ArrayList<DataRow>();
+        try {
+            while (reader.hasNextDataRow()) {
+                rows.add(reader.getNextDataRow());
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return rows;
+    }
+}
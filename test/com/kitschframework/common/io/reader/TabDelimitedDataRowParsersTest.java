@@ -0,0 +1,182 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+import com.kitschframework.common.io.ByteDataRow;
+import com.kitschframework.common.io.CharDataRow;
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+
+/**
+ * Checks that the lazy, mapped and parallel readers return the same rows as
+ * TabDelimitedDataRowParser
+ */
+public class TabDelimitedDataRowParsersTest extends TestCase
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private File                 file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("parsers", ".tsv");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        new File(file.getPath() + RowOffsetIndex.INDEX_SUFFIX).delete();
+    }
+
+    public void testSameRowsAsTabDelimitedParser() throws Exception {
+        write("id\tname\tprice\r\n"
+                + "1\tfoo\t1.5\r\n"
+                + "\r\n"
+                + "2\tbär\t\n"
+                + "   \n"
+                + "3\t\t7\n"
+                + "4\ttoo\tmany\tfields\n"
+                + "5\tcafé\t2\t\n"
+                + "6\t\t\n"
+                + "7\tlast");
+
+        final List<String> expected = readAll(new TabDelimitedDataRowParser());
+        assertEquals(6, expected.size());
+        assertEquals("3:1|foo|1.5", expected.get(0));
+        assertEquals("2:2|" + decode("bär"), expected.get(1));
+        assertEquals("3:3||7", expected.get(2));
+        assertEquals("3:5|" + decode("café") + "|2", expected.get(3));
+        assertEquals("1:6", expected.get(4));
+        assertEquals("2:7|last", expected.get(5));
+
+        assertEquals(expected, readAll(new LazyTabDelimitedDataRowParser()));
+        assertEquals(expected, readAll(new MappedTabDelimitedDataRowParser()));
+    }
+
+    public void testReadIntoReusedRows() throws Exception {
+        write("a\tb\n1\tx\n\n2\ty\r\n3\n");
+        final List<String> expected = readAll(new TabDelimitedDataRowParser());
+
+        final FileDataReader lazy = new FileDataReader(file.getPath(), new LazyTabDelimitedDataRowParser());
+        final CharDataRow charRow = new CharDataRow();
+        final List<String> lazyRows = new ArrayList<String>();
+        while (lazy.readInto(charRow)) {
+            lazyRows.add(render(charRow));
+        }
+        lazy.close();
+        assertEquals(expected, lazyRows);
+
+        final FileDataReader mapped = new FileDataReader(file.getPath(), new MappedTabDelimitedDataRowParser());
+        final ByteDataRow byteRow = new ByteDataRow();
+        final List<String> mappedRows = new ArrayList<String>();
+        while (mapped.readInto(byteRow)) {
+            mappedRows.add(render(byteRow));
+        }
+        mapped.close();
+        assertEquals(expected, mappedRows);
+    }
+
+    public void testParallelReaderAcrossSplits() throws Exception {
+        final StringBuilder content = new StringBuilder("id\tname\n");
+        for (int i = 0; i < 5000; i++) {
+            if (i % 97 == 0) {
+                content.append("\r\n");
+            }
+            content.append(i).append('\t').append("nämé").append(i % 13).append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        write(content.toString());
+        final List<String> expected = readAll(new TabDelimitedDataRowParser());
+
+        // small splits, so rows straddle split boundaries
+        final ParallelFileDataReader reader = new ParallelFileDataReader(file.getPath(), 1024, new ForkJoinPool(4));
+        try {
+            assertTrue(reader.getSplitCount() > 1);
+
+            // the split readers are ordered, together they return every row once
+            final List<String> splitRows = new ArrayList<String>();
+            for (final DataReader splitReader : reader.getSplitReaders()) {
+                while (splitReader.hasNextDataRow()) {
+                    splitRows.add(render(splitReader.getNextDataRow()));
+                }
+                splitReader.close();
+            }
+            assertEquals(expected, splitRows);
+
+            // rows of different splits arrive in any order
+            final List<String> rows = new ArrayList<String>();
+            while (reader.hasNextDataRow()) {
+                rows.add(render(reader.getNextDataRow()));
+            }
+            final List<String> sortedExpected = new ArrayList<String>(expected);
+            Collections.sort(sortedExpected);
+            Collections.sort(rows);
+            assertEquals(sortedExpected, rows);
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    public void testNumericGettersOnRawFields() throws Exception {
+        write("id\tprice\n-42\t2.5\n");
+        final FileDataReader reader = new FileDataReader(file.getPath(), new MappedTabDelimitedDataRowParser());
+        final DataRow row = reader.getNextDataRow();
+        reader.close();
+        assertEquals(-42L, row.getValueAsLong("id"));
+        assertEquals(-42, row.getValueAsInt("id"));
+        assertEquals(2.5, row.getValueAsDouble("price"), 0);
+    }
+
+    private void write(final String content) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(UTF8));
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns what the readers make of the UTF-8 bytes of value, they decode
+     * with the platform charset
+     */
+    private static String decode(final String value) {
+        return new String(value.getBytes(UTF8), Charset.defaultCharset());
+    }
+
+    private List<String> readAll(final DataRowParser parser) throws DataRowException {
+        final FileDataReader reader = new FileDataReader(file.getPath(), parser);
+        final List<String> rows = new ArrayList<String>();
+        try {
+            while (reader.hasNextDataRow()) {
+                rows.add(render(reader.getNextDataRow()));
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    static String render(final DataRow row) {
+        final StringBuilder rendered = new StringBuilder().append(row.getValueCount()).append(':');
+        for (int i = 0; i < row.getValueCount(); i++) {
+            if (i > 0) {
+                rendered.append('|');
+            }
+            rendered.append(row.getValueAsString(i));
+        }
+        return rendered.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package com.kitschframework.common.io.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowException;
+
+/**
+ * Projection in the tab delimited parsers, every parser must return the
+ * projected columns of the rows TabDelimitedDataRowParser returns
+ */
+public class TabDelimitedProjectionTest extends TestCase
+{
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("projection", ".tsv");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testProjectedColumns() throws Exception {
+        write("id\tname\tx\tnote\n1\ta\t1\tp\n2\tb\t2\t\textra\n\n3\t\tz\n4\tc\n5\t\t\t\r\n6\tf\t6\tq\r\n");
+        final List<String> expected = new ArrayList<String>();
+        for (final String row : readAll(new TabDelimitedDataRowParser(), null)) {
+            // id and x of the full rows
+            final String[] fields = row.substring(row.indexOf(':') + 1).split("\\|", -1);
+            expected.add(fields[0] + "|" + (fields.length > 2 ? fields[2] : "null"));
+        }
+        assertEquals(Arrays.asList("1|1", "3|z", "4|null", "5|null", "6|6"), expected);
+
+        for (final DataRowParser parser : parsers()) {
+            final List<String> rows = new ArrayList<String>();
+            final FileDataReader reader = new FileDataReader(file.getPath(), parser, Arrays.asList("x", "id"));
+            assertEquals(2, reader.getNextDataRow().getMetadata().getKeyCount());
+            reader.reset();
+            while (reader.hasNextDataRow()) {
+                final DataRow row = reader.getNextDataRow();
+                rows.add(row.getValueAsString("id") + "|" + row.getValueAsString("x"));
+            }
+            reader.close();
+            assertEquals(parser.getDescription(), expected, rows);
+        }
+    }
+
+    public void testRepeatedHeaderName() throws Exception {
+        write("a\tb\ta\n1\tx\t2\n3\ty\t4\n");
+        for (final DataRowParser parser : parsers()) {
+            final List<String> rows = readAll(parser, Arrays.asList("a"));
+            assertEquals(parser.getDescription(), Arrays.asList("2:1|2", "2:3|4"), rows);
+        }
+    }
+
+    public void testUnknownColumn() throws Exception {
+        write("a\tb\n1\t2\n");
+        for (final DataRowParser parser : parsers()) {
+            try {
+                new FileDataReader(file.getPath(), parser, Arrays.asList("c"));
+                fail(parser.getDescription() + " projected a missing column");
+            }
+            catch (final DataRowException e) {
+                // expected
+            }
+        }
+    }
+
+    private static DataRowParser[] parsers() throws DataRowException {
+        return new DataRowParser[] { new TabDelimitedDataRowParser(), new LazyTabDelimitedDataRowParser(),
+                new MappedTabDelimitedDataRowParser() };
+    }
+
+    private void write(final String content) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    private List<String> readAll(final DataRowParser parser, final Collection<String> columns)
+            throws DataRowException {
+        final FileDataReader reader = new FileDataReader(file.getPath(), parser, columns, null);
+        final List<String> rows = new ArrayList<String>();
+        try {
+            while (reader.hasNextDataRow()) {
+                rows.add(TabDelimitedDataRowParsersTest.render(reader.getNextDataRow()));
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return rows;
+    }
+}
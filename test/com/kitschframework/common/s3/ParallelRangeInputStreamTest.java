@@ -0,0 +1,189 @@
+package com.kitschframework.common.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.reader.DataReader;
+import com.kitschframework.common.io.reader.LazyTabDelimitedDataRowParser;
+import com.kitschframework.common.io.reader.S3DataReader;
+
+public class ParallelRangeInputStreamTest extends TestCase
+{
+    private static final S3Bucket BUCKET = new S3Bucket("bucket");
+
+    private File                  root;
+    private FailingS3Client       client;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = Files.createTempDirectory("s3").toFile();
+        new File(root, BUCKET.getName()).mkdirs();
+        client = new FailingS3Client(root);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(root);
+    }
+
+    public void testReadsObject() throws Exception {
+        final byte[] data = write("object", 100003);
+        for (final int[] config : new int[][] { { 1000, 4 }, { 4096, 1 }, { 7, 16 }, { 1 << 20, 8 } }) {
+            final InputStream in = new ParallelRangeInputStream(client, BUCKET, "object", config[0], config[1]);
+            assertTrue(Arrays.toString(config), Arrays.equals(data, readFully(in)));
+        }
+    }
+
+    public void testSingleByteReads() throws Exception {
+        final byte[] data = write("object", 5000);
+        final InputStream in = new ParallelRangeInputStream(client, BUCKET, "object", 333, 3);
+        try {
+            for (int i = 0; i < data.length; i++) {
+                assertEquals(data[i] & 0xff, in.read());
+            }
+            assertEquals(-1, in.read());
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    public void testEmptyObject() throws Exception {
+        write("empty", 0);
+        assertEquals(0, readFully(new ParallelRangeInputStream(client, BUCKET, "empty", 1000, 4)).length);
+    }
+
+    public void testRetriesFailedPart() throws Exception {
+        final byte[] data = write("object", 50000);
+        client.failedAttempts = 2;
+        assertTrue(Arrays.equals(data, readFully(new ParallelRangeInputStream(client, BUCKET, "object", 1000, 4))));
+    }
+
+    public void testPartFailureThrown() throws Exception {
+        write("object", 50000);
+        client.failedAttempts = 3;
+        final InputStream in = new ParallelRangeInputStream(client, BUCKET, "object", 1000, 4);
+        try {
+            readFully(in);
+            fail("read an object whose parts all fail");
+        }
+        catch (final IOException e) {
+            // expected
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    public void testS3DataReader() throws Exception {
+        final Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(new File(root,
+                BUCKET.getName() + "/rows.gz"))), "UTF-8");
+        try {
+            writer.write("a\tb\n");
+            for (int i = 0; i < 20000; i++) {
+                writer.write(i + "\tv" + i * 7 + "\n");
+            }
+        }
+        finally {
+            writer.close();
+        }
+
+        final List<String> expected = readAll(new S3DataReader(client, BUCKET, "rows.gz",
+                new LazyTabDelimitedDataRowParser()));
+        assertEquals(20000, expected.size());
+
+        final S3DataReader reader = new S3DataReader(client, BUCKET, "rows.gz", new LazyTabDelimitedDataRowParser(),
+                null, 1000, 4);
+        assertEquals(expected, readAll(reader));
+        reader.reset();
+        assertEquals(expected, readAll(reader));
+        reader.close();
+    }
+
+    /**
+     * LocalS3Client failing the first failedAttempts ranged GETs of every part
+     */
+    private static class FailingS3Client extends LocalS3Client
+    {
+        private final ConcurrentHashMap<Long, AtomicInteger> attempts = new ConcurrentHashMap<Long, AtomicInteger>();
+        volatile int                                         failedAttempts;
+
+        FailingS3Client(final File root) {
+            super(root);
+        }
+
+        @Override
+        public S3Object getObject(final S3Bucket bucket, final String simpleFileName, final long start,
+                final long end) throws IOException {
+            attempts.putIfAbsent(start, new AtomicInteger());
+            if (attempts.get(start).incrementAndGet() <= failedAttempts) {
+                throw new IOException("Injected failure");
+            }
+            return super.getObject(bucket, simpleFileName, start, end);
+        }
+    }
+
+    private byte[] write(final String key, final int length) throws IOException {
+        final byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        final OutputStream out = new FileOutputStream(new File(root, BUCKET.getName() + "/" + key));
+        try {
+            out.write(data);
+        }
+        finally {
+            out.close();
+        }
+        return data;
+    }
+
+    private static List<String> readAll(final DataReader reader) throws Exception {
+        final List<String> rows = new ArrayList<String>();
+        while (reader.hasNextDataRow()) {
+            final DataRow row = reader.getNextDataRow();
+            rows.add(row.getValueAsString(0) + "|" + row.getValueAsString(1));
+        }
+        return rows;
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1500];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
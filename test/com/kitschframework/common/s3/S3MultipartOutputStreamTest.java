@@ -0,0 +1,193 @@
+package com.kitschframework.common.s3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.kitschframework.common.io.DataRow;
+import com.kitschframework.common.io.DataRowMetadata;
+import com.kitschframework.common.io.UncheckedDataRowException;
+import com.kitschframework.common.io.reader.DataReader;
+import com.kitschframework.common.io.reader.LazyTabDelimitedDataRowParser;
+import com.kitschframework.common.io.reader.S3DataReader;
+import com.kitschframework.common.io.writer.S3DataWriter;
+import com.kitschframework.common.io.writer.TabDelimitedDataRowSerializer;
+
+public class S3MultipartOutputStreamTest extends TestCase
+{
+    private static final S3Bucket BUCKET = new S3Bucket("bucket");
+
+    private File                  root;
+    private FailingS3Client       client;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = Files.createTempDirectory("s3").toFile();
+        client = new FailingS3Client(root);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(root);
+    }
+
+    public void testUploadsObject() throws Exception {
+        final byte[] data = randomBytes(100003);
+        final S3MultipartOutputStream out = new S3MultipartOutputStream(client, BUCKET, "dir/object", 1000, 3);
+        // uneven writes, so parts are cut inside a write
+        for (int offset = 0; offset < data.length; offset += 777) {
+            out.write(data, offset, Math.min(777, data.length - offset));
+        }
+        out.write(7);
+        out.close();
+
+        final byte[] expected = Arrays.copyOf(data, data.length + 1);
+        expected[data.length] = 7;
+        assertTrue(Arrays.equals(expected, Files.readAllBytes(client.getFile(BUCKET, "dir/object").toPath())));
+        assertNoUploadsLeft();
+    }
+
+    public void testEmptyObject() throws Exception {
+        new S3MultipartOutputStream(client, BUCKET, "empty", 1000, 3).close();
+        assertEquals(0, client.getFile(BUCKET, "empty").length());
+        assertNoUploadsLeft();
+    }
+
+    public void testRetriesFailedPart() throws Exception {
+        final byte[] data = randomBytes(20000);
+        client.failedAttempts = 2;
+        final OutputStream out = new S3MultipartOutputStream(client, BUCKET, "object", 1000, 3);
+        out.write(data);
+        out.close();
+        assertTrue(Arrays.equals(data, Files.readAllBytes(client.getFile(BUCKET, "object").toPath())));
+    }
+
+    public void testPartFailureAbortsUpload() throws Exception {
+        client.failingPart = 5;
+        // one part in flight, so no other part is written once the upload is dropped
+        final OutputStream out = new S3MultipartOutputStream(client, BUCKET, "object", 1000, 1);
+        try {
+            out.write(randomBytes(20000));
+            out.close();
+            fail("upload with a failed part completed");
+        }
+        catch (final IOException e) {
+            assertEquals("Injected failure of part 5", e.getMessage());
+        }
+        assertFalse(new File(root, BUCKET.getName() + "/object").exists());
+        assertNoUploadsLeft();
+
+        // the stream stays closed
+        try {
+            out.write(1);
+            fail("wrote to an aborted upload");
+        }
+        catch (final IOException e) {
+            // expected
+        }
+    }
+
+    public void testAbort() throws Exception {
+        final S3MultipartOutputStream out = new S3MultipartOutputStream(client, BUCKET, "object", 1000, 2);
+        out.write(randomBytes(5000));
+        out.abort();
+        out.close();
+        assertFalse(new File(root, BUCKET.getName() + "/object").exists());
+    }
+
+    public void testS3DataWriter() throws Exception {
+        final DataRowMetadata metadata = new DataRowMetadata(new String[] { "id", "name" });
+        final S3DataWriter writer = new S3DataWriter(client, BUCKET, "rows.gz", new TabDelimitedDataRowSerializer(),
+                4096, 3);
+        for (int i = 0; i < 20000; i++) {
+            writer.writeDataRow(new DataRow(metadata, new String[] { Integer.toString(i), "name" + i % 17 }));
+        }
+        writer.close();
+        assertNull(writer.getFailure());
+
+        final DataReader reader = new S3DataReader(client, BUCKET, "rows.gz", new LazyTabDelimitedDataRowParser());
+        int count = 0;
+        while (reader.hasNextDataRow()) {
+            final DataRow row = reader.getNextDataRow();
+            assertEquals(count, row.getValueAsLong("id"));
+            assertEquals("name" + count % 17, row.getValueAsString("name"));
+            count++;
+        }
+        reader.close();
+        assertEquals(20000, count);
+    }
+
+    public void testS3DataWriterPartFailure() throws Exception {
+        client.failingPart = 3;
+        final DataRowMetadata metadata = new DataRowMetadata(new String[] { "id" });
+        final S3DataWriter writer = new S3DataWriter(client, BUCKET, "rows.tsv", new TabDelimitedDataRowSerializer(),
+                4096, 1);
+        for (int i = 0; i < 20000; i++) {
+            writer.writeDataRow(new DataRow(metadata, new String[] { Integer.toString(i) }));
+        }
+        try {
+            writer.close();
+            fail("upload with a failed part completed");
+        }
+        catch (final UncheckedDataRowException e) {
+            assertSame(writer.getFailure(), e.getCause().getCause());
+        }
+        assertEquals("Injected failure of part 3", writer.getFailure().getMessage());
+        assertFalse(new File(root, BUCKET.getName() + "/rows.tsv").exists());
+        assertNoUploadsLeft();
+    }
+
+    /**
+     * LocalS3Client failing the first failedAttempts uploads of every part, and
+     * every upload of failingPart
+     */
+    private static class FailingS3Client extends LocalS3Client
+    {
+        private final ConcurrentHashMap<Integer, AtomicInteger> attempts = new ConcurrentHashMap<Integer, AtomicInteger>();
+        volatile int                                            failedAttempts;
+        volatile int                                            failingPart;
+
+        FailingS3Client(final File root) {
+            super(root);
+        }
+
+        @Override
+        public String uploadPart(final S3Bucket bucket, final String simpleFileName, final String uploadId,
+                final int partNumber, final byte[] data, final int length) throws IOException {
+            attempts.putIfAbsent(partNumber, new AtomicInteger());
+            if (partNumber == failingPart || attempts.get(partNumber).incrementAndGet() <= failedAttempts) {
+                throw new IOException("Injected failure of part " + partNumber);
+            }
+            return super.uploadPart(bucket, simpleFileName, uploadId, partNumber, data, length);
+        }
+    }
+
+    private void assertNoUploadsLeft() {
+        final String[] uploads = new File(root, ".uploads").list();
+        assertEquals(new ArrayList<String>(), uploads == null ? new ArrayList<String>() : Arrays.asList(uploads));
+    }
+
+    private static byte[] randomBytes(final int length) {
+        final byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}